@@ -0,0 +1,82 @@
+package microevents.msgbox.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessagePredicate;
+import microevents.msgbox.MessageTable;
+import microevents.msgbox.MessageValueExpression;
+import microevents.msgbox.impl.MessageTableImpl;
+
+/**
+ * FilterBenchmark
+ * 
+ * Measures the condition on the header and the body value of serialized messages
+ * by the compiled predicate and by parsing the box
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+	@Param
+	public MessageShape shape;
+	
+	@Param({ "order", "refund" })
+	public String type;
+	
+	private byte[] blob;
+	private MessagePredicate predicate;
+	private MessageValueExpression expression;
+	
+	@Setup
+	public void setup() {
+		blob = shape.newBox(new Random(1)).toByteArray();
+		predicate = MessageFactory.newPredicate("header.type == \"" + type + "\" && body." + shape.getPath() + " != null");
+		expression = MessageFactory.newExpression(shape.getPath());
+	}
+	
+	@Benchmark
+	public boolean predicate() {
+		return predicate.test(blob);
+	}
+	
+	@Benchmark
+	public boolean parseBox() {
+		
+		MessageBox box = MessageFactory.parseBox(blob);
+		
+		if (!type.equals(box.getHeader("type"))) {
+			return false;
+		}
+		
+		MessageTable body = new MessageTableImpl();
+		for (String key : box.getPayloadKeys()) {
+			body.put(key, box.getPayload(key));
+		}
+		
+		return body.get(expression) != null;
+	}
+	
+}
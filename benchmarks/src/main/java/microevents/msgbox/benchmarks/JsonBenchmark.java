@@ -0,0 +1,85 @@
+package microevents.msgbox.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageValue;
+
+/**
+ * JsonBenchmark
+ * 
+ * Measures json conversion of the message and of the table payload
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	@Param
+	public MessageShape shape;
+	
+	private MessageBox box;
+	private MessageValue<?> payload;
+	private StringBuilder out;
+	private byte[] msgpack;
+	
+	@Setup
+	public void setup() {
+		box = shape.newBox(new Random(1));
+		payload = box.getPayload("payload");
+		out = new StringBuilder();
+		msgpack = box.toByteArray();
+	}
+	
+	@Benchmark
+	public String boxToJson() {
+		return box.toJson();
+	}
+	
+	@Benchmark
+	public String parseBoxToJson() {
+		return MessageFactory.parseBox(msgpack).toJson();
+	}
+	
+	@Benchmark
+	public StringBuilder writeBoxJson() throws IOException {
+		out.setLength(0);
+		MessageFactory.writeBoxJson(msgpack, out);
+		return out;
+	}
+	
+	@Benchmark
+	public String payloadToJson() {
+		return payload.toValue().toJson();
+	}
+	
+	@Benchmark
+	public StringBuilder payloadWriteJsonTo() throws IOException {
+		out.setLength(0);
+		payload.writeJsonTo(out);
+		return out;
+	}
+	
+}
@@ -0,0 +1,38 @@
+package microevents.msgbox.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * MessageBenchmarks
+ * 
+ * Runs all msgbox benchmarks with the GC profiler to report allocation rates
+ * 
+ * Accepts the usual JMH command line, for example a benchmark regexp
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageBenchmarks {
+
+	private MessageBenchmarks() {
+	}
+	
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(MessageBenchmarks.class.getPackage().getName() + ".*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.build();
+		
+		new Runner(options).run();
+	}
+	
+}
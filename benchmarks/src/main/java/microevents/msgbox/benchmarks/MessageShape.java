@@ -0,0 +1,158 @@
+package microevents.msgbox.benchmarks;
+
+import java.util.Random;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageTable;
+import microevents.msgbox.impl.MessageTableImpl;
+
+/**
+ * MessageShape
+ * 
+ * Realistic message shapes used by all benchmarks
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+public enum MessageShape {
+
+	/**
+	 * A dozen routing headers and a small json payload
+	 */
+	
+	FLAT_HEADERS("payload.name") {
+		
+		@Override
+		public MessageBox newBox(Random random) {
+			
+			MessageBox box = newHeaders(MessageFactory.newBox(), random);
+			
+			MessageTable payload = new MessageTableImpl();
+			payload.putString("name", "order-" + random.nextInt(1000));
+			payload.putLong("amount", random.nextInt(100000));
+			
+			return box
+					.addPayloadUtf8("json", "{\"status\":\"ok\"}")
+					.addPayload("payload", payload);
+		}
+		
+	},
+	
+	/**
+	 * Deep nested tables, about 30KB serialized
+	 */
+	
+	NESTED_TABLES("payload.level0.level1.level2.level3.field7") {
+		
+		@Override
+		public MessageBox newBox(Random random) {
+			return newHeaders(MessageFactory.newBox(), random)
+					.addPayload("payload", newNestedTable(random, 0));
+		}
+		
+	},
+	
+	/**
+	 * Large binary blob with a few headers
+	 */
+	
+	LARGE_BINARY("payload.checksum") {
+		
+		@Override
+		public MessageBox newBox(Random random) {
+			
+			byte[] blob = new byte[64 * 1024];
+			random.nextBytes(blob);
+			
+			MessageTable payload = new MessageTableImpl();
+			payload.putLong("checksum", random.nextLong());
+			
+			return newHeaders(MessageFactory.newBox(), random)
+					.addPayload("blob", blob, false)
+					.addPayload("payload", payload);
+		}
+		
+	},
+	
+	/**
+	 * Int-keyed array of 10k readings
+	 */
+	
+	INT_ARRAY("payload[5000]") {
+		
+		@Override
+		public MessageBox newBox(Random random) {
+			
+			MessageTable payload = new MessageTableImpl();
+			for (int i = 0; i != 10000; ++i) {
+				payload.putDouble(i, random.nextDouble());
+			}
+			
+			return newHeaders(MessageFactory.newBox(), random)
+					.addPayload("payload", payload);
+		}
+		
+	};
+	
+	private final String path;
+	
+	private MessageShape(String path) {
+		this.path = path;
+	}
+	
+	/**
+	 * Gets path of the value in the box body that benchmarks look up
+	 * 
+	 * @return not null value expression
+	 */
+	
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * Creates a new message of this shape
+	 * 
+	 * @param random - source of the values
+	 * @return not null message box
+	 */
+	
+	public abstract MessageBox newBox(Random random);
+	
+	private static MessageBox newHeaders(MessageBox box, Random random) {
+		return box
+				.addHeader("id", Long.toHexString(random.nextLong()))
+				.addHeader("type", "order")
+				.addHeader("tenant", "tenant-" + random.nextInt(16))
+				.addHeader("source", "checkout")
+				.addHeader("timestamp", Long.toString(System.currentTimeMillis()))
+				.addHeader("trace", Long.toHexString(random.nextLong()))
+				.addHeader("span", Long.toHexString(random.nextLong()))
+				.addHeader("version", "1")
+				.addHeader("content-type", "application/msgpack")
+				.addHeader("region", "eu-west-1")
+				.addHeader("partition", Integer.toString(random.nextInt(64)))
+				.addHeader("priority", "normal");
+	}
+	
+	private static MessageTable newNestedTable(Random random, int level) {
+		
+		MessageTable table = new MessageTableImpl();
+		
+		for (int i = 0; i != 8; ++i) {
+			table.putString("field" + i, "value-" + random.nextInt(1000));
+			table.putLong("count" + i, random.nextInt());
+		}
+		
+		if (level < 4) {
+			for (int i = 0; i != 3; ++i) {
+				table.put("level" + level + (i == 0 ? "" : "_" + i), newNestedTable(random, level + 1));
+			}
+		}
+		
+		return table;
+	}
+	
+}
@@ -0,0 +1,85 @@
+package microevents.msgbox.benchmarks;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageProjection;
+import microevents.msgbox.impl.MessageBoxImpl;
+
+/**
+ * ParseBenchmark
+ * 
+ * Measures MessageFactory.parseBox over serialized messages,
+ * parseBoxNewUnpacker is the baseline with a new unpacker per message,
+ * parseProjectedBox materializes only the path of the shape
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param
+	public MessageShape shape;
+	
+	private byte[] msgpack;
+	private MessageProjection projection;
+	
+	@Setup
+	public void setup() {
+		msgpack = shape.newBox(new Random(1)).toByteArray();
+		projection = MessageFactory.newProjection(Collections.singletonList(MessageFactory.newExpression("body." + shape.getPath())));
+	}
+	
+	@Benchmark
+	public MessageBox parseBox() {
+		return MessageFactory.parseBox(msgpack);
+	}
+	
+	@Benchmark
+	public MessageBox parseBoxNewUnpacker() {
+		return new MessageBoxImpl(msgpack);
+	}
+	
+	@Benchmark
+	public String parseBoxHeader() {
+		return MessageFactory.parseBox(msgpack).getHeader("type");
+	}
+	
+	@Benchmark
+	public MessageBox parseProjectedBox() {
+		return MessageFactory.parseBox(msgpack, projection);
+	}
+	
+	@Benchmark
+	public String parseHeaders() {
+		return MessageFactory.parseHeaders(msgpack).get("type");
+	}
+	
+	@Benchmark
+	public String parseLazyBoxHeader() {
+		return MessageFactory.parseLazyBox(msgpack).getHeader("type");
+	}
+	
+}
@@ -0,0 +1,85 @@
+package microevents.msgbox.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageTable;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.MessageValueExpression;
+import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.impl.MessageValueExpressionImpl;
+
+/**
+ * PathBenchmark
+ * 
+ * Measures MessageTable.get(MessageValueExpression) over the message body
+ * and the same lookup over the serialized body with and without building the tables
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+	@Param
+	public MessageShape shape;
+	
+	private MessageTable body;
+	private String path;
+	private MessageValueExpression expression;
+	private byte[] blob;
+	
+	@Setup
+	public void setup() {
+		body = new MessageTableImpl();
+		body.put("payload", shape.newBox(new Random(1)).getPayload("payload"));
+		path = shape.getPath();
+		expression = new MessageValueExpressionImpl(path);
+		blob = body.toByteArray();
+	}
+	
+	@Benchmark
+	public MessageValue<?> get() {
+		return body.get(expression);
+	}
+	
+	@Benchmark
+	public MessageValue<?> parseAndGet() {
+		return body.get(new MessageValueExpressionImpl(path));
+	}
+	
+	@Benchmark
+	public MessageValue<?> cachedAndGet() {
+		return body.get(MessageFactory.newExpression(path));
+	}
+	
+	@Benchmark
+	public MessageValue<?> decodeAndGet() {
+		return ((MessageTable) MessageFactory.newValue(blob)).get(expression);
+	}
+	
+	@Benchmark
+	public MessageValue<?> getFromBytes() {
+		return MessageFactory.getValue(blob, expression);
+	}
+	
+}
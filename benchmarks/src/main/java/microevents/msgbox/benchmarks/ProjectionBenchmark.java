@@ -0,0 +1,77 @@
+package microevents.msgbox.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageProjection;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.MessageValueExpression;
+
+/**
+ * ProjectionBenchmark
+ * 
+ * Measures extraction of several header and body fields from the serialized message
+ * by separate path lookups and by one projection
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+	@Param
+	public MessageShape shape;
+	
+	private byte[] blob;
+	private List<MessageValueExpression> expressions;
+	private MessageProjection projection;
+	
+	@Setup
+	public void setup() {
+		
+		blob = shape.newBox(new Random(1)).toByteArray();
+		
+		expressions = new ArrayList<MessageValueExpression>();
+		for (String path : new String[] { "header.type", "header.tenant", "header.region", "header.partition", "body." + shape.getPath() }) {
+			expressions.add(MessageFactory.newExpression(path));
+		}
+		
+		projection = MessageFactory.newProjection(expressions);
+	}
+	
+	@Benchmark
+	public MessageValue<?>[] lookups() {
+		MessageValue<?>[] values = new MessageValue<?>[expressions.size()];
+		for (int i = 0; i != values.length; ++i) {
+			values[i] = MessageFactory.getBoxValue(blob, expressions.get(i));
+		}
+		return values;
+	}
+	
+	@Benchmark
+	public MessageValue<?>[] projection() {
+		return projection.extractBox(blob);
+	}
+	
+}
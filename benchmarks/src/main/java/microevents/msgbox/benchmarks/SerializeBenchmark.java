@@ -0,0 +1,79 @@
+package microevents.msgbox.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageSerializer;
+
+/**
+ * SerializeBenchmark
+ * 
+ * Measures MessageBox.toByteArray for built and parsed messages
+ * and the reusable serializer writing to the preallocated buffer
+ * 
+ * @author Alex Shvid
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+
+	@Param
+	public MessageShape shape;
+	
+	private MessageBox box;
+	private byte[] msgpack;
+	
+	private MessageSerializer serializer;
+	private ByteBuffer buffer;
+	
+	@Setup
+	public void setup() {
+		box = shape.newBox(new Random(1));
+		msgpack = box.toByteArray();
+		serializer = MessageFactory.newSerializer();
+		buffer = ByteBuffer.allocate(msgpack.length);
+	}
+	
+	@Benchmark
+	public byte[] toByteArray() {
+		return box.toByteArray();
+	}
+	
+	@Benchmark
+	public int writeToBuffer() {
+		buffer.clear();
+		return serializer.writeTo(box, buffer);
+	}
+	
+	@Benchmark
+	public byte[] addHeader() {
+		return MessageFactory.parseBox(msgpack).addHeader("trace", "enriched").toByteArray();
+	}
+	
+	@Benchmark
+	public byte[] addHeaderLazy() {
+		return MessageFactory.parseLazyBox(msgpack).addHeader("trace", "enriched").toByteArray();
+	}
+	
+}
@@ -0,0 +1,43 @@
+package microevents.msgbox;
+
+/**
+ * MessageBlock
+ *
+ * Decompressed block of serialized messages with the index of record offsets
+ *
+ * Records are parsed lazily on access, so reading one record of the block
+ * costs one decompression and one lazy parse
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageBlock {
+
+	/**
+	 * Gets offset of the block in the stream or buffer
+	 *
+	 * @return offset of the block start
+	 */
+
+	long getOffset();
+
+	/**
+	 * Gets number of records in the block
+	 *
+	 * @return number of records
+	 */
+
+	int size();
+
+	/**
+	 * Gets record by index
+	 *
+	 * @param index - index of the record in the block
+	 * @return not null lazy message
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+
+	MessageBox get(int index);
+
+}
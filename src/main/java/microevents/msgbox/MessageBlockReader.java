@@ -0,0 +1,17 @@
+package microevents.msgbox;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * MessageBlockReader
+ *
+ * Reads blocks written by MessageBlockWriter from the stream one at a time
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageBlockReader extends Iterator<MessageBlock>, Closeable {
+
+}
@@ -0,0 +1,58 @@
+package microevents.msgbox;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * MessageBlockWriter
+ *
+ * Groups serialized messages into compressed blocks for batched storage
+ *
+ * Block is closed before the next record once it reaches the block size,
+ * so the record is addressed by getBlockOffset() and the index returned by write()
+ *
+ * Not thread-safe
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageBlockWriter extends Flushable, Closeable {
+
+	/**
+	 * Adds message to the current block
+	 *
+	 * @param box - not null message
+	 * @return index of the record in the current block
+	 * @throws IOException
+	 */
+
+	int write(MessageBox box) throws IOException;
+
+	/**
+	 * Gets offset of the current block
+	 *
+	 * @return offset in the output stream
+	 */
+
+	long getBlockOffset();
+
+	/**
+	 * Gets number of bytes written to the output stream
+	 *
+	 * @return number of bytes of closed blocks
+	 */
+
+	long getWrittenBytes();
+
+	/**
+	 * Closes the current block if it is not empty and flushes the output stream
+	 *
+	 * @throws IOException
+	 */
+
+	@Override
+	void flush() throws IOException;
+
+}
@@ -1,7 +1,12 @@
 package microevents.msgbox;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Set;
 
+import org.msgpack.core.MessagePacker;
 import org.msgpack.value.Value;
 
 /**
@@ -48,6 +53,26 @@ public interface MessageBox {
   
   Set<String> getHeaderKeys();
   
+  /**
+   * Sets dictionary of table keys, id of the dictionary is recorded in the header
+   * 
+   * String keys of payload tables found in the dictionary are written by their indexes,
+   * so the dictionary must be registered by MessageFactory on the reader side
+   * 
+   * @param dictionary - dictionary or null to write keys as strings
+   * @return this
+   */
+  
+  MessageBox setDictionary(MessageDictionary dictionary);
+  
+  /**
+   * Gets dictionary of table keys
+   * 
+   * @return dictionary or null
+   */
+  
+  MessageDictionary getDictionary();
+  
 	/**
 	 * Adds payload to the message
 	 * 
@@ -68,6 +93,21 @@ public interface MessageBox {
 	 */
 	
 	MessageBox addPayload(String key, byte[] payload, boolean copy);
+	
+	/**
+	 * Adds payload to the message, compresses it if the length reaches the threshold
+	 * 
+	 * Compressed payload is decompressed on the first access to its bytes, 
+	 * payload is stored as is if compression does not make it smaller
+	 * 
+	 * @param key - name of the payload
+	 * @param payload - byte array, always copied
+	 * @param codec - not null codec registered by MessageFactory on the reader side
+	 * @param threshold - minimum length of the payload to compress
+	 * @return this
+	 */
+	
+	MessageBox addPayload(String key, byte[] payload, MessageCodec codec, int threshold);
 
 	/**
 	 * Adds payload as UTF-8 string
@@ -132,6 +172,18 @@ public interface MessageBox {
 	
 	String toJson();
 	
+	/**
+	 * Writes message in json format to the output
+	 * 
+	 * This method is faster then toJson() for big messages 
+	 * because does not create intermediate Value objects and string
+	 * 
+	 * @param out - output, for example StringBuilder or Writer
+	 * @throws IOException
+	 */
+	
+	void writeJsonTo(Appendable out) throws IOException;
+	
 	/**
 	 * Serialize message to MsgPack
 	 * 
@@ -140,6 +192,49 @@ public interface MessageBox {
 	
 	byte[] toByteArray();
 	
+	/**
+	 * Serializes message to the buffer starting from the current position
+	 * 
+	 * Heap buffers are written in place without intermediate byte array,
+	 * position of the buffer is not changed if message does not fit
+	 * 
+	 * @param buffer - not null output buffer, heap or direct
+	 * @return number of written bytes
+	 * @throws java.nio.BufferOverflowException if message does not fit
+	 */
+	
+	int writeTo(ByteBuffer buffer);
+	
+	/**
+	 * Serializes message to the stream and flushes it
+	 * 
+	 * @param out - not null output stream
+	 * @throws IOException
+	 */
+	
+	void writeTo(OutputStream out) throws IOException;
+	
+	/**
+	 * Serializes message to the blocking channel
+	 * 
+	 * @param channel - not null output channel
+	 * @throws IOException
+	 */
+	
+	void writeTo(WritableByteChannel channel) throws IOException;
+	
+	/**
+	 * Writes message to packer
+	 * 
+	 * This method is faster then toValue().writeTo(packer) 
+	 * because does not create intermediate Value object
+	 * 
+	 * @param packer - output packer
+	 * @throws IOException
+	 */
+	
+	void writeTo(MessagePacker packer) throws IOException;
+	
 	/**
 	 * Converts STEP message to MsgPack value
 	 * 
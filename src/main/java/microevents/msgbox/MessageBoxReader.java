@@ -0,0 +1,52 @@
+package microevents.msgbox;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * MessageBoxReader
+ *
+ * Reads back-to-back serialized messages from the stream one at a time
+ *
+ * Only the current message and the input buffer are kept in memory
+ *
+ * Headers could be read before the message by nextHeaders(), then the message
+ * is either completed by next() or skipped by skip() without decoding the body
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageBoxReader extends Iterator<MessageBox>, Closeable {
+
+	/**
+	 * Gets number of bytes consumed by the returned and skipped messages,
+	 * the message which header was read by nextHeaders() is not counted until it is completed
+	 *
+	 * @return offset of the next message in the stream
+	 */
+
+	long getReadBytes();
+
+	/**
+	 * Reads the header of the next message
+	 *
+	 * Reader stops right after the header entry or before the body of the message without header,
+	 * the body written before the header is buffered and parsed by next()
+	 *
+	 * @return not null read-only header
+	 * @throws java.util.NoSuchElementException if there are no more messages
+	 */
+
+	Map<String, String> nextHeaders();
+
+	/**
+	 * Skips the message which header was read by nextHeaders(), otherwise skips the next message
+	 *
+	 * @throws java.util.NoSuchElementException if there are no more messages
+	 */
+
+	void skip();
+
+}
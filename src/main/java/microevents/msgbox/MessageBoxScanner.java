@@ -0,0 +1,56 @@
+package microevents.msgbox;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * MessageBoxScanner
+ *
+ * Walks the memory mapped file of back-to-back serialized messages record by record
+ *
+ * The file is mapped by windows, so it could be bigger than 2GB, a single record could not.
+ * Messages are lazy and reference the mapped memory, payloads are decoded on the first access
+ *
+ * Record boundaries are found in the mapped memory without copying. On JDK 9 and later msgpack
+ * could not wrap direct memory, so parsing a record copies its bytes to the heap by chunks
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageBoxScanner extends Iterator<MessageBox>, Closeable {
+
+	/**
+	 * Gets offset of the next record
+	 *
+	 * @return offset in the file
+	 */
+
+	long position();
+
+	/**
+	 * Moves to the record
+	 *
+	 * @param offset - offset of the record start, usually returned by position()
+	 */
+
+	void seek(long offset);
+
+	/**
+	 * Reads the record without changing the position
+	 *
+	 * @param offset - offset of the record start
+	 * @return not null message
+	 */
+
+	MessageBox read(long offset);
+
+	/**
+	 * Gets size of the file
+	 *
+	 * @return size in bytes
+	 */
+
+	long size();
+
+}
@@ -0,0 +1,51 @@
+package microevents.msgbox;
+
+/**
+ * MessageCodec
+ *
+ * Compression codec of binary payloads
+ *
+ * Id of the codec is written with every compressed payload,
+ * so readers must have the codec registered under the same id
+ *
+ * Implementation must be thread-safe
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageCodec {
+
+	/**
+	 * Gets id of the codec
+	 *
+	 * @return id in range 0..255
+	 */
+
+	int getId();
+
+	/**
+	 * Compresses bytes
+	 *
+	 * @param data - not null array
+	 * @param offset - offset in the array
+	 * @param length - number of bytes
+	 * @return not null compressed bytes
+	 */
+
+	byte[] compress(byte[] data, int offset, int length);
+
+	/**
+	 * Decompresses bytes
+	 *
+	 * @param data - not null array
+	 * @param offset - offset in the array
+	 * @param length - number of compressed bytes
+	 * @param uncompressedLength - exact length of the result, read from the input, so it should not be allocated before the data inflates to it
+	 * @return not null uncompressed bytes
+	 * @throws microevents.msgbox.support.MessageBoxException for corrupted data
+	 */
+
+	byte[] decompress(byte[] data, int offset, int length, int uncompressedLength);
+
+}
@@ -16,6 +16,36 @@ public final class MessageConstants {
 
 	public static final String BODY_KEY = "body";
 	
+	/**
+	 * Canonical header-first layout of the serialized message is the map with HEADER_KEY entry first 
+	 * and BODY_KEY entry second, empty entries are omitted
+	 * 
+	 * All writers of the library produce the canonical layout, so a reader stops right after the header.
+	 * The body written before the header by other writers is buffered until the header is read,
+	 * so its dictionary keys are resolved. The layout is not marked on the wire, because older parsers reject unknown keys
+	 */
+	
 	public static final String HEADER_KEY = "header";
 	
+	/**
+	 * Header with the id of MessageDictionary used for table keys of the message,
+	 * the key is prefixed by the library name so it does not take common header names,
+	 * the value that is not the id of a registered dictionary is a plain header
+	 */
+	
+	public static final String DICTIONARY_HEADER = "msgbox-dict";
+	
+	/**
+	 * MsgPack ext type of the table key replaced by the dictionary index,
+	 * index is written in big-endian order by fixext1 or fixext2
+	 */
+	
+	public static final byte DICTIONARY_KEY_EXT_TYPE = 1;
+	
+	/**
+	 * MsgPack ext type of the compressed binary payload
+	 */
+	
+	public static final byte COMPRESSED_EXT_TYPE = 2;
+	
 }
@@ -0,0 +1,190 @@
+package microevents.msgbox;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * MessageDeserializer
+ *
+ * Reusable parsing context, keeps unpacker and its string decode buffers between calls
+ *
+ * Not thread-safe, use one instance per thread
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageDeserializer {
+
+	/**
+	 * Creates a message from serialized MsgPack blob
+	 *
+	 * @param blob - input buffer
+	 * @return not null instance
+	 */
+
+	MessageBox parseBox(byte[] blob);
+
+	/**
+	 * Creates a message from serialized MsgPack blob
+	 *
+	 * @param buffer - input buffer
+	 * @param offset - position in the buffer
+	 * @param length - length of the byte array
+	 * @return not null instance
+	 */
+
+	MessageBox parseBox(byte[] buffer, int offset, int length);
+
+	/**
+	 * Creates a message from serialized MsgPack blob
+	 *
+	 * @param buffer - input buffer, remaining bytes are used
+	 * @return not null instance
+	 */
+
+	MessageBox parseBox(ByteBuffer buffer);
+
+	/**
+	 * Creates a message with only projected payload paths from serialized MsgPack blob,
+	 * header is parsed whole, other payloads and entries are skipped without decoding
+	 *
+	 * @param blob - input buffer
+	 * @param projection - not null projection of paths starting from body
+	 * @return not null instance
+	 */
+
+	MessageBox parseBox(byte[] blob, MessageProjection projection);
+
+	/**
+	 * Creates a message with only projected payload paths from serialized MsgPack blob,
+	 * header is parsed whole, other payloads and entries are skipped without decoding
+	 *
+	 * @param buffer - input buffer, remaining bytes are used
+	 * @param projection - not null projection of paths starting from body
+	 * @return not null instance
+	 */
+
+	MessageBox parseBox(ByteBuffer buffer, MessageProjection projection);
+
+	/**
+	 * Parses only the header of serialized message, body is skipped without decoding
+	 *
+	 * @param blob - input buffer
+	 * @return not null read-only header
+	 */
+
+	Map<String, String> parseHeaders(byte[] blob);
+
+	/**
+	 * Parses only the header of serialized message, body is skipped without decoding
+	 *
+	 * @param buffer - input buffer
+	 * @param offset - position in the buffer
+	 * @param length - length of the byte array
+	 * @return not null read-only header
+	 */
+
+	Map<String, String> parseHeaders(byte[] buffer, int offset, int length);
+
+	/**
+	 * Parses only the header of serialized message, body is skipped without decoding
+	 *
+	 * @param buffer - input buffer, remaining bytes are used
+	 * @return not null read-only header
+	 */
+
+	Map<String, String> parseHeaders(ByteBuffer buffer);
+
+	/**
+	 * Parse value from buffer
+	 *
+	 * @param buffer - not null byte array
+	 * @return message value or null
+	 */
+
+	MessageValue<?> newValue(byte[] buffer);
+
+	/**
+	 * Parse value from buffer
+	 *
+	 * @param buffer - not null byte array
+	 * @param offset - offset in the array
+	 * @param length - length of the payload
+	 * @return message value or null
+	 */
+
+	MessageValue<?> newValue(byte[] buffer, int offset, int length);
+
+	/**
+	 * Parse value from ByteBuffer
+	 *
+	 * @param buffer - not null byte buffer, remaining bytes are used
+	 * @return message value or null
+	 */
+
+	MessageValue<?> newValue(ByteBuffer buffer);
+
+	/**
+	 * Parse value with only projected paths from buffer, other entries are skipped without decoding
+	 *
+	 * @param buffer - not null byte array
+	 * @param projection - not null projection
+	 * @return message value or null
+	 */
+
+	MessageValue<?> newValue(byte[] buffer, MessageProjection projection);
+
+	/**
+	 * Parse value with only projected paths from ByteBuffer, other entries are skipped without decoding
+	 *
+	 * @param buffer - not null byte buffer, remaining bytes are used
+	 * @param projection - not null projection
+	 * @return message value or null
+	 */
+
+	MessageValue<?> newValue(ByteBuffer buffer, MessageProjection projection);
+
+	/**
+	 * Gets value at the path of serialized value without parsing other entries
+	 *
+	 * @param buffer - not null byte array
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	MessageValue<?> getValue(byte[] buffer, MessageValueExpression ve);
+
+	/**
+	 * Gets value at the path of serialized value without parsing other entries
+	 *
+	 * @param buffer - not null byte buffer, remaining bytes are used
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	MessageValue<?> getValue(ByteBuffer buffer, MessageValueExpression ve);
+
+	/**
+	 * Gets value at the path of serialized message without parsing other entries,
+	 * the path starts from header or body, for example body.x.y[3]
+	 *
+	 * @param blob - not null input buffer
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	MessageValue<?> getBoxValue(byte[] blob, MessageValueExpression ve);
+
+	/**
+	 * Gets value at the path of serialized message without parsing other entries,
+	 * the path starts from header or body, for example body.x.y[3]
+	 *
+	 * @param buffer - not null input buffer, remaining bytes are used
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	MessageValue<?> getBoxValue(ByteBuffer buffer, MessageValueExpression ve);
+
+}
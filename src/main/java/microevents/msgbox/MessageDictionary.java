@@ -0,0 +1,54 @@
+package microevents.msgbox;
+
+/**
+ * MessageDictionary
+ *
+ * Registered schema dictionary of table keys
+ *
+ * Message with the dictionary writes string keys of its payload tables found in the dictionary
+ * as small ext values with the index of the key, id of the dictionary is recorded in the header.
+ * Readers must have the same dictionary registered under the same id
+ *
+ * Dictionary is immutable, new keys require a new id
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageDictionary {
+
+	/**
+	 * Gets id of the dictionary
+	 *
+	 * @return id recorded in the header
+	 */
+
+	int getId();
+
+	/**
+	 * Gets number of keys
+	 *
+	 * @return size of the dictionary
+	 */
+
+	int size();
+
+	/**
+	 * Gets key by index
+	 *
+	 * @param index - index of the key
+	 * @return key or null if index is out of range
+	 */
+
+	String getKey(int index);
+
+	/**
+	 * Finds index of the key
+	 *
+	 * @param key - not null key
+	 * @return index or -1 if key is not in the dictionary
+	 */
+
+	int indexOf(String key);
+
+}
@@ -1,17 +1,42 @@
 package microevents.msgbox;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.Map;
 
 import org.msgpack.core.MessageFormat;
 import org.msgpack.core.MessagePack;
 import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
 
+import microevents.msgbox.impl.MessageBlockImpl;
+import microevents.msgbox.impl.MessageBlockReaderImpl;
+import microevents.msgbox.impl.MessageBlockWriterImpl;
 import microevents.msgbox.impl.MessageBooleanImpl;
 import microevents.msgbox.impl.MessageNumberImpl;
 import microevents.msgbox.impl.MessageStringImpl;
+import microevents.msgbox.impl.MessagePredicateImpl;
+import microevents.msgbox.impl.MessageProjectionImpl;
 import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.impl.MessageValueExpressionImpl;
 import microevents.msgbox.impl.MessageBoxImpl;
+import microevents.msgbox.impl.MessageBoxReaderImpl;
+import microevents.msgbox.impl.MessageBoxScannerImpl;
+import microevents.msgbox.impl.MessageCodecRegistry;
+import microevents.msgbox.impl.MessageDictionaryImpl;
+import microevents.msgbox.impl.DirectBufferInput;
+import microevents.msgbox.impl.MessageDeserializerImpl;
+import microevents.msgbox.impl.MessageFrameCodecImpl;
+import microevents.msgbox.impl.MessageJsonTranscoder;
+import microevents.msgbox.impl.MessageSerializerImpl;
+import microevents.msgbox.impl.StringInternTable;
 import microevents.msgbox.support.MessageException;
 import microevents.msgbox.support.MessageNumberFormatException;
 import microevents.msgbox.support.MessageParseException;
@@ -40,6 +65,18 @@ public final class MessageFactory {
 		return new MessageBoxImpl();
 	}
 	
+	/**
+	 * Creates a new serializer that reuses packer and buffers between calls
+	 * 
+	 * Serializer is not thread-safe, use one instance per thread
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageSerializer newSerializer() {
+		return new MessageSerializerImpl();
+	}
+	
 	/**
 	 * Creates a message from serialized MsgPack blob
 	 * 
@@ -49,7 +86,7 @@ public final class MessageFactory {
 	 */
 	
 	public static final MessageBox parseBox(byte[] blob) {
-		return new MessageBoxImpl(blob);
+		return MessageDeserializerImpl.local().parseBox(blob);
 	}
 	
 	/**
@@ -63,7 +100,7 @@ public final class MessageFactory {
 	 */
 	
 	public static final MessageBox parseBox(byte[] buffer, int offset, int length) {
-		return new MessageBoxImpl(buffer, offset, length);
+		return MessageDeserializerImpl.local().parseBox(buffer, offset, length);
 	}
 	
 	/**
@@ -75,7 +112,388 @@ public final class MessageFactory {
 	 */
 	
 	public static final MessageBox parseBox(ByteBuffer buffer) {
-		return new MessageBoxImpl(buffer);
+		return MessageDeserializerImpl.local().parseBox(buffer);
+	}
+	
+	/**
+	 * Creates a message with only projected payload paths from serialized MsgPack blob,
+	 * header is parsed whole, other payloads and entries are skipped without decoding
+	 * 
+	 * @param blob - input buffer
+	 * @param projection - not null projection of paths starting from body, for example body.order.amount
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBox parseBox(byte[] blob, MessageProjection projection) {
+		return MessageDeserializerImpl.local().parseBox(blob, projection);
+	}
+	
+	/**
+	 * Creates a message with only projected payload paths from serialized MsgPack blob,
+	 * header is parsed whole, other payloads and entries are skipped without decoding
+	 * 
+	 * @param buffer - input buffer
+	 * @param projection - not null projection of paths starting from body, for example body.order.amount
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBox parseBox(ByteBuffer buffer, MessageProjection projection) {
+		return MessageDeserializerImpl.local().parseBox(buffer, projection);
+	}
+	
+	/**
+	 * Parses only the header of serialized message
+	 * 
+	 * Body is skipped without decoding and parsing stops right after the header,
+	 * so the cost does not depend on the payload size when header is written first
+	 * 
+	 * @param blob - input buffer
+	 * 
+	 * @return not null read-only header
+	 */
+	
+	public static final Map<String, String> parseHeaders(byte[] blob) {
+		return MessageDeserializerImpl.local().parseHeaders(blob);
+	}
+	
+	/**
+	 * Parses only the header of serialized message
+	 * 
+	 * @param buffer - input buffer
+	 * @param offset - position in the buffer
+	 * @param length - length of the byte array
+	 * 
+	 * @return not null read-only header
+	 */
+	
+	public static final Map<String, String> parseHeaders(byte[] buffer, int offset, int length) {
+		return MessageDeserializerImpl.local().parseHeaders(buffer, offset, length);
+	}
+	
+	/**
+	 * Parses only the header of serialized message
+	 * 
+	 * @param buffer - input buffer, remaining bytes are used
+	 * 
+	 * @return not null read-only header
+	 */
+	
+	public static final Map<String, String> parseHeaders(ByteBuffer buffer) {
+		return MessageDeserializerImpl.local().parseHeaders(buffer);
+	}
+	
+	/**
+	 * Parses only the header of the next message of the unpacker
+	 * 
+	 * Body is skipped without decoding, the unpacker stays at the next message
+	 * 
+	 * @param unpacker - not null unpacker
+	 * 
+	 * @return not null read-only header
+	 * @throws IOException
+	 */
+	
+	public static final Map<String, String> parseHeaders(MessageUnpacker unpacker) throws IOException {
+		return MessageBoxImpl.parseHeaders(unpacker, true);
+	}
+	
+	/**
+	 * Creates a message from the next value of the unpacker
+	 * 
+	 * @param unpacker - not null unpacker
+	 * 
+	 * @return not null instance
+	 * @throws IOException
+	 */
+	
+	public static final MessageBox parseBox(MessageUnpacker unpacker) throws IOException {
+		return new MessageBoxImpl(unpacker);
+	}
+	
+	/**
+	 * Creates a new deserializer that reuses unpacker between calls
+	 * 
+	 * Deserializer is not thread-safe, use one instance per thread
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageDeserializer newDeserializer() {
+		return new MessageDeserializerImpl();
+	}
+	
+	/**
+	 * Creates a new codec of length-prefixed frames
+	 * 
+	 * Codec is not thread-safe, use one instance per thread
+	 * 
+	 * @param checksum - add CRC-32C to every frame
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageFrameCodec newFrameCodec(boolean checksum) {
+		return new MessageFrameCodecImpl(checksum);
+	}
+	
+	/**
+	 * Creates and registers dictionary of table keys
+	 * 
+	 * @param id - id of the dictionary recorded in the header of messages
+	 * @param keys - not null unique keys, index of the key is written instead of the key
+	 * 
+	 * @return not null registered instance, the already registered one if it has the same keys
+	 * @throws IllegalArgumentException if other keys are registered with the same id
+	 */
+	
+	public static final MessageDictionary newDictionary(int id, List<String> keys) {
+		return MessageDictionaryImpl.register(new MessageDictionaryImpl(id, keys));
+	}
+	
+	/**
+	 * Registers dictionary of table keys, the same instance or a dictionary with the same keys could be registered again
+	 * 
+	 * @param dictionary - not null dictionary
+	 * @throws IllegalArgumentException if other keys are registered with the same id
+	 */
+	
+	public static final void registerDictionary(MessageDictionary dictionary) {
+		MessageDictionaryImpl.register(dictionary);
+	}
+	
+	/**
+	 * Gets registered dictionary
+	 * 
+	 * @param id - id of the dictionary
+	 * 
+	 * @return dictionary or null
+	 */
+	
+	public static final MessageDictionary getDictionary(int id) {
+		return MessageDictionaryImpl.find(id);
+	}
+	
+	/**
+	 * Gets the default deflate codec of payloads
+	 * 
+	 * @return not null registered instance
+	 */
+	
+	public static final MessageCodec getDeflateCodec() {
+		return MessageCodecRegistry.DEFLATE;
+	}
+	
+	/**
+	 * Registers compression codec of payloads, the same instance could be registered again
+	 * 
+	 * @param codec - not null codec
+	 * @throws IllegalArgumentException if other codec has the same id
+	 */
+	
+	public static final void registerCodec(MessageCodec codec) {
+		MessageCodecRegistry.register(codec);
+	}
+	
+	/**
+	 * Gets registered compression codec
+	 * 
+	 * @param id - id of the codec
+	 * 
+	 * @return codec or null
+	 */
+	
+	public static final MessageCodec getCodec(int id) {
+		return MessageCodecRegistry.find(id);
+	}
+	
+	/**
+	 * Creates a reader of back-to-back serialized messages
+	 * 
+	 * @param in - not null input stream, closed by the reader
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBoxReader newBoxReader(InputStream in) {
+		if (in == null) {
+			throw new IllegalArgumentException("null input stream");
+		}
+		return new MessageBoxReaderImpl(MessagePack.newDefaultUnpacker(in));
+	}
+	
+	/**
+	 * Creates a reader of back-to-back serialized messages
+	 * 
+	 * @param channel - not null blocking channel, closed by the reader
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBoxReader newBoxReader(ReadableByteChannel channel) {
+		if (channel == null) {
+			throw new IllegalArgumentException("null channel");
+		}
+		return new MessageBoxReaderImpl(MessagePack.newDefaultUnpacker(channel));
+	}
+	
+	/**
+	 * Creates a writer of compressed blocks of messages
+	 * 
+	 * @param out - not null output stream, closed by the writer
+	 * @param codec - registered codec or null to store blocks without compression
+	 * @param blockSize - size of serialized messages to close the block
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBlockWriter newBlockWriter(OutputStream out, MessageCodec codec, int blockSize) {
+		return new MessageBlockWriterImpl(out, codec, blockSize);
+	}
+	
+	/**
+	 * Creates a reader of compressed blocks of messages
+	 * 
+	 * @param in - not null input stream, closed by the reader
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBlockReader newBlockReader(InputStream in) {
+		return new MessageBlockReaderImpl(in);
+	}
+	
+	/**
+	 * Creates a reader of compressed blocks of messages
+	 * 
+	 * @param in - not null input stream, closed by the reader
+	 * @param maxBlockSize - limit of the block length and the uncompressed data length, bigger blocks fail the read
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBlockReader newBlockReader(InputStream in, int maxBlockSize) {
+		return new MessageBlockReaderImpl(in, maxBlockSize);
+	}
+	
+	/**
+	 * Reads compressed block of messages at the current position of the buffer,
+	 * position is moved to the next block
+	 * 
+	 * @param buffer - not null buffer, usually memory mapped file at the block offset
+	 * 
+	 * @return not null block
+	 */
+	
+	public static final MessageBlock parseBlock(ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		return MessageBlockImpl.read(buffer, buffer.position());
+	}
+	
+	/**
+	 * Creates a scanner over the memory mapped file of back-to-back serialized messages
+	 * 
+	 * @param file - not null file
+	 * 
+	 * @return not null instance
+	 * @throws IOException
+	 */
+	
+	public static final MessageBoxScanner newBoxScanner(File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("null file");
+		}
+		
+		FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+		
+		boolean done = false;
+		
+		try {
+			MessageBoxScanner scanner = newBoxScanner(channel);
+			done = true;
+			return scanner;
+		}
+		finally {
+			if (!done) {
+				channel.close();
+			}
+		}
+	}
+	
+	/**
+	 * Creates a scanner over the memory mapped file of back-to-back serialized messages
+	 * 
+	 * @param channel - not null file channel, closed by the scanner
+	 * 
+	 * @return not null instance
+	 * @throws IOException
+	 */
+	
+	public static final MessageBoxScanner newBoxScanner(FileChannel channel) throws IOException {
+		return new MessageBoxScannerImpl(channel, MessageBoxScannerImpl.DEFAULT_WINDOW_SIZE);
+	}
+	
+	/**
+	 * Creates a scanner over the memory mapped file of back-to-back serialized messages
+	 * 
+	 * @param channel - not null file channel, closed by the scanner
+	 * @param windowSize - size of the mapped window, grows for the bigger records
+	 * 
+	 * @return not null instance
+	 * @throws IOException
+	 */
+	
+	public static final MessageBoxScanner newBoxScanner(FileChannel channel, int windowSize) throws IOException {
+		return new MessageBoxScannerImpl(channel, windowSize);
+	}
+	
+	/**
+	 * Creates a lazy message from serialized MsgPack blob
+	 * 
+	 * Header and payloads are decoded on the first access,
+	 * the blob must not be modified while the message is in use
+	 * 
+	 * @param blob - input buffer
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBox parseLazyBox(byte[] blob) {
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		return new MessageBoxImpl(ByteBuffer.wrap(blob), true);
+	}
+	
+	/**
+	 * Creates a lazy message from serialized MsgPack blob
+	 * 
+	 * @param buffer - input buffer
+	 * @param offset - position in the buffer
+	 * @param length - length of the byte array
+	 * @return not null instance
+	 */
+	
+	public static final MessageBox parseLazyBox(byte[] buffer, int offset, int length) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		return new MessageBoxImpl(ByteBuffer.wrap(buffer, offset, length), true);
+	}
+	
+	/**
+	 * Creates a lazy message from serialized MsgPack blob
+	 * 
+	 * @param buffer - input buffer, remaining bytes are used
+	 * 
+	 * @return not null instance
+	 */
+	
+	public static final MessageBox parseLazyBox(ByteBuffer buffer) {
+		return new MessageBoxImpl(buffer, true);
 	}
 	
 	/**
@@ -123,12 +541,7 @@ public final class MessageFactory {
 		if (buffer == null) {
 			throw new IllegalArgumentException("null buffer");
 		}
-		MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffer, offset, length);
-		try {
-			return newValue(unpacker);
-		} catch (IOException e) {
-			throw new MessageException("unexpected IOException", e);
-		}
+		return MessageDeserializerImpl.local().newValue(buffer, offset, length);
 	}
 
 	/**
@@ -143,12 +556,79 @@ public final class MessageFactory {
 		if (buffer == null) {
 			throw new IllegalArgumentException("null buffer");
 		}
-		MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffer);
-		try {
-			return newValue(unpacker);
-		} catch (IOException e) {
-			throw new MessageException("unexpected IOException", e);
-		}
+		return MessageDeserializerImpl.local().newValue(buffer);
+	}
+
+	/**
+	 * Parse value with only projected paths from buffer, other entries are skipped without decoding
+	 * 
+	 * @param buffer - not null byte array
+	 * @param projection - not null projection
+	 * @return message value or null
+	 */
+
+	public static MessageValue<?> newValue(byte[] buffer, MessageProjection projection) {
+		return MessageDeserializerImpl.local().newValue(buffer, projection);
+	}
+
+	/**
+	 * Parse value with only projected paths from ByteBuffer, other entries are skipped without decoding
+	 * 
+	 * @param buffer - not null byte buffer
+	 * @param projection - not null projection
+	 * @return message value or null
+	 */
+
+	public static MessageValue<?> newValue(ByteBuffer buffer, MessageProjection projection) {
+		return MessageDeserializerImpl.local().newValue(buffer, projection);
+	}
+
+	/**
+	 * Gets value at the path of serialized value, other entries are skipped without decoding
+	 * 
+	 * @param buffer - not null byte array
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	public static MessageValue<?> getValue(byte[] buffer, MessageValueExpression ve) {
+		return MessageDeserializerImpl.local().getValue(buffer, ve);
+	}
+
+	/**
+	 * Gets value at the path of serialized value, other entries are skipped without decoding
+	 * 
+	 * @param buffer - not null byte buffer
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	public static MessageValue<?> getValue(ByteBuffer buffer, MessageValueExpression ve) {
+		return MessageDeserializerImpl.local().getValue(buffer, ve);
+	}
+
+	/**
+	 * Gets value at the path of serialized message, the path starts from header or body
+	 * 
+	 * @param blob - not null input buffer
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	public static MessageValue<?> getBoxValue(byte[] blob, MessageValueExpression ve) {
+		return MessageDeserializerImpl.local().getBoxValue(blob, ve);
+	}
+
+	/**
+	 * Gets value at the path of serialized message, the path starts from header or body
+	 * 
+	 * @param buffer - not null input buffer
+	 * @param ve - not null expression
+	 * @return message value or null
+	 */
+
+	public static MessageValue<?> getBoxValue(ByteBuffer buffer, MessageValueExpression ve) {
+		return MessageDeserializerImpl.local().getBoxValue(buffer, ve);
 	}
 
 	/**
@@ -160,6 +640,19 @@ public final class MessageFactory {
 	 */
 
 	public static MessageValue<?> newValue(MessageUnpacker unpacker) throws IOException {
+		return newValue(unpacker, null);
+	}
+
+	/**
+	 * Parse value from message unpacker, table keys written by the dictionary indexes are decoded
+	 * 
+	 * @param unpacker - message unpacker
+	 * @param dictionary - dictionary or null
+	 * @return Msg value or null
+	 * @throws IOException
+	 */
+
+	public static MessageValue<?> newValue(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
 
 		if (unpacker == null) {
 			throw new IllegalArgumentException("null unpacker");
@@ -177,11 +670,11 @@ public final class MessageFactory {
 		}
 
 		else if (isArray(format)) {
-			return newArray(unpacker);
+			return newArray(unpacker, dictionary);
 		}
 
 		else if (isMap(format)) {
-			return newMap(unpacker);
+			return newMap(unpacker, dictionary);
 		}
 
 		else {
@@ -190,7 +683,7 @@ public final class MessageFactory {
 
 	}
 
-  private static MessageValue<?> newArray(MessageUnpacker unpacker) throws IOException {
+  private static MessageValue<?> newArray(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
 
   	MessageTableImpl table = new MessageTableImpl();
   	
@@ -201,7 +694,7 @@ public final class MessageFactory {
 
     for (int i = 0; i != arraySize; ++i) {
     	
-      MessageValue<?> value = newValue(unpacker);
+      MessageValue<?> value = newValue(unpacker, dictionary);
 
       if (value != null) {
       	table.put(i, value);
@@ -212,7 +705,7 @@ public final class MessageFactory {
     return table;
   }
 
-  private static MessageValue<?> newMap(MessageUnpacker unpacker) throws IOException {
+  private static MessageValue<?> newMap(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
 
   	MessageTableImpl table = new MessageTableImpl();
   	
@@ -223,8 +716,24 @@ public final class MessageFactory {
 
     for (int i = 0; i != mapSize; ++i) {
     	
+    	MessageFormat format = unpacker.getNextFormat();
+    	
+    	if (format.getValueType() == ValueType.STRING || MessageDictionaryImpl.isKey(format)) {
+    		
+    		String key = format.getValueType() == ValueType.STRING ? 
+    				StringInternTable.KEYS.unpackString(unpacker) : MessageDictionaryImpl.unpackKey(unpacker, dictionary);
+    		
+    		MessageValue<?> value = newValue(unpacker, dictionary);
+    		
+    		if (key != null && value != null) {
+    			table.put(key, value);
+    		}
+    		
+    		continue;
+    	}
+    	
     	MessageValue<?> key = newValue(unpacker);
-      MessageValue<?> value = newValue(unpacker);
+      MessageValue<?> value = newValue(unpacker, dictionary);
 
       if (key != null && value != null) {
       	
@@ -283,6 +792,121 @@ public final class MessageFactory {
 
 	}
 	
+	/**
+	 * Writes serialized MsgPack message as json without parsing it to the message box
+	 * 
+	 * @param blob - input buffer
+	 * @param out - output, for example StringBuilder or Writer
+	 * @throws IOException
+	 */
+	
+	public static void writeBoxJson(byte[] blob, Appendable out) throws IOException {
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		new MessageJsonTranscoder(MessagePack.newDefaultUnpacker(blob), out).writeBox();
+	}
+	
+	/**
+	 * Writes serialized MsgPack message as json without parsing it to the message box
+	 * 
+	 * @param buffer - input buffer
+	 * @param offset - position in the buffer
+	 * @param length - length of the byte array
+	 * @param out - output, for example StringBuilder or Writer
+	 * @throws IOException
+	 */
+	
+	public static void writeBoxJson(byte[] buffer, int offset, int length, Appendable out) throws IOException {
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		new MessageJsonTranscoder(MessagePack.newDefaultUnpacker(buffer, offset, length), out).writeBox();
+	}
+	
+	/**
+	 * Writes serialized MsgPack message as json without parsing it to the message box
+	 * 
+	 * @param buffer - input buffer
+	 * @param out - output, for example StringBuilder or Writer
+	 * @throws IOException
+	 */
+	
+	public static void writeBoxJson(ByteBuffer buffer, Appendable out) throws IOException {
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		new MessageJsonTranscoder(DirectBufferInput.newUnpacker(buffer), out).writeBox();
+	}
+	
+	/**
+	 * Converts serialized MsgPack message to json without parsing it to the message box
+	 * 
+	 * @param blob - input buffer
+	 * @return not null json
+	 */
+	
+	public static String toBoxJson(byte[] blob) {
+		StringBuilder out = new StringBuilder();
+		try {
+			writeBoxJson(blob, out);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+		return out.toString();
+	}
+	
+	/**
+	 * Writes serialized MsgPack value as json without parsing it to the message value
+	 * 
+	 * @param buffer - not null byte array
+	 * @param offset - offset in the array
+	 * @param length - length of the payload
+	 * @param out - output, for example StringBuilder or Writer
+	 * @throws IOException
+	 */
+	
+	public static void writeValueJson(byte[] buffer, int offset, int length, Appendable out) throws IOException {
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+		new MessageJsonTranscoder(MessagePack.newDefaultUnpacker(buffer, offset, length), out).writeValue();
+	}
+	
+	/**
+	 * Gets compiled value expression, expressions are cached by the string
+	 * 
+	 * @param valueExpression - not null expression, for example education[2].name
+	 * @return not null shared expression
+	 */
+
+	public static final MessageValueExpression newExpression(String valueExpression) {
+		return MessageValueExpressionImpl.compile(valueExpression);
+	}
+
+	/**
+	 * Creates projection that extracts values of all expressions by one pass
+	 * 
+	 * @param expressions - not null expressions
+	 * @return not null thread-safe projection
+	 */
+
+	public static final MessageProjection newProjection(List<MessageValueExpression> expressions) {
+		return new MessageProjectionImpl(expressions);
+	}
+
+	/**
+	 * Compiles condition over values of serialized messages, for example header.type == "order" &amp;&amp; body.order.amount &gt; 1000
+	 * 
+	 * @param condition - not null condition
+	 * @return not null thread-safe predicate
+	 * @throws MessageParseException for invalid condition
+	 */
+
+	public static final MessagePredicate newPredicate(String condition) {
+		return new MessagePredicateImpl(condition);
+	}
+
 	/**
 	 * Parse stringify value primitive value
 	 * 
@@ -0,0 +1,97 @@
+package microevents.msgbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * MessageFrameCodec
+ *
+ * Length-prefixed framing of messages for storages and logs
+ *
+ * Frame is the unsigned varint length of the message, MsgPack message
+ * and optional CRC-32C of the message in little-endian order.
+ * Checksum is not marked in the frame, both sides must use the same setting
+ *
+ * Not thread-safe, use one instance per thread
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageFrameCodec {
+
+	/**
+	 * Checks if frames have checksum
+	 *
+	 * @return true if CRC-32C follows every message
+	 */
+
+	boolean hasChecksum();
+
+	/**
+	 * Encodes messages to one contiguous array of frames
+	 *
+	 * @param boxes - not null messages
+	 * @return not null array
+	 */
+
+	byte[] encode(List<MessageBox> boxes);
+
+	/**
+	 * Encodes messages to the buffer starting from the current position
+	 *
+	 * Position of the buffer is not changed if frames do not fit
+	 *
+	 * @param boxes - not null messages
+	 * @param buffer - not null output buffer
+	 * @return number of written bytes
+	 * @throws java.nio.BufferOverflowException if frames do not fit
+	 */
+
+	int encode(List<MessageBox> boxes, ByteBuffer buffer);
+
+	/**
+	 * Encodes messages and writes all frames to the stream by one write call
+	 *
+	 * @param boxes - not null messages
+	 * @param out - not null output stream
+	 * @throws IOException
+	 */
+
+	void encode(List<MessageBox> boxes, OutputStream out) throws IOException;
+
+	/**
+	 * Decodes all frames of the array
+	 *
+	 * @param frames - not null array
+	 * @return not null list of messages
+	 * @throws microevents.msgbox.support.MessageBoxException for truncated or corrupted frames
+	 */
+
+	List<MessageBox> decode(byte[] frames);
+
+	/**
+	 * Decodes all frames of the array region
+	 *
+	 * @param frames - not null array
+	 * @param offset - offset in the array
+	 * @param length - length of the frames
+	 * @return not null list of messages
+	 * @throws microevents.msgbox.support.MessageBoxException for truncated or corrupted frames
+	 */
+
+	List<MessageBox> decode(byte[] frames, int offset, int length);
+
+	/**
+	 * Decodes all remaining frames of the buffer, position is moved to the limit
+	 *
+	 * @param frames - not null buffer
+	 * @return not null list of messages
+	 * @throws microevents.msgbox.support.MessageBoxException for truncated or corrupted frames
+	 */
+
+	List<MessageBox> decode(ByteBuffer frames);
+
+}
@@ -0,0 +1,50 @@
+package microevents.msgbox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MessagePredicate
+ *
+ * Compiled condition over values of the message, for example
+ *
+ * <pre>
+ * header.type == "order" &amp;&amp; body.order.amount &gt; 1000
+ * </pre>
+ *
+ * Format of the condition:
+ * path - box path starting from header or body, true if the value is true
+ * path == literal, path != literal, path &gt; literal, path &gt;= literal, path &lt; literal, path &lt;= literal
+ * literal - "string", number, true, false or null
+ * !condition, condition &amp;&amp; condition, condition || condition, (condition)
+ *
+ * Numbers are compared with number values and numeric strings, strings with the string form of the value.
+ * Missing value or value of other type is not equal to the literal: != is true, other operators are false,
+ * so !(path == literal) and path != literal agree. Literal null is equal only to the missing value
+ *
+ * Predicate is immutable and thread-safe
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessagePredicate {
+
+	/**
+	 * Tests serialized message, values are read by the paths only when the outcome is not known yet
+	 *
+	 * @param blob - not null input buffer
+	 * @return true if the message matches
+	 */
+
+	boolean test(byte[] blob);
+
+	/**
+	 * Tests serialized message, values are read by the paths only when the outcome is not known yet
+	 *
+	 * @param buffer - not null input buffer, remaining bytes are used
+	 * @return true if the message matches
+	 */
+
+	boolean test(ByteBuffer buffer);
+
+}
@@ -0,0 +1,83 @@
+package microevents.msgbox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MessageProjection
+ *
+ * Compiled set of value expressions, extracts values of all expressions by one pass
+ * over the table or the serialized bytes
+ *
+ * Results are returned in the order of expressions, missing paths give null
+ *
+ * Projection is immutable and thread-safe
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageProjection {
+
+	/**
+	 * Gets number of expressions
+	 *
+	 * @return size
+	 */
+
+	int size();
+
+	/**
+	 * Gets i-th expression
+	 *
+	 * @param i - index of the expression
+	 * @return not null expression
+	 */
+
+	MessageValueExpression get(int i);
+
+	/**
+	 * Extracts values from the table
+	 *
+	 * @param table - not null table
+	 * @return not null array of values by index of the expression
+	 */
+
+	MessageValue<?>[] extract(MessageTable table);
+
+	/**
+	 * Extracts values from serialized value, entries out of expressions are skipped without decoding
+	 *
+	 * @param buffer - not null byte array
+	 * @return not null array of values by index of the expression
+	 */
+
+	MessageValue<?>[] extract(byte[] buffer);
+
+	/**
+	 * Extracts values from serialized value, entries out of expressions are skipped without decoding
+	 *
+	 * @param buffer - not null byte buffer, remaining bytes are used
+	 * @return not null array of values by index of the expression
+	 */
+
+	MessageValue<?>[] extract(ByteBuffer buffer);
+
+	/**
+	 * Extracts values from serialized message, expressions start from header or body
+	 *
+	 * @param blob - not null input buffer
+	 * @return not null array of values by index of the expression
+	 */
+
+	MessageValue<?>[] extractBox(byte[] blob);
+
+	/**
+	 * Extracts values from serialized message, expressions start from header or body
+	 *
+	 * @param buffer - not null input buffer, remaining bytes are used
+	 * @return not null array of values by index of the expression
+	 */
+
+	MessageValue<?>[] extractBox(ByteBuffer buffer);
+
+}
@@ -0,0 +1,105 @@
+package microevents.msgbox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * MessageSerializer
+ *
+ * Reusable serialization context, keeps packer and buffers between calls
+ *
+ * Not thread-safe, use one instance per thread
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public interface MessageSerializer {
+
+	/**
+	 * Serializes message to MsgPack
+	 *
+	 * @param box - not null message
+	 * @return not null byte array
+	 */
+
+	byte[] toByteArray(MessageBox box);
+
+	/**
+	 * Serializes value to MsgPack
+	 *
+	 * @param value - not null value
+	 * @return not null byte array
+	 */
+
+	byte[] toByteArray(MessageValue<?> value);
+
+	/**
+	 * Writes message to the buffer starting from the current position
+	 *
+	 * Position of the buffer is not changed if message does not fit
+	 *
+	 * @param box - not null message
+	 * @param buffer - not null and not read-only output buffer
+	 * @return number of written bytes
+	 * @throws java.nio.BufferOverflowException if message does not fit
+	 */
+
+	int writeTo(MessageBox box, ByteBuffer buffer);
+
+	/**
+	 * Writes value to the buffer starting from the current position
+	 *
+	 * Position of the buffer is not changed if value does not fit
+	 *
+	 * @param value - not null value
+	 * @param buffer - not null and not read-only output buffer
+	 * @return number of written bytes
+	 * @throws java.nio.BufferOverflowException if value does not fit
+	 */
+
+	int writeTo(MessageValue<?> value, ByteBuffer buffer);
+
+	/**
+	 * Writes message to the stream and flushes it
+	 *
+	 * @param box - not null message
+	 * @param out - not null output stream
+	 * @throws IOException
+	 */
+
+	void writeTo(MessageBox box, OutputStream out) throws IOException;
+
+	/**
+	 * Writes value to the stream and flushes it
+	 *
+	 * @param value - not null value
+	 * @param out - not null output stream
+	 * @throws IOException
+	 */
+
+	void writeTo(MessageValue<?> value, OutputStream out) throws IOException;
+
+	/**
+	 * Writes message to the blocking channel
+	 *
+	 * @param box - not null message
+	 * @param channel - not null output channel
+	 * @throws IOException
+	 */
+
+	void writeTo(MessageBox box, WritableByteChannel channel) throws IOException;
+
+	/**
+	 * Writes value to the blocking channel
+	 *
+	 * @param value - not null value
+	 * @param channel - not null output channel
+	 * @throws IOException
+	 */
+
+	void writeTo(MessageValue<?> value, WritableByteChannel channel) throws IOException;
+
+}
@@ -19,6 +19,16 @@ public interface MessageTable extends MessageValue<MessageTable> {
 	 */
 	
 	MessageTableType getType();
+	
+	/**
+	 * Checks if table has int keys from 0 to size-1 without gaps
+	 * 
+	 * Such tables are serialized as Msg arrays
+	 * 
+	 * @return true if table is not empty array
+	 */
+	
+	boolean isArray();
 		
 	/**
 	 * Gets value by key
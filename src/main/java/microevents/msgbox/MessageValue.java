@@ -51,6 +51,18 @@ public interface MessageValue<T> {
 	
 	void writeTo(MessagePacker packer) throws IOException;
 	
+	/**
+	 * Writes json to the output
+	 * 
+	 * This method is faster then toValue().toJson() 
+	 * because does not create intermediate Value objects
+	 * 
+	 * @param out - output, for example StringBuilder or Writer
+	 * throws IOException
+	 */
+	
+	void writeJsonTo(Appendable out) throws IOException;
+	
 	/**
 	 * Gets hex string value representation
 	 * 
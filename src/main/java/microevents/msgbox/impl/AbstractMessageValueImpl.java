@@ -2,10 +2,6 @@ package microevents.msgbox.impl;
 
 import java.io.IOException;
 
-import org.msgpack.core.MessagePack;
-import org.msgpack.core.MessagePacker;
-import org.msgpack.core.buffer.ArrayBufferOutput;
-
 import microevents.msgbox.MessageValue;
 import microevents.msgbox.support.MessageException;
 import microevents.msgbox.util.MessageStringifyUtil;
@@ -22,17 +18,7 @@ public abstract class AbstractMessageValueImpl<T> implements MessageValue<T> {
 
 	@Override
 	public byte[] toByteArray() {
-
-		ArrayBufferOutput out = new ArrayBufferOutput();
-		try {
-			MessagePacker packer = MessagePack.newDefaultPacker(out);
-			writeTo(packer);
-			packer.flush();
-		} catch (IOException e) {
-			throw new MessageException("IOException happened during serialization to byte array", e);
-		}
-
-		return out.toByteArray();
+		return MessageSerializerImpl.local().toByteArray(this);
 	}
 
 	@Override
@@ -42,7 +28,15 @@ public abstract class AbstractMessageValueImpl<T> implements MessageValue<T> {
 
 	@Override
 	public String toJson() {
-		return toValue().toJson();
+		
+		StringBuilder out = new StringBuilder();
+		try {
+			writeJsonTo(out);
+		} catch (IOException e) {
+			throw new MessageException("IOException happened during serialization to json", e);
+		}
+		
+		return out.toString();
 	}
 
 }
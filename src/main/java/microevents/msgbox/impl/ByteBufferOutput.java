@@ -0,0 +1,85 @@
+package microevents.msgbox.impl;
+
+import java.nio.ByteBuffer;
+
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferOutput;
+
+/**
+ * ByteBufferOutput
+ *
+ * Writes MsgPack directly to the backing array of the heap buffer,
+ * direct buffers are filled through the small scratch array,
+ * read-only buffers are rejected by the serializer before packing
+ *
+ * Throws BufferOverflowException if the message does not fit
+ *
+ * @author Alex Shvid
+ *
+ */
+
+final class ByteBufferOutput implements MessageBufferOutput {
+
+	private static final int SCRATCH_SIZE = 8192;
+
+	private ByteBuffer target;
+
+	private byte[] scratch;
+
+	/**
+	 * True if the last buffer given to the packer is the scratch array
+	 */
+
+	private boolean scratchBuffer;
+
+	public void reset(ByteBuffer target) {
+		this.target = target;
+	}
+
+	@Override
+	public MessageBuffer next(int minimumSize) {
+
+		if (target.hasArray() && target.remaining() >= minimumSize) {
+			scratchBuffer = false;
+			return MessageBuffer.wrap(target.array(), target.arrayOffset() + target.position(), target.remaining());
+		}
+
+		if (scratch == null || scratch.length < minimumSize) {
+			scratch = new byte[Math.max(SCRATCH_SIZE, minimumSize)];
+		}
+
+		scratchBuffer = true;
+		return MessageBuffer.wrap(scratch);
+	}
+
+	@Override
+	public void writeBuffer(int length) {
+
+		if (scratchBuffer) {
+			target.put(scratch, 0, length);
+		}
+		else {
+			target.position(target.position() + length);
+		}
+
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) {
+		target.put(buffer, offset, length);
+	}
+
+	@Override
+	public void add(byte[] buffer, int offset, int length) {
+		target.put(buffer, offset, length);
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
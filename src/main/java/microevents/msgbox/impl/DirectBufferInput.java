@@ -0,0 +1,116 @@
+package microevents.msgbox.impl;
+
+import java.nio.ByteBuffer;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ByteBufferInput;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferInput;
+
+/**
+ * DirectBufferInput
+ *
+ * MsgPack input over the direct or mapped buffer for platforms where MessageBuffer
+ * can not wrap direct memory, copies the buffer by small chunks to the reusable array
+ *
+ * Where wrapping is supported the buffer is read in place by ByteBufferInput
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class DirectBufferInput implements MessageBufferInput {
+
+	private static final int CHUNK_SIZE = 65536;
+
+	private static final boolean WRAP_SUPPORTED = isWrapSupported();
+
+	private ByteBuffer buffer;
+
+	private byte[] chunk;
+
+	public DirectBufferInput(ByteBuffer buffer) {
+		reset(buffer);
+	}
+
+	/**
+	 * Resets input to the remaining bytes of the buffer
+	 *
+	 * @param buffer - not null buffer
+	 */
+
+	public void reset(ByteBuffer buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		this.buffer = buffer.slice();
+	}
+
+	@Override
+	public MessageBuffer next() {
+
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+
+		int length = Math.min(buffer.remaining(), CHUNK_SIZE);
+
+		if (chunk == null) {
+			chunk = new byte[CHUNK_SIZE];
+		}
+
+		buffer.get(chunk, 0, length);
+		return MessageBuffer.wrap(chunk, 0, length);
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Checks if the buffer must be read through DirectBufferInput
+	 *
+	 * @param buffer - not null buffer
+	 * @return true for direct buffer on platform without direct MessageBuffer
+	 */
+
+	public static boolean isRequired(ByteBuffer buffer) {
+		return !buffer.hasArray() && !WRAP_SUPPORTED;
+	}
+
+	/**
+	 * Creates input over the remaining bytes of any buffer
+	 *
+	 * @param buffer - not null buffer
+	 * @return not null input
+	 */
+
+	public static MessageBufferInput newInput(ByteBuffer buffer) {
+		return isRequired(buffer) ? new DirectBufferInput(buffer) : new ByteBufferInput(buffer);
+	}
+
+	/**
+	 * Creates unpacker over the remaining bytes of any buffer
+	 *
+	 * @param buffer - not null buffer
+	 * @return not null unpacker
+	 */
+
+	public static MessageUnpacker newUnpacker(ByteBuffer buffer) {
+		return isRequired(buffer) ? MessagePack.newDefaultUnpacker(new DirectBufferInput(buffer)) : MessagePack.newDefaultUnpacker(buffer);
+	}
+
+	private static boolean isWrapSupported() {
+		try {
+			MessageBuffer.wrap(ByteBuffer.allocateDirect(1));
+			return true;
+		}
+		catch(UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+}
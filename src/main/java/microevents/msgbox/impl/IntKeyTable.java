@@ -0,0 +1,408 @@
+package microevents.msgbox.impl;
+
+import java.util.Arrays;
+
+import microevents.msgbox.MessageValue;
+
+/**
+ * IntKeyTable
+ *
+ * Primitive int key storage of the message table
+ *
+ * Keeps values in the array indexed by (key - base) while keys are dense,
+ * otherwise in the open addressing hash table with linear probing
+ *
+ * @author Alex Shvid
+ *
+ */
+
+final class IntKeyTable {
+
+	private static final int MIN_CAPACITY = 8;
+
+	/**
+	 * Keys of the hash table, null in dense mode
+	 */
+
+	private int[] keys;
+
+	/**
+	 * Values by slots, null for empty slot
+	 */
+
+	private MessageValue<?>[] values = new MessageValue<?>[MIN_CAPACITY];
+
+	/**
+	 * Key of the first slot in dense mode
+	 */
+
+	private int base;
+
+	private int size;
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isDense() {
+		return keys == null;
+	}
+
+	/**
+	 * Checks if keys are 0..size-1 without gaps
+	 *
+	 * @return true if not empty sequence
+	 */
+
+	public boolean isSequence() {
+		return keys == null && size != 0 && base == 0 && lastSlot() == size - 1;
+	}
+
+	/**
+	 * Gets number of slots, use it with keyAt and valueAt to iterate
+	 *
+	 * @return number of slots
+	 */
+
+	public int capacity() {
+		return values.length;
+	}
+
+	public int keyAt(int slot) {
+		return keys == null ? base + slot : keys[slot];
+	}
+
+	/**
+	 * Gets value in the slot
+	 *
+	 * @param slot - slot index
+	 * @return null for empty slot
+	 */
+
+	public MessageValue<?> valueAt(int slot) {
+		return values[slot];
+	}
+
+	public MessageValue<?> get(int key) {
+
+		if (keys == null) {
+			long index = (long) key - base;
+			return index >= 0 && index < values.length ? values[(int) index] : null;
+		}
+
+		int slot = find(key);
+		return slot >= 0 ? values[slot] : null;
+	}
+
+	/**
+	 * Puts not null value
+	 *
+	 * @param key - int key
+	 * @param value - not null value
+	 * @return previous value or null
+	 */
+
+	public MessageValue<?> put(int key, MessageValue<?> value) {
+
+		if (keys == null) {
+
+			if (size == 0) {
+				base = key;
+			}
+
+			long index = (long) key - base;
+
+			if (index < 0 || index >= values.length) {
+
+				if (!growDense(key)) {
+					toSparse();
+					return putSparse(key, value);
+				}
+
+				index = (long) key - base;
+			}
+
+			MessageValue<?> old = values[(int) index];
+			values[(int) index] = value;
+			if (old == null) {
+				size++;
+			}
+			return old;
+		}
+
+		return putSparse(key, value);
+	}
+
+	public MessageValue<?> remove(int key) {
+
+		if (keys == null) {
+
+			long index = (long) key - base;
+			if (index < 0 || index >= values.length) {
+				return null;
+			}
+
+			MessageValue<?> old = values[(int) index];
+			values[(int) index] = null;
+			if (old != null) {
+				size--;
+			}
+			return old;
+		}
+
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+
+		MessageValue<?> old = values[slot];
+		delete(slot);
+		size--;
+		return old;
+	}
+
+	public void clear() {
+		keys = null;
+		values = new MessageValue<?>[MIN_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Gets the smallest key
+	 *
+	 * @return min key or null if empty
+	 */
+
+	public Integer minKey() {
+
+		if (size == 0) {
+			return null;
+		}
+
+		if (keys == null) {
+			return base + firstSlot();
+		}
+
+		int min = Integer.MAX_VALUE;
+		for (int slot = 0; slot != values.length; ++slot) {
+			if (values[slot] != null && keys[slot] < min) {
+				min = keys[slot];
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Gets the biggest key
+	 *
+	 * @return max key or null if empty
+	 */
+
+	public Integer maxKey() {
+
+		if (size == 0) {
+			return null;
+		}
+
+		if (keys == null) {
+			return base + lastSlot();
+		}
+
+		int max = Integer.MIN_VALUE;
+		for (int slot = 0; slot != values.length; ++slot) {
+			if (values[slot] != null && keys[slot] > max) {
+				max = keys[slot];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Gets all keys in ascending order
+	 *
+	 * @return not null array
+	 */
+
+	public int[] sortedKeys() {
+
+		int[] sorted = new int[size];
+
+		int index = 0;
+		for (int slot = 0; slot != values.length; ++slot) {
+			if (values[slot] != null) {
+				sorted[index++] = keyAt(slot);
+			}
+		}
+
+		if (keys != null) {
+			Arrays.sort(sorted);
+		}
+
+		return sorted;
+	}
+
+	private int firstSlot() {
+		int slot = 0;
+		while (values[slot] == null) {
+			slot++;
+		}
+		return slot;
+	}
+
+	private int lastSlot() {
+		int slot = values.length - 1;
+		while (values[slot] == null) {
+			slot--;
+		}
+		return slot;
+	}
+
+	/**
+	 * Grows dense array to include the key if the keys stay dense
+	 *
+	 * @param key - new key
+	 * @return false if keys are too sparse for the array
+	 */
+
+	private boolean growDense(int key) {
+
+		long min = Math.min((long) base + firstSlot(), key);
+		long max = Math.max((long) base + lastSlot(), key);
+		long span = max - min + 1;
+
+		if (span > Math.max(MIN_CAPACITY, 2L * (size + 1))) {
+			return false;
+		}
+
+		int capacity = (int) Math.max(span, Math.min(2L * values.length, 2L * (size + 1)));
+
+		MessageValue<?>[] newValues = new MessageValue<?>[capacity];
+		for (int slot = 0; slot != values.length; ++slot) {
+			if (values[slot] != null) {
+				newValues[(int) ((long) base + slot - min)] = values[slot];
+			}
+		}
+
+		values = newValues;
+		base = (int) min;
+		return true;
+	}
+
+	private void toSparse() {
+
+		MessageValue<?>[] oldValues = values;
+		int oldBase = base;
+
+		int capacity = MIN_CAPACITY;
+		while (capacity < 4 * (size + 1)) {
+			capacity <<= 1;
+		}
+
+		keys = new int[capacity];
+		values = new MessageValue<?>[capacity];
+		size = 0;
+
+		for (int slot = 0; slot != oldValues.length; ++slot) {
+			if (oldValues[slot] != null) {
+				putSparse(oldBase + slot, oldValues[slot]);
+			}
+		}
+
+	}
+
+	private void rehash(int capacity) {
+
+		int[] oldKeys = keys;
+		MessageValue<?>[] oldValues = values;
+
+		keys = new int[capacity];
+		values = new MessageValue<?>[capacity];
+		size = 0;
+
+		for (int slot = 0; slot != oldValues.length; ++slot) {
+			if (oldValues[slot] != null) {
+				putSparse(oldKeys[slot], oldValues[slot]);
+			}
+		}
+
+	}
+
+	private MessageValue<?> putSparse(int key, MessageValue<?> value) {
+
+		int mask = values.length - 1;
+		int slot = hash(key) & mask;
+
+		while (values[slot] != null) {
+
+			if (keys[slot] == key) {
+				MessageValue<?> old = values[slot];
+				values[slot] = value;
+				return old;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+
+		if (size << 1 > values.length) {
+			rehash(values.length << 1);
+		}
+
+		return null;
+	}
+
+	private int find(int key) {
+
+		int mask = values.length - 1;
+
+		for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Removes entry from the slot and shifts back entries of the same probe sequence
+	 *
+	 * @param slot - slot of the entry
+	 */
+
+	private void delete(int slot) {
+
+		int mask = values.length - 1;
+
+		values[slot] = null;
+
+		for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+
+			int home = hash(keys[next]) & mask;
+
+			boolean between = slot <= next ? (home > slot && home <= next) : (home > slot || home <= next);
+
+			if (!between) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				values[next] = null;
+				slot = next;
+			}
+
+		}
+
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
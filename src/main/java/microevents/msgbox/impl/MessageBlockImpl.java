@@ -0,0 +1,232 @@
+package microevents.msgbox.impl;
+
+import java.nio.ByteBuffer;
+
+import microevents.msgbox.MessageBlock;
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageCodec;
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.util.MessageCrc32cUtil;
+
+/**
+ * MessageBlockImpl
+ *
+ * Block format:
+ *
+ * <pre>
+ * block = varint(length) codec_id varint(data_length) varint(count) crc32c(stored) stored
+ * data  = record... offset...
+ * </pre>
+ *
+ * Length covers everything after it, stored bytes are data compressed by the codec or data as is for codec 0,
+ * offsets are little-endian ints of record starts in the data, checksum is little-endian CRC-32C of stored bytes
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageBlockImpl implements MessageBlock {
+
+	/**
+	 * Codec id of blocks stored without compression
+	 */
+
+	public static final int STORED = 0;
+
+	public static final int MAX_VARINT_SIZE = 5;
+
+	/**
+	 * Default limit of the block length and the data length, protects readers from forged lengths
+	 */
+
+	public static final int DEFAULT_MAX_BLOCK_SIZE = 1 << 26;
+
+	private final long offset;
+	private final byte[] data;
+	private final int count;
+	private final int recordsEnd;
+
+	/**
+	 * Creates block over the data, checks that offsets of records go in order inside the data
+	 *
+	 * @param offset - offset of the block to report
+	 * @param data - not null records and offsets
+	 * @param count - number of records
+	 * @throws MessageBoxException for invalid count or offsets
+	 */
+
+	public MessageBlockImpl(long offset, byte[] data, int count) {
+
+		if (count < 0 || count > data.length / 4) {
+			throw new MessageBoxException("invalid record count " + count + " in block at offset " + offset);
+		}
+
+		this.offset = offset;
+		this.data = data;
+		this.count = count;
+		this.recordsEnd = data.length - 4 * count;
+
+		int previous = 0;
+
+		for (int i = 0; i != count; ++i) {
+
+			int start = recordOffset(i);
+
+			if (start < previous || start > recordsEnd) {
+				throw new MessageBoxException("invalid offset of record " + i + " in block at offset " + offset);
+			}
+
+			previous = start;
+		}
+	}
+
+	@Override
+	public long getOffset() {
+		return offset;
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public MessageBox get(int index) {
+
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("index " + index + " is out of block size " + count);
+		}
+
+		int start = recordOffset(index);
+		int end = index + 1 != count ? recordOffset(index + 1) : recordsEnd;
+
+		return new MessageBoxImpl(ByteBuffer.wrap(data, start, end - start), true);
+	}
+
+	private int recordOffset(int index) {
+		int pos = recordsEnd + 4 * index;
+		return (data[pos] & 0xFF)
+				| (data[pos + 1] & 0xFF) << 8
+				| (data[pos + 2] & 0xFF) << 16
+				| (data[pos + 3] & 0xFF) << 24;
+	}
+
+	/**
+	 * Reads the block at the current position, position is moved to the next block
+	 *
+	 * @param buffer - not null buffer
+	 * @param offset - offset of the block to report
+	 * @return not null block
+	 * @throws MessageBoxException for truncated or corrupted block
+	 */
+
+	public static MessageBlockImpl read(ByteBuffer buffer, long offset) {
+
+		int length = readVarint(buffer, offset);
+
+		if (length > buffer.remaining()) {
+			throw new MessageBoxException("truncated block at offset " + offset);
+		}
+
+		ByteBuffer body = buffer.slice();
+		body.limit(length);
+
+		buffer.position(buffer.position() + length);
+
+		return readBody(body, offset, DEFAULT_MAX_BLOCK_SIZE);
+	}
+
+	/**
+	 * Reads the block after the length
+	 *
+	 * @param body - not null buffer with the block after the length
+	 * @param offset - offset of the block to report
+	 * @param maxBlockSize - limit of the data length
+	 * @return not null block
+	 * @throws MessageBoxException for truncated or corrupted block
+	 */
+
+	public static MessageBlockImpl readBody(ByteBuffer body, long offset, int maxBlockSize) {
+
+		if (!body.hasRemaining()) {
+			throw new MessageBoxException("truncated block at offset " + offset);
+		}
+
+		int codecId = body.get() & 0xFF;
+		int dataLength = readVarint(body, offset);
+		int count = readVarint(body, offset);
+
+		if (dataLength > maxBlockSize) {
+			throw new MessageBoxException("data length " + dataLength + " exceeds " + maxBlockSize + " in block at offset " + offset);
+		}
+
+		if (count > dataLength / 4) {
+			throw new MessageBoxException("invalid record count " + count + " in block at offset " + offset);
+		}
+
+		if (body.remaining() < 4) {
+			throw new MessageBoxException("truncated block at offset " + offset);
+		}
+
+		int expected = (body.get() & 0xFF)
+				| (body.get() & 0xFF) << 8
+				| (body.get() & 0xFF) << 16
+				| (body.get() & 0xFF) << 24;
+
+		if (MessageCrc32cUtil.crc32c(body) != expected) {
+			throw new MessageBoxException("checksum mismatch in block at offset " + offset);
+		}
+
+		byte[] stored = new byte[body.remaining()];
+		body.get(stored);
+
+		byte[] data;
+
+		if (codecId == STORED) {
+			data = stored;
+		}
+		else {
+
+			MessageCodec codec = MessageCodecRegistry.find(codecId);
+
+			if (codec == null) {
+				throw new MessageBoxException("unknown codec " + codecId + " in block at offset " + offset);
+			}
+
+			data = codec.decompress(stored, 0, stored.length, dataLength);
+		}
+
+		if (data.length != dataLength) {
+			throw new MessageBoxException("invalid data length in block at offset " + offset);
+		}
+
+		return new MessageBlockImpl(offset, data, count);
+	}
+
+	private static int readVarint(ByteBuffer buffer, long offset) {
+
+		int value = 0;
+
+		for (int shift = 0; shift != 7 * MAX_VARINT_SIZE; shift += 7) {
+
+			if (!buffer.hasRemaining()) {
+				throw new MessageBoxException("truncated block at offset " + offset);
+			}
+
+			int b = buffer.get();
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+
+				if (value < 0) {
+					break;
+				}
+
+				return value;
+			}
+		}
+
+		throw new MessageBoxException("invalid varint in block at offset " + offset);
+	}
+
+}
@@ -0,0 +1,157 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import microevents.msgbox.MessageBlock;
+import microevents.msgbox.MessageBlockReader;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageBlockReaderImpl
+ *
+ * Reads the length of the next block and the whole block from the stream,
+ * the block buffer grows with the bytes read, so a forged length fails on the end of stream
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageBlockReaderImpl implements MessageBlockReader {
+
+	private static final int CHUNK_SIZE = 65536;
+
+	private final InputStream in;
+	private final int maxBlockSize;
+
+	private long offset;
+
+	/**
+	 * First byte of the next block, -1 at the end of stream, -2 if not read yet
+	 */
+
+	private int next = -2;
+
+	public MessageBlockReaderImpl(InputStream in) {
+		this(in, MessageBlockImpl.DEFAULT_MAX_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates reader
+	 *
+	 * @param in - not null input stream, closed by the reader
+	 * @param maxBlockSize - limit of the block length and the data length
+	 */
+
+	public MessageBlockReaderImpl(InputStream in, int maxBlockSize) {
+
+		if (in == null) {
+			throw new IllegalArgumentException("null input stream");
+		}
+
+		if (maxBlockSize <= 0) {
+			throw new IllegalArgumentException("invalid max block size " + maxBlockSize);
+		}
+
+		this.in = in;
+		this.maxBlockSize = maxBlockSize;
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		if (next == -2) {
+			try {
+				next = in.read();
+			} catch (IOException e) {
+				throw new MessageBoxException("unexpected IOException", e);
+			}
+		}
+
+		return next != -1;
+	}
+
+	@Override
+	public MessageBlock next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+
+			int b = next;
+			next = -2;
+
+			int length = 0;
+			int size = 0;
+
+			for (int shift = 0; ; shift += 7) {
+
+				if (b == -1) {
+					throw new MessageBoxException("truncated block at offset " + offset);
+				}
+
+				if (shift == 7 * MessageBlockImpl.MAX_VARINT_SIZE) {
+					throw new MessageBoxException("invalid varint in block at offset " + offset);
+				}
+
+				length |= (b & 0x7F) << shift;
+				size++;
+
+				if ((b & 0x80) == 0) {
+					break;
+				}
+
+				b = in.read();
+			}
+
+			if (length < 0) {
+				throw new MessageBoxException("invalid varint in block at offset " + offset);
+			}
+
+			if (length > maxBlockSize) {
+				throw new MessageBoxException("block length " + length + " exceeds " + maxBlockSize + " at offset " + offset);
+			}
+
+			byte[] body = new byte[Math.min(length, CHUNK_SIZE)];
+
+			for (int n = 0; n != length; ) {
+
+				if (n == body.length) {
+					body = Arrays.copyOf(body, (int) Math.min(length, 2L * body.length));
+				}
+
+				int read = in.read(body, n, body.length - n);
+
+				if (read < 0) {
+					throw new MessageBoxException("truncated block at offset " + offset);
+				}
+
+				n += read;
+			}
+
+			MessageBlockImpl block = MessageBlockImpl.readBody(ByteBuffer.wrap(body), offset, maxBlockSize);
+
+			offset += size + length;
+			return block;
+
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,209 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import microevents.msgbox.MessageBlockWriter;
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageCodec;
+import microevents.msgbox.util.MessageCrc32cUtil;
+
+/**
+ * MessageBlockWriterImpl
+ *
+ * Packs records to the reusable data buffer, on block close appends the offsets,
+ * compresses the data and writes the block to the stream by one write call
+ *
+ * Block is stored without compression if compression does not make it smaller
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageBlockWriterImpl implements MessageBlockWriter {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+	private final OutputStream out;
+	private final MessageCodec codec;
+	private final int blockSize;
+
+	private final ReusableBufferOutput dataOutput = new ReusableBufferOutput();
+	private final ReusableBufferOutput blockOutput = new ReusableBufferOutput();
+	private final MessagePacker packer = MessagePack.newDefaultPacker(dataOutput);
+
+	private final byte[] scratch = new byte[MessageBlockImpl.MAX_VARINT_SIZE];
+
+	private int[] offsets = new int[64];
+	private int count;
+
+	private long writtenBytes;
+
+	/**
+	 * Creates writer
+	 *
+	 * @param out - not null output stream, closed by the writer
+	 * @param codec - codec or null to store blocks without compression
+	 * @param blockSize - size of serialized records to close the block
+	 */
+
+	public MessageBlockWriterImpl(OutputStream out, MessageCodec codec, int blockSize) {
+
+		if (out == null) {
+			throw new IllegalArgumentException("null out");
+		}
+
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("invalid block size " + blockSize);
+		}
+
+		if (codec != null && (codec.getId() == MessageBlockImpl.STORED || MessageCodecRegistry.find(codec.getId()) != codec)) {
+			throw new IllegalArgumentException("codec is not registered: " + codec.getId());
+		}
+
+		this.out = out;
+		this.codec = codec;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public int write(MessageBox box) throws IOException {
+
+		if (box == null) {
+			throw new IllegalArgumentException("null box");
+		}
+
+		if (count != 0 && dataOutput.getSize() >= blockSize) {
+			writeBlock();
+		}
+
+		if (count == offsets.length) {
+			int[] copy = new int[count * 2];
+			System.arraycopy(offsets, 0, copy, 0, count);
+			offsets = copy;
+		}
+
+		int offset = dataOutput.getSize();
+		boolean done = false;
+
+		try {
+			box.writeTo(packer);
+			packer.flush();
+			done = true;
+		}
+		finally {
+			if (!done) {
+				packer.flush();
+				dataOutput.truncate(offset);
+			}
+		}
+
+		offsets[count] = offset;
+		return count++;
+	}
+
+	@Override
+	public long getBlockOffset() {
+		return writtenBytes;
+	}
+
+	@Override
+	public long getWrittenBytes() {
+		return writtenBytes;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (count != 0) {
+			writeBlock();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private void writeBlock() throws IOException {
+
+		try {
+
+			for (int i = 0; i != count; ++i) {
+				writeIntLE(dataOutput, offsets[i]);
+			}
+
+			int dataLength = dataOutput.getSize();
+
+			byte[] stored = codec != null ? codec.compress(dataOutput.array(), 0, dataLength) : null;
+			int codecId = codec != null ? codec.getId() : MessageBlockImpl.STORED;
+
+			if (stored == null || stored.length >= dataLength) {
+				stored = dataOutput.array();
+				codecId = MessageBlockImpl.STORED;
+			}
+
+			int storedLength = codecId == MessageBlockImpl.STORED ? dataLength : stored.length;
+
+			blockOutput.clear();
+
+			int bodyLength = 1 + varintSize(dataLength) + varintSize(count) + 4 + storedLength;
+
+			writeVarint(blockOutput, bodyLength);
+			scratch[0] = (byte) codecId;
+			blockOutput.write(scratch, 0, 1);
+			writeVarint(blockOutput, dataLength);
+			writeVarint(blockOutput, count);
+			writeIntLE(blockOutput, MessageCrc32cUtil.crc32c(stored, 0, storedLength));
+			blockOutput.write(stored, 0, storedLength);
+
+			out.write(blockOutput.array(), 0, blockOutput.getSize());
+			writtenBytes += blockOutput.getSize();
+
+		}
+		finally {
+			count = 0;
+			dataOutput.clear();
+			blockOutput.clear();
+		}
+	}
+
+	private void writeVarint(ReusableBufferOutput output, int value) {
+
+		int size = 0;
+
+		while ((value & ~0x7F) != 0) {
+			scratch[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		scratch[size++] = (byte) value;
+
+		output.write(scratch, 0, size);
+	}
+
+	private void writeIntLE(ReusableBufferOutput output, int value) {
+		scratch[0] = (byte) value;
+		scratch[1] = (byte) (value >>> 8);
+		scratch[2] = (byte) (value >>> 16);
+		scratch[3] = (byte) (value >>> 24);
+		output.write(scratch, 0, 4);
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+}
@@ -7,6 +7,7 @@ import org.msgpack.value.Value;
 import org.msgpack.value.impl.ImmutableBooleanValueImpl;
 
 import microevents.msgbox.MessageBoolean;
+import microevents.msgbox.util.MessageJsonUtil;
 
 /**
  * MsgBooleanImpl immutable implementation
@@ -46,6 +47,11 @@ public final class MessageBooleanImpl extends AbstractMessageValueImpl<MessageBo
 	public void writeTo(MessagePacker packer) throws IOException {
   	packer.packBoolean(booleanValue);
 	}
+  
+  @Override
+	public void writeJsonTo(Appendable out) throws IOException {
+  	MessageJsonUtil.writeBoolean(out, booleanValue);
+	}
 
 	@Override
 	public int hashCode() {
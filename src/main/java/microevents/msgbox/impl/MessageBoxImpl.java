@@ -1,28 +1,36 @@
 package microevents.msgbox.impl;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.msgpack.core.ExtensionTypeHeader;
 import org.msgpack.core.MessageFormat;
 import org.msgpack.core.MessagePack;
 import org.msgpack.core.MessagePacker;
 import org.msgpack.core.MessageUnpacker;
 import org.msgpack.core.buffer.ArrayBufferOutput;
 import org.msgpack.value.Value;
+import org.msgpack.value.ValueType;
 import org.msgpack.value.impl.ImmutableBinaryValueImpl;
 import org.msgpack.value.impl.ImmutableMapValueImpl;
 import org.msgpack.value.impl.ImmutableStringValueImpl;
 
 import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageCodec;
 import microevents.msgbox.MessageConstants;
+import microevents.msgbox.MessageDictionary;
 import microevents.msgbox.MessageFactory;
 import microevents.msgbox.MessageValue;
 import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.util.MessageJsonUtil;
 
 /**
  * MessageBoxImpl
@@ -37,6 +45,26 @@ public class MessageBoxImpl implements MessageBox {
 
 	private final Map<String, String> header = new HashMap<String, String>();
 	private final Map<String, Payload> body = new HashMap<String, Payload>();
+	
+	/**
+	 * Encoded header and body of the lazy box, null if already decoded
+	 */
+	
+	private ByteBuffer encodedHeader;
+	private ByteBuffer encodedBody;
+	
+	/**
+	 * Dictionary of table keys recorded in the header, null if not used
+	 */
+	
+	private MessageDictionary dictionary;
+	
+	/**
+	 * Projection of payloads used by parse, all payloads are parsed if not projected
+	 */
+	
+	private boolean projected;
+	private MessageProjectionImpl.Node bodyNode;
 
 	interface Payload {
 		
@@ -77,10 +105,20 @@ public class MessageBoxImpl implements MessageBox {
 		 * Writes payload to packer
 		 * 
 		 * @param packer - message packer
+		 * @param dictionary - dictionary of table keys or null
+		 * @throws IOException
+		 */
+		
+		void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException;
+		
+		/**
+		 * Writes payload in json format
+		 * 
+		 * @param out - output
 		 * @throws IOException
 		 */
 		
-		void writeTo(MessagePacker packer) throws IOException;
+		void writeJsonTo(Appendable out) throws IOException;
 		
 	}
 	
@@ -126,11 +164,93 @@ public class MessageBoxImpl implements MessageBox {
 		}
 
 		@Override
-		public void writeTo(MessagePacker packer) throws IOException {
+		public void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
     	packer.packBinaryHeader(value.length);
     	packer.writePayload(value);
 		}
+		
+		@Override
+		public void writeJsonTo(Appendable out) throws IOException {
+			MessageJsonUtil.writeUtf8(out, value, 0, value.length);
+		}
+
+	}
+	
+	/**
+	 * Compressed binary payload implementation
+	 * 
+	 * Keeps the compressed ext payload, decompresses it on the first access to bytes,
+	 * writes the compressed payload as is until the bytes were given out without copy,
+	 * then compresses them again by the same codec
+	 * 
+	 * @author Alex Shvid
+	 *
+	 */
+	
+	private static final class CompressedPayload implements Payload {
+		
+		private final byte[] compressed;
+		private BinaryPayload decoded;
+		private boolean detached;
+		
+		public CompressedPayload(byte[] compressed) {
+			this.compressed = compressed;
+		}
+		
+		private BinaryPayload decode() {
+			if (decoded == null) {
+				decoded = new BinaryPayload(MessageCodecRegistry.decompress(compressed), false);
+			}
+			return decoded;
+		}
+		
+		@Override
+		public byte[] getBytes(boolean copy) {
+			if (!copy) {
+				detached = true;
+			}
+			return decode().getBytes(copy);
+		}
+		
+		@Override
+		public String toUtf8() {
+			return decode().toUtf8();
+		}
+
+		@Override
+		public MessageValue<?> toMessageValue() {
+			detached = true;
+			return decode().toMessageValue();
+		}
+
+		@Override
+		public Value toValue() {
+			return decode().toValue();
+		}
 
+		@Override
+		public void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
+			
+			if (!detached) {
+				MessageCodecRegistry.pack(packer, compressed);
+				return;
+			}
+			
+			byte[] recompressed = MessageCodecRegistry.compress(MessageCodecRegistry.find(compressed[0] & 0xFF), decoded.getBytes(false));
+			
+			if (recompressed != null) {
+				MessageCodecRegistry.pack(packer, recompressed);
+			}
+			else {
+				decoded.writeTo(packer, dictionary);
+			}
+		}
+		
+		@Override
+		public void writeJsonTo(Appendable out) throws IOException {
+			decode().writeJsonTo(out);
+		}
+		
 	}
 	
 	/**
@@ -176,10 +296,15 @@ public class MessageBoxImpl implements MessageBox {
 		}
 
 		@Override
-		public void writeTo(MessagePacker packer) throws IOException {
+		public void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
     	packer.packString(value);
 		}
 		
+		@Override
+		public void writeJsonTo(Appendable out) throws IOException {
+			MessageJsonUtil.writeString(out, value);
+		}
+		
 	}
 	
 	/**
@@ -193,10 +318,6 @@ public class MessageBoxImpl implements MessageBox {
 		
 		private final MessageValue<?> value;
 		
-		public MessageValuePayload(MessageUnpacker unpacker) throws IOException {
-			this.value = MessageFactory.newValue(unpacker);
-		}
-		
 		public MessageValuePayload(MessageValue<?> payload) {
 			this.value = payload;
 		}
@@ -222,8 +343,93 @@ public class MessageBoxImpl implements MessageBox {
 		}
 
 		@Override
-		public void writeTo(MessagePacker packer) throws IOException {
-			value.writeTo(packer);
+		public void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
+			if (dictionary != null && value instanceof MessageTableImpl) {
+				((MessageTableImpl) value).writeTo(packer, dictionary);
+			}
+			else {
+				value.writeTo(packer);
+			}
+		}
+		
+		@Override
+		public void writeJsonTo(Appendable out) throws IOException {
+			value.writeJsonTo(out);
+		}
+		
+	}
+	
+	/**
+	 * Encoded payload implementation
+	 * 
+	 * Keeps the slice of the original buffer and decodes it on the first access,
+	 * writes the slice as is until the payload was given out as a mutable object
+	 * 
+	 * @author Alex Shvid
+	 *
+	 */
+	
+	private static final class EncodedPayload implements Payload {
+		
+		private final ByteBuffer encoded;
+		private final MessageDictionary dictionary;
+		private Payload decoded;
+		private boolean detached;
+		
+		public EncodedPayload(ByteBuffer encoded, MessageDictionary dictionary) {
+			this.encoded = encoded;
+			this.dictionary = dictionary;
+		}
+		
+		private Payload decode() {
+			if (decoded == null) {
+				MessageUnpacker unpacker = DirectBufferInput.newUnpacker(encoded);
+				try {
+					decoded = parsePayload(unpacker, dictionary);
+				} catch (IOException e) {
+					throw new MessageBoxException("unexpected IOException", e);
+				}
+			}
+			return decoded;
+		}
+		
+		@Override
+		public byte[] getBytes(boolean copy) {
+			if (!copy) {
+				detached = true;
+			}
+			return decode().getBytes(copy);
+		}
+
+		@Override
+		public String toUtf8() {
+			return decode().toUtf8();
+		}
+		
+		@Override
+		public MessageValue<?> toMessageValue() {
+			detached = true;
+			return decode().toMessageValue();
+		}
+
+		@Override
+		public Value toValue() {
+			return decode().toValue();
+		}
+
+		@Override
+		public void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
+			if (detached || dictionary != this.dictionary) {
+				decode().writeTo(packer, dictionary);
+			}
+			else {
+				writeEncoded(encoded, packer);
+			}
+		}
+		
+		@Override
+		public void writeJsonTo(Appendable out) throws IOException {
+			decode().writeJsonTo(out);
 		}
 		
 	}
@@ -260,20 +466,81 @@ public class MessageBoxImpl implements MessageBox {
 	}
 	
 	public MessageBoxImpl(ByteBuffer buffer) {
+		this(buffer, false);
+	}
+	
+	/**
+	 * Creates a box from the next value of the unpacker
+	 * 
+	 * @param unpacker - not null unpacker
+	 * @throws IOException
+	 */
+	
+	public MessageBoxImpl(MessageUnpacker unpacker) throws IOException {
+		
+		if (unpacker == null) {
+			throw new IllegalArgumentException("null unpacker");
+		}
+		
+		parse(unpacker);
+	}
+	
+	/**
+	 * Creates a box from the next value of the unpacker with only projected payload paths,
+	 * header is parsed whole, payloads and their entries out of the projection are skipped without decoding
+	 * 
+	 * @param unpacker - not null unpacker
+	 * @param projection - not null projection of paths starting from body
+	 * @throws IOException
+	 */
+	
+	public MessageBoxImpl(MessageUnpacker unpacker, MessageProjectionImpl projection) throws IOException {
+		
+		if (unpacker == null) {
+			throw new IllegalArgumentException("null unpacker");
+		}
+		
+		if (projection == null) {
+			throw new IllegalArgumentException("null projection");
+		}
+		
+		this.bodyNode = projection.getBodyNode();
+		this.projected = true;
+		
+		parse(unpacker);
+	}
+	
+	/**
+	 * Creates a box over the buffer
+	 * 
+	 * In lazy mode only the top level map is scanned, header and payloads are decoded on the first access,
+	 * so the buffer must not be modified while the box is in use
+	 * 
+	 * @param buffer - input buffer
+	 * @param lazy - decode on demand
+	 */
+	
+	public MessageBoxImpl(ByteBuffer buffer, boolean lazy) {
 		
 		if (buffer == null) {
 			throw new IllegalArgumentException("null buffer");
 		}
 		
-		MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(buffer);
 		try {
-			parse(unpacker);
+			if (lazy) {
+				scan(buffer.slice());
+			}
+			else {
+				parse(DirectBufferInput.newUnpacker(buffer));
+			}
 		} catch (IOException e) {
 			throw new MessageBoxException("unexpected IOException", e);
 		}
 	}
 	
-	private void parse(MessageUnpacker unpacker) throws IOException {
+	private void scan(ByteBuffer buffer) throws IOException {
+		
+		MessageUnpacker unpacker = DirectBufferInput.newUnpacker(buffer);
 		
 		if(!unpacker.hasNext()) { 
 			return;
@@ -296,11 +563,15 @@ public class MessageBoxImpl implements MessageBox {
     	
     	String key = unpacker.unpackString();
     	
+    	int offset = (int) unpacker.getTotalReadBytes();
+    	unpacker.skipValue();
+    	ByteBuffer encoded = slice(buffer, offset, (int) unpacker.getTotalReadBytes());
+    	
     	if (MessageConstants.HEADER_KEY.equals(key)) {
-    		parseHeader(unpacker);
+    		encodedHeader = encoded;
     	}
     	else if (MessageConstants.BODY_KEY.equals(key)) {
-    		parseBody(unpacker);
+    		encodedBody = encoded;
     	}
     	else {
     		throw new IOException("unexpected key in the map: " + key);
@@ -310,7 +581,252 @@ public class MessageBoxImpl implements MessageBox {
 		
 	}
 	
+	private void scanBody(ByteBuffer buffer) throws IOException {
+		
+		MessageUnpacker unpacker = DirectBufferInput.newUnpacker(buffer);
+		
+		if(!unpacker.hasNext()) { 
+			return;
+		}
+		
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (isNull(format)) {
+			unpacker.unpackNil();
+			return;
+		}
+		
+		if (!isMap(format)) {
+			throw new MessageBoxException("expected Map in message pack format");
+		}
+		
+    int size = unpacker.unpackMapHeader();
+		
+    for (int i = 0; i != size; ++i) {
+    	
+     	String key = StringInternTable.KEYS.unpackString(unpacker);
+     	
+     	format = unpacker.getNextFormat();
+     	
+     	if (isNull(format)) {
+     		unpacker.skipValue();
+     		continue;
+     	}
+     	
+     	int offset = (int) unpacker.getTotalReadBytes();
+     	
+     	if (format.getValueType() == ValueType.EXTENSION) {
+     		
+     		ExtensionTypeHeader ext = unpacker.unpackExtensionTypeHeader();
+     		unpacker.readPayloadAsReference(ext.getLength());
+     		
+     		if (ext.getType() != MessageConstants.COMPRESSED_EXT_TYPE) {
+     			continue;
+     		}
+     	}
+     	else {
+     		unpacker.skipValue();
+     	}
+     	
+     	body.put(key, new EncodedPayload(slice(buffer, offset, (int) unpacker.getTotalReadBytes()), dictionary));
+     	
+    }
+		
+	}
+	
+	private static void writeEncoded(ByteBuffer encoded, MessagePacker packer) throws IOException {
+		
+		if (encoded.hasArray()) {
+			packer.writePayload(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+		}
+		else {
+			byte[] bytes = new byte[encoded.remaining()];
+			encoded.duplicate().get(bytes);
+			packer.writePayload(bytes);
+		}
+		
+	}
+	
+	/**
+	 * Checks if the encoded value is nil or the map of zero size in fixmap, map16 or map32 format
+	 */
+	
+	private static boolean isEmptyMap(ByteBuffer encoded) {
+		
+		if (!encoded.hasRemaining()) {
+			return true;
+		}
+		
+		int position = encoded.position();
+		byte b = encoded.get(position);
+		
+		if (b == MessagePack.Code.NIL) {
+			return true;
+		}
+		
+		if ((b & 0xF0) == (MessagePack.Code.FIXMAP_PREFIX & 0xFF)) {
+			return (b & 0x0F) == 0;
+		}
+		
+		int sizeBytes;
+		
+		if (b == MessagePack.Code.MAP16) {
+			sizeBytes = 2;
+		}
+		else if (b == MessagePack.Code.MAP32) {
+			sizeBytes = 4;
+		}
+		else {
+			return false;
+		}
+		
+		if (encoded.remaining() <= sizeBytes) {
+			return false;
+		}
+		
+		for (int i = 1; i <= sizeBytes; ++i) {
+			if (encoded.get(position + i) != 0) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static ByteBuffer slice(ByteBuffer buffer, int from, int to) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(from);
+		slice.limit(to);
+		return slice.slice();
+	}
+	
+	private void decodeHeader() {
+		
+		if (encodedHeader != null) {
+			try {
+				parseHeader(DirectBufferInput.newUnpacker(encodedHeader));
+			} catch (IOException e) {
+				throw new MessageBoxException("unexpected IOException", e);
+			}
+			encodedHeader = null;
+		}
+		
+	}
+	
+	private void decodeBody() {
+		
+		if (encodedBody != null) {
+			decodeHeader();
+			dictionary = MessageDictionaryImpl.find(header);
+			try {
+				scanBody(encodedBody);
+			} catch (IOException e) {
+				throw new MessageBoxException("unexpected IOException", e);
+			}
+			encodedBody = null;
+		}
+		
+	}
+	
+	private void parse(MessageUnpacker unpacker) throws IOException {
+		
+		if(!unpacker.hasNext()) { 
+			return;
+		}
+		
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (isNull(format)) {
+			unpacker.unpackNil();
+			return;
+		}
+		
+		if (!isMap(format)) {
+			throw new IOException("expected Map in message pack format");
+		}
+		
+    int size = unpacker.unpackMapHeader();
+    
+    boolean headerRead = false;
+    MessageUnpacker deferredBody = null;
+    
+    for (int i = 0; i != size; ++i) {
+    	
+    	String key = unpacker.unpackString();
+    	
+    	if (!headerRead && i + 1 != size && MessageConstants.BODY_KEY.equals(key)) {
+    		deferredBody = bufferEntry(unpacker);
+    		continue;
+    	}
+    	
+    	headerRead |= MessageConstants.HEADER_KEY.equals(key);
+    	parseEntry(key, unpacker);
+    }
+    
+    if (deferredBody != null) {
+    	parseEntry(MessageConstants.BODY_KEY, deferredBody);
+    }
+		
+	}
+	
+	/**
+	 * Parses value of the top level entry
+	 * 
+	 * @param key - key of the entry
+	 * @param unpacker - unpacker at the value
+	 * @throws IOException
+	 */
+	
+	void parseEntry(String key, MessageUnpacker unpacker) throws IOException {
+		
+  	if (MessageConstants.HEADER_KEY.equals(key)) {
+  		parseHeader(unpacker);
+  		dictionary = MessageDictionaryImpl.find(header);
+  	}
+  	else if (MessageConstants.BODY_KEY.equals(key)) {
+  		parseBody(unpacker);
+  	}
+  	else {
+  		throw new IOException("unexpected key in the map: " + key);
+  	}
+  	
+	}
+	
+	/**
+	 * Copies the entry value out of the unpacker, so the body written before the header
+	 * is parsed after the header and its dictionary keys are resolved
+	 * 
+	 * @param unpacker - unpacker at the value
+	 * @return not null unpacker over the copy
+	 * @throws IOException
+	 */
+	
+	static MessageUnpacker bufferEntry(MessageUnpacker unpacker) throws IOException {
+		
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packValue(unpacker.unpackValue());
+		packer.flush();
+		
+		return MessagePack.newDefaultUnpacker(out.toByteArray());
+	}
+	
+	/**
+	 * Gets read-only view of the header
+	 * 
+	 * @return not null map
+	 */
+	
+	Map<String, String> headerView() {
+		decodeHeader();
+		return Collections.unmodifiableMap(header);
+	}
+	
 	private void parseHeader(MessageUnpacker unpacker) throws IOException {
+		parseHeader(unpacker, header);
+	}
+	
+	private static void parseHeader(MessageUnpacker unpacker, Map<String, String> header) throws IOException {
 		
 		if(!unpacker.hasNext()) { 
 			return;
@@ -331,8 +847,8 @@ public class MessageBoxImpl implements MessageBox {
 		
     for (int i = 0; i != size; ++i) {
     	
-     	String key = unpacker.unpackString();
-     	String value = unpacker.unpackString();
+     	String key = StringInternTable.HEADERS.unpackString(unpacker);
+     	String value = StringInternTable.HEADERS.unpackString(unpacker);
      	
      	header.put(key, value);
      	
@@ -340,12 +856,80 @@ public class MessageBoxImpl implements MessageBox {
 		
 	}
 	
+	/**
+	 * Parses only the header of the message, body is skipped without decoding
+	 * 
+	 * @param unpacker - not null unpacker
+	 * @param skipRest - skip entries after the header, so the unpacker stays at the next message
+	 * @return not null read-only header
+	 * @throws IOException
+	 */
+	
+	public static Map<String, String> parseHeaders(MessageUnpacker unpacker, boolean skipRest) throws IOException {
+		
+		if (unpacker == null) {
+			throw new IllegalArgumentException("null unpacker");
+		}
+		
+		if(!unpacker.hasNext()) { 
+			return Collections.emptyMap();
+		}
+		
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (isNull(format)) {
+			unpacker.unpackNil();
+			return Collections.emptyMap();
+		}
+		
+		if (!isMap(format)) {
+			throw new IOException("expected Map in message pack format");
+		}
+		
+		Map<String, String> header = null;
+		
+    int size = unpacker.unpackMapHeader();
+    
+    for (int i = 0; i != size; ++i) {
+    	
+    	String key = unpacker.unpackString();
+    	
+    	if (MessageConstants.HEADER_KEY.equals(key)) {
+    		
+    		header = new HashMap<String, String>();
+    		parseHeader(unpacker, header);
+    		
+    		if (!skipRest) {
+    			break;
+    		}
+    	}
+    	else if (MessageConstants.BODY_KEY.equals(key)) {
+    		unpacker.skipValue();
+    	}
+    	else {
+    		throw new IOException("unexpected key in the map: " + key);
+    	}
+    	
+    }
+    
+    if (header == null || header.isEmpty()) {
+    	return Collections.emptyMap();
+    }
+    
+    return Collections.unmodifiableMap(header);
+	}
+	
 	private void parseBody(MessageUnpacker unpacker) throws IOException {
 		
 		if(!unpacker.hasNext()) { 
 			return;
 		}
 		
+		if (projected && bodyNode == null) {
+			unpacker.skipValue();
+			return;
+		}
+		
 		MessageFormat format = unpacker.getNextFormat();
 
 		if (isNull(format)) {
@@ -361,9 +945,16 @@ public class MessageBoxImpl implements MessageBox {
 		
     for (int i = 0; i != size; ++i) {
     	
-     	String key = unpacker.unpackString();
+     	String key = StringInternTable.KEYS.unpackString(unpacker);
      	
-     	Payload payload = parsePayload(unpacker);
+     	Payload payload;
+     	
+     	if (projected && !bodyNode.isTarget()) {
+     		payload = parseProjectedPayload(unpacker, bodyNode.findKey(key));
+     	}
+     	else {
+     		payload = parsePayload(unpacker, dictionary);
+     	}
      	
      	if (payload != null) {
      		body.put(key, payload);
@@ -373,7 +964,22 @@ public class MessageBoxImpl implements MessageBox {
 		
 	}
 	
-	private Payload parsePayload(MessageUnpacker unpacker) throws IOException {
+	private Payload parseProjectedPayload(MessageUnpacker unpacker, MessageProjectionImpl.Node node) throws IOException {
+		
+		if (node == null) {
+			unpacker.skipValue();
+			return null;
+		}
+		
+		if (node.isTarget()) {
+			return parsePayload(unpacker, dictionary);
+		}
+		
+		MessageValue<?> value = MessageProjectionImpl.materialize(unpacker, node, dictionary);
+		return value != null ? new MessageValuePayload(value) : null;
+	}
+	
+	private static Payload parsePayload(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
 		
 		if(!unpacker.hasNext()) { 
 			return null;
@@ -394,7 +1000,13 @@ public class MessageBoxImpl implements MessageBox {
 			return new Utf8Payload(unpacker);
 		}
 		
-		return new MessageValuePayload(unpacker);
+		if (format.getValueType() == ValueType.EXTENSION) {
+			byte[] compressed = MessageCodecRegistry.unpack(unpacker);
+			return compressed != null ? new CompressedPayload(compressed) : null;
+		}
+		
+		MessageValue<?> value = MessageFactory.newValue(unpacker, dictionary);
+		return value != null ? new MessageValuePayload(value) : null;
 		
 	}
 	
@@ -454,11 +1066,18 @@ public class MessageBoxImpl implements MessageBox {
 	
 	@Override
 	public boolean isEmpty() {
+		decodeHeader();
+		decodeBody();
 		return header.isEmpty() && body.isEmpty();
 	}
 
 	@Override
 	public MessageBox addHeader(String key, String value) {
+		decodeHeader();
+		if (MessageConstants.DICTIONARY_HEADER.equals(key)) {
+			decodeBody();
+			dictionary = MessageDictionaryImpl.find(value);
+		}
 		if (value != null) {
 			header.put(key, value);
 		}
@@ -470,16 +1089,40 @@ public class MessageBoxImpl implements MessageBox {
 	
 	@Override
 	public String getHeader(String key) {
+		decodeHeader();
 		return header.get(key);
 	}
 
 	@Override
 	public Set<String> getHeaderKeys() {
+		decodeHeader();
 		return header.keySet();
 	}
 	
+	@Override
+	public MessageBox setDictionary(MessageDictionary dictionary) {
+		decodeHeader();
+		decodeBody();
+		if (dictionary != null) {
+			header.put(MessageConstants.DICTIONARY_HEADER, Integer.toString(dictionary.getId()));
+		}
+		else {
+			header.remove(MessageConstants.DICTIONARY_HEADER);
+		}
+		this.dictionary = dictionary;
+		return this;
+	}
+	
+	@Override
+	public MessageDictionary getDictionary() {
+		decodeHeader();
+		decodeBody();
+		return dictionary;
+	}
+	
 	@Override
 	public MessageBox addPayload(String key, MessageValue<?> payload) {
+		decodeBody();
 		if (payload != null) {
 			body.put(key, new MessageValuePayload(payload));
 		}
@@ -491,6 +1134,7 @@ public class MessageBoxImpl implements MessageBox {
 
 	@Override
 	public MessageBox addPayload(String key, byte[] payload, boolean copy) {
+		decodeBody();
 		if (payload != null) {
 			body.put(key, new BinaryPayload(payload, copy));
 		}
@@ -500,8 +1144,35 @@ public class MessageBoxImpl implements MessageBox {
 		return this;
 	}
 	
+	@Override
+	public MessageBox addPayload(String key, byte[] payload, MessageCodec codec, int threshold) {
+		
+		if (codec == null) {
+			throw new IllegalArgumentException("null codec");
+		}
+		
+		decodeBody();
+		
+		if (payload == null) {
+			body.remove(key);
+			return this;
+		}
+		
+		byte[] compressed = payload.length >= threshold ? MessageCodecRegistry.compress(codec, payload) : null;
+		
+		if (compressed != null) {
+			body.put(key, new CompressedPayload(compressed));
+		}
+		else {
+			body.put(key, new BinaryPayload(payload, true));
+		}
+		
+		return this;
+	}
+	
 	@Override
 	public MessageBox addPayloadUtf8(String key, String payload) {
+		decodeBody();
 		if (payload != null) {
 			body.put(key, new Utf8Payload(payload));
 		}
@@ -519,50 +1190,136 @@ public class MessageBoxImpl implements MessageBox {
 
 	@Override
 	public MessageValue<?> getPayload(String key) {
+		decodeBody();
 		Payload payload = body.get(key);
 		return payload != null ? payload.toMessageValue() : null;
 	}
 
 	@Override
 	public byte[] getPayload(String key, boolean copy) {
+		decodeBody();
 		Payload payload = body.get(key);
 		return payload != null ? payload.getBytes(copy) : null;
 	}
 
 	@Override
 	public String getPayloadUtf8(String key) {
+		decodeBody();
 		Payload payload = body.get(key);
 		return payload != null ? payload.toUtf8() : null;
 	}
 	
 	@Override
 	public Set<String> getPayloadKeys() {
+		decodeBody();
 		return body.keySet();
 	}
 
 	@Override
 	public String toJson() {
-		return toValue().toJson();
-	}
-
-	@Override
-	public byte[] toByteArray() {
 		
-		ArrayBufferOutput out = new ArrayBufferOutput();
+		StringBuilder out = new StringBuilder();
 		try {
-			MessagePacker packer = MessagePack.newDefaultPacker(out);
-			writeTo(packer);
-			packer.flush();
+			writeJsonTo(out);
 		} catch (IOException e) {
-			throw new MessageBoxException("IOException happened during serialization to byte array", e);
+			throw new MessageBoxException("IOException happened during serialization to json", e);
+		}
+		
+		return out.toString();
+	}
+	
+	@Override
+	public void writeJsonTo(Appendable out) throws IOException {
+		
+		decodeHeader();
+		decodeBody();
+		
+		out.append('{');
+		
+		if (!header.isEmpty()) {
+			MessageJsonUtil.writeString(out, MessageConstants.HEADER_KEY);
+			out.append(':');
+			writeHeaderJsonTo(out);
+		}
+		
+		if (!body.isEmpty()) {
+			if (!header.isEmpty()) {
+				out.append(',');
+			}
+			MessageJsonUtil.writeString(out, MessageConstants.BODY_KEY);
+			out.append(':');
+			writeBodyJsonTo(out);
 		}
+		
+		out.append('}');
+	}
+	
+	private void writeHeaderJsonTo(Appendable out) throws IOException {
+		
+		out.append('{');
+		
+		boolean first = true;
+		for (Map.Entry<String, String> entry : header.entrySet()) {
+			
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			
+			MessageJsonUtil.writeString(out, entry.getKey());
+			out.append(':');
+			MessageJsonUtil.writeString(out, entry.getValue());
+		}
+		
+		out.append('}');
+	}
+	
+	private void writeBodyJsonTo(Appendable out) throws IOException {
+		
+		out.append('{');
+		
+		boolean first = true;
+		for (Map.Entry<String, Payload> entry : body.entrySet()) {
+			
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			
+			MessageJsonUtil.writeString(out, entry.getKey());
+			out.append(':');
+			entry.getValue().writeJsonTo(out);
+		}
+		
+		out.append('}');
+	}
 
-		return out.toByteArray();
+	@Override
+	public byte[] toByteArray() {
+		return MessageSerializerImpl.local().toByteArray(this);
+	}
+	
+	@Override
+	public int writeTo(ByteBuffer buffer) {
+		return MessageSerializerImpl.local().writeTo(this, buffer);
+	}
+	
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		MessageSerializerImpl.local().writeTo(this, out);
+	}
+	
+	@Override
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		MessageSerializerImpl.local().writeTo(this, channel);
 	}
 	
 	@Override
 	public Value toValue() {
 		
+		decodeHeader();
+		decodeBody();
+		
 		int size = 0;
 		if (!header.isEmpty()) {
 			size += 2;
@@ -622,26 +1379,41 @@ public class MessageBoxImpl implements MessageBox {
     return new ImmutableMapValueImpl(array);
 	}
 	
-  private void writeTo(MessagePacker packer) throws IOException {
+  @Override
+  public void writeTo(MessagePacker packer) throws IOException {
+  	
+  	boolean hasHeader = encodedHeader != null ? !isEmptyMap(encodedHeader) : !header.isEmpty();
+  	boolean hasBody = encodedBody != null ? !isEmptyMap(encodedBody) : !body.isEmpty();
   	
   	int size = 0;
-  	if (!header.isEmpty()) {
+  	if (hasHeader) {
   		size++;
   	}
-  	if (!body.isEmpty()) {
+  	if (hasBody) {
   		size++;
   	}
   	
     packer.packMapHeader(size);
     
-    if (!header.isEmpty()) {
+    // canonical layout, header goes first
+    if (hasHeader) {
     	packer.packString(MessageConstants.HEADER_KEY);
-    	writeHeaderTo(packer);
+    	if (encodedHeader != null) {
+    		writeEncoded(encodedHeader, packer);
+    	}
+    	else {
+    		writeHeaderTo(packer);
+    	}
     }
 
-    if (!body.isEmpty()) {
+    if (hasBody) {
     	packer.packString(MessageConstants.BODY_KEY);
-    	writeBodyTo(packer);
+    	if (encodedBody != null) {
+    		writeEncoded(encodedBody, packer);
+    	}
+    	else {
+    		writeBodyTo(packer);
+    	}
     }
 
   } 
@@ -657,8 +1429,8 @@ public class MessageBoxImpl implements MessageBox {
     	String key = entry.getKey();
     	String value = entry.getValue();
     	
-    	packer.packString(key);
-    	packer.packString(value);
+    	StringInternTable.HEADERS.packString(packer, key);
+    	StringInternTable.HEADERS.packString(packer, value);
     	
     }
     
@@ -675,8 +1447,8 @@ public class MessageBoxImpl implements MessageBox {
     	String key = entry.getKey();
     	Payload payload = entry.getValue();
     	
-    	packer.packString(key);
-    	payload.writeTo(packer);
+    	StringInternTable.KEYS.packString(packer, key);
+    	payload.writeTo(packer, dictionary);
     	
     }
     
@@ -0,0 +1,225 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageBoxReader;
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageBoxReaderImpl
+ *
+ * Parses messages from one unpacker over the stream or channel input
+ *
+ * After nextHeaders() the message stays partially read, the pending message keeps parsed entries,
+ * the body buffered before the header and the number of entries left in the stream,
+ * read bytes are counted only for completed messages
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageBoxReaderImpl implements MessageBoxReader {
+
+	private final MessageUnpacker unpacker;
+
+	private MessageBoxImpl pending;
+	private String pendingKey;
+	private MessageUnpacker deferredBody;
+	private int remaining;
+
+	/**
+	 * Offset of the next message, updated only when the message is completed or skipped
+	 */
+
+	private long readBytes;
+
+	public MessageBoxReaderImpl(MessageUnpacker unpacker) {
+
+		if (unpacker == null) {
+			throw new IllegalArgumentException("null unpacker");
+		}
+
+		this.unpacker = unpacker;
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			return pending != null || unpacker.hasNext();
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageBox next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+
+			if (pending == null) {
+				MessageBox box = new MessageBoxImpl(unpacker);
+				readBytes = unpacker.getTotalReadBytes();
+				return box;
+			}
+
+			MessageBoxImpl box = pending;
+
+			if (pendingKey != null) {
+				box.parseEntry(pendingKey, unpacker);
+			}
+
+			for (; remaining != 0; --remaining) {
+				box.parseEntry(unpacker.unpackString(), unpacker);
+			}
+
+			if (deferredBody != null) {
+				box.parseEntry(MessageConstants.BODY_KEY, deferredBody);
+			}
+
+			clearPending();
+			return box;
+
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public Map<String, String> nextHeaders() {
+
+		if (pending != null) {
+			skip();
+		}
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		boolean done = false;
+
+		try {
+
+			pending = new MessageBoxImpl();
+
+			MessageFormat format = unpacker.getNextFormat();
+
+			if (format.getValueType() == ValueType.NIL) {
+				unpacker.unpackNil();
+				done = true;
+				return Collections.emptyMap();
+			}
+
+			if (format.getValueType() != ValueType.MAP) {
+				throw new IOException("expected Map in message pack format");
+			}
+
+			remaining = unpacker.unpackMapHeader();
+
+			while (remaining != 0) {
+
+				String key = unpacker.unpackString();
+				remaining--;
+
+				if (MessageConstants.HEADER_KEY.equals(key)) {
+					pending.parseEntry(key, unpacker);
+					break;
+				}
+
+				if (remaining == 0) {
+					pendingKey = key;
+					break;
+				}
+
+				if (MessageConstants.BODY_KEY.equals(key)) {
+					deferredBody = MessageBoxImpl.bufferEntry(unpacker);
+					continue;
+				}
+
+				pending.parseEntry(key, unpacker);
+			}
+
+			Map<String, String> headers = pending.headerView();
+			done = true;
+			return headers;
+
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+		finally {
+			if (!done) {
+				pending = null;
+				pendingKey = null;
+				deferredBody = null;
+				remaining = 0;
+			}
+		}
+	}
+
+	@Override
+	public void skip() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+
+			if (pending == null) {
+				unpacker.skipValue();
+				readBytes = unpacker.getTotalReadBytes();
+				return;
+			}
+
+			if (pendingKey != null) {
+				unpacker.skipValue();
+			}
+
+			for (; remaining != 0; --remaining) {
+				unpacker.skipValue();
+				unpacker.skipValue();
+			}
+
+			clearPending();
+
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	private void clearPending() {
+		readBytes = unpacker.getTotalReadBytes();
+		pending = null;
+		pendingKey = null;
+		deferredBody = null;
+		remaining = 0;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long getReadBytes() {
+		return readBytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		unpacker.close();
+	}
+
+}
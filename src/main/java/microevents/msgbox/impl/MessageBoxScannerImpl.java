@@ -0,0 +1,360 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageBoxScanner;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageBoxScannerImpl
+ *
+ * Maps the file by windows and finds record boundaries by reading format headers in the window,
+ * so payloads are never copied to the heap, the window is remapped from the record start
+ * if the record crosses the window end
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageBoxScannerImpl implements MessageBoxScanner {
+
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int windowSize;
+
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	private long position;
+
+	public MessageBoxScannerImpl(FileChannel channel, int windowSize) throws IOException {
+
+		if (channel == null) {
+			throw new IllegalArgumentException("null channel");
+		}
+
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("non positive window size: " + windowSize);
+		}
+
+		this.channel = channel;
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return position < size;
+	}
+
+	@Override
+	public MessageBox next() {
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		ByteBuffer record = record(position);
+		position += record.remaining();
+
+		return new MessageBoxImpl(record, true);
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public void seek(long offset) {
+
+		if (offset < 0 || offset > size) {
+			throw new IllegalArgumentException("offset out of file: " + offset);
+		}
+
+		position = offset;
+	}
+
+	@Override
+	public MessageBox read(long offset) {
+
+		if (offset < 0 || offset >= size) {
+			throw new IllegalArgumentException("offset out of file: " + offset);
+		}
+
+		return new MessageBoxImpl(record(offset), true);
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	/**
+	 * Finds the record in the mapped window
+	 *
+	 * @param offset - offset of the record
+	 * @return slice of the window with the record
+	 */
+
+	private ByteBuffer record(long offset) {
+
+		try {
+
+			int minSize = 0;
+
+			while (true) {
+
+				if (window == null || offset < windowStart || offset >= windowStart + window.capacity()) {
+					map(offset, minSize);
+				}
+
+				int start = (int) (offset - windowStart);
+				long end = skipValue(window, start);
+
+				if (end != -1) {
+					ByteBuffer record = window.duplicate();
+					record.limit((int) end);
+					record.position(start);
+					return record.slice();
+				}
+
+				if (windowStart + window.capacity() >= size || window.capacity() == Integer.MAX_VALUE) {
+					throw new MessageBoxException("truncated record at offset " + offset);
+				}
+
+				minSize = (int) Math.min(Integer.MAX_VALUE, 2L * window.capacity());
+				window = null;
+
+			}
+
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+
+	}
+
+	private void map(long offset, int minSize) throws IOException {
+
+		long length = Math.min(size - offset, Math.max(windowSize, minSize));
+
+		window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		windowStart = offset;
+	}
+
+	/**
+	 * Skips one value by reading format headers with absolute gets, payloads are stepped over
+	 *
+	 * @param buffer - not null window
+	 * @param offset - position of the value in the window
+	 * @return position after the value or -1 if the value crosses the window limit
+	 */
+
+	static long skipValue(ByteBuffer buffer, int offset) {
+
+		long position = offset;
+		long limit = buffer.limit();
+		long values = 1;
+
+		while (values != 0) {
+
+			if (position >= limit) {
+				return -1;
+			}
+
+			int b = buffer.get((int) position) & 0xFF;
+			values--;
+
+			if (b <= 0x7f || b >= 0xe0) {
+				position++;
+				continue;
+			}
+
+			if (b <= 0x8f) {
+				position++;
+				values += 2 * (b & 0x0f);
+				continue;
+			}
+
+			if (b <= 0x9f) {
+				position++;
+				values += b & 0x0f;
+				continue;
+			}
+
+			if (b <= 0xbf) {
+				position += 1 + (b & 0x1f);
+				continue;
+			}
+
+			int lengthBytes;
+			int typeBytes = 0;
+			int children = 0;
+
+			switch(b) {
+
+			case 0xc4:
+			case 0xd9:
+				lengthBytes = 1;
+				break;
+
+			case 0xc5:
+			case 0xda:
+				lengthBytes = 2;
+				break;
+
+			case 0xc6:
+			case 0xdb:
+				lengthBytes = 4;
+				break;
+
+			case 0xc7:
+				lengthBytes = 1;
+				typeBytes = 1;
+				break;
+
+			case 0xc8:
+				lengthBytes = 2;
+				typeBytes = 1;
+				break;
+
+			case 0xc9:
+				lengthBytes = 4;
+				typeBytes = 1;
+				break;
+
+			case 0xdc:
+				lengthBytes = 2;
+				children = 1;
+				break;
+
+			case 0xdd:
+				lengthBytes = 4;
+				children = 1;
+				break;
+
+			case 0xde:
+				lengthBytes = 2;
+				children = 2;
+				break;
+
+			case 0xdf:
+				lengthBytes = 4;
+				children = 2;
+				break;
+
+			default:
+				position += fixedSize(b, position);
+				continue;
+			}
+
+			if (position + 1 + lengthBytes > limit) {
+				return -1;
+			}
+
+			int at = (int) position + 1;
+			long length;
+
+			switch(lengthBytes) {
+
+			case 1:
+				length = buffer.get(at) & 0xFFL;
+				break;
+
+			case 2:
+				length = buffer.getShort(at) & 0xFFFFL;
+				break;
+
+			default:
+				length = buffer.getInt(at) & 0xFFFFFFFFL;
+				break;
+			}
+
+			position += 1 + lengthBytes + typeBytes;
+
+			if (children == 0) {
+				position += length;
+			}
+			else {
+				values += children * length;
+			}
+
+		}
+
+		return position <= limit ? position : -1;
+	}
+
+	/**
+	 * Gets size of the value that has no length field
+	 *
+	 * @param b - format byte
+	 * @param position - position of the value for the error message
+	 * @return size in bytes including the format byte
+	 */
+
+	private static int fixedSize(int b, long position) {
+
+		switch(b) {
+
+		case 0xc0:
+		case 0xc2:
+		case 0xc3:
+			return 1;
+
+		case 0xcc:
+		case 0xd0:
+			return 2;
+
+		case 0xcd:
+		case 0xd1:
+			return 3;
+
+		case 0xd4:
+			return 3;
+
+		case 0xd5:
+			return 4;
+
+		case 0xca:
+		case 0xce:
+		case 0xd2:
+			return 5;
+
+		case 0xd6:
+			return 6;
+
+		case 0xcb:
+		case 0xcf:
+		case 0xd3:
+			return 9;
+
+		case 0xd7:
+			return 10;
+
+		case 0xd8:
+			return 18;
+
+		}
+
+		throw new MessageBoxException("invalid format byte " + b + " at window position " + position);
+	}
+
+}
@@ -0,0 +1,196 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.msgpack.core.ExtensionTypeHeader;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+
+import microevents.msgbox.MessageCodec;
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageCodecRegistry
+ *
+ * Process wide registry of compression codecs by id and the wire format of compressed payloads
+ *
+ * Compressed payload is the ext value of COMPRESSED_EXT_TYPE with the codec id,
+ * unsigned varint length of the original bytes and compressed bytes
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageCodecRegistry {
+
+	public static final MessageCodec DEFLATE = new MessageDeflateCodec();
+
+	private static final AtomicReferenceArray<MessageCodec> CODECS = new AtomicReferenceArray<MessageCodec>(256);
+
+	static {
+		register(DEFLATE);
+	}
+
+	private MessageCodecRegistry() {
+	}
+
+	/**
+	 * Registers the codec, the same instance could be registered again
+	 *
+	 * @param codec - not null codec
+	 * @throws IllegalArgumentException if other codec has the same id
+	 */
+
+	public static void register(MessageCodec codec) {
+
+		if (codec == null) {
+			throw new IllegalArgumentException("null codec");
+		}
+
+		int id = codec.getId();
+
+		if (id < 0 || id > 255) {
+			throw new IllegalArgumentException("invalid codec id " + id);
+		}
+
+		if (!CODECS.compareAndSet(id, null, codec) && CODECS.get(id) != codec) {
+			throw new IllegalArgumentException("codec is already registered: " + id);
+		}
+	}
+
+	/**
+	 * Finds registered codec
+	 *
+	 * @param id - id of the codec
+	 * @return codec or null
+	 */
+
+	public static MessageCodec find(int id) {
+		return id >= 0 && id < CODECS.length() ? CODECS.get(id) : null;
+	}
+
+	/**
+	 * Compresses bytes to the ext payload
+	 *
+	 * @param codec - not null codec
+	 * @param data - not null bytes
+	 * @return ext payload or null if compression does not make bytes smaller
+	 */
+
+	public static byte[] compress(MessageCodec codec, byte[] data) {
+
+		byte[] compressed = codec.compress(data, 0, data.length);
+
+		int headerSize = 1 + varintSize(data.length);
+
+		if (headerSize + compressed.length >= data.length) {
+			return null;
+		}
+
+		byte[] payload = new byte[headerSize + compressed.length];
+
+		payload[0] = (byte) codec.getId();
+
+		int index = 1;
+		for (int value = data.length; ; value >>>= 7) {
+			if ((value & ~0x7F) == 0) {
+				payload[index++] = (byte) value;
+				break;
+			}
+			payload[index++] = (byte) ((value & 0x7F) | 0x80);
+		}
+
+		System.arraycopy(compressed, 0, payload, headerSize, compressed.length);
+		return payload;
+	}
+
+	/**
+	 * Decompresses the ext payload
+	 *
+	 * @param payload - not null ext payload
+	 * @return original bytes
+	 * @throws MessageBoxException for unknown codec or corrupted payload
+	 */
+
+	public static byte[] decompress(byte[] payload) {
+
+		if (payload.length == 0) {
+			throw new MessageBoxException("empty compressed payload");
+		}
+
+		int id = payload[0] & 0xFF;
+		MessageCodec codec = find(id);
+
+		if (codec == null) {
+			throw new MessageBoxException("unknown codec: " + id);
+		}
+
+		int length = 0;
+		int index = 1;
+
+		for (int shift = 0; ; shift += 7) {
+
+			if (index == payload.length || shift == 35) {
+				throw new MessageBoxException("invalid length of compressed payload");
+			}
+
+			int b = payload[index++];
+			length |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+
+		if (length < 0) {
+			throw new MessageBoxException("invalid length of compressed payload");
+		}
+
+		return codec.decompress(payload, index, payload.length - index, length);
+	}
+
+	/**
+	 * Writes the ext payload
+	 *
+	 * @param packer - not null packer
+	 * @param payload - not null ext payload
+	 * @throws IOException
+	 */
+
+	public static void pack(MessagePacker packer, byte[] payload) throws IOException {
+		packer.packExtensionTypeHeader(MessageConstants.COMPRESSED_EXT_TYPE, payload.length);
+		packer.writePayload(payload);
+	}
+
+	/**
+	 * Reads the ext value
+	 *
+	 * @param unpacker - unpacker at ext value
+	 * @return ext payload or null if the value has other ext type
+	 * @throws IOException
+	 */
+
+	public static byte[] unpack(MessageUnpacker unpacker) throws IOException {
+
+		ExtensionTypeHeader ext = unpacker.unpackExtensionTypeHeader();
+
+		if (ext.getType() != MessageConstants.COMPRESSED_EXT_TYPE) {
+			unpacker.readPayloadAsReference(ext.getLength());
+			return null;
+		}
+
+		return unpacker.readPayload(ext.getLength());
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+}
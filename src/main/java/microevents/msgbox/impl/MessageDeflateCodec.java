@@ -0,0 +1,159 @@
+package microevents.msgbox.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import microevents.msgbox.MessageCodec;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageDeflateCodec
+ *
+ * Deflate codec of the JDK in zlib format with Adler-32 check, keeps Deflater and Inflater per thread
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageDeflateCodec implements MessageCodec {
+
+	public static final int ID = 1;
+
+	private final int level;
+
+	private final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(level);
+		}
+
+	};
+
+	private final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+
+		@Override
+		protected Inflater initialValue() {
+			return new Inflater();
+		}
+
+	};
+
+	private final ThreadLocal<byte[]> buffer = new ThreadLocal<byte[]>() {
+
+		@Override
+		protected byte[] initialValue() {
+			return new byte[8192];
+		}
+
+	};
+
+	public MessageDeflateCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates codec
+	 *
+	 * @param level - compression level of Deflater
+	 */
+
+	public MessageDeflateCodec(int level) {
+
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("invalid level " + level);
+		}
+
+		this.level = level;
+	}
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public byte[] compress(byte[] data, int offset, int length) {
+
+		Deflater deflater = this.deflater.get();
+		byte[] buffer = this.buffer.get();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(length, 1 << 20) / 2 + 16);
+
+		try {
+
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				int size = deflater.deflate(buffer);
+				out.write(buffer, 0, size);
+			}
+
+		}
+		finally {
+			deflater.reset();
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Inflates into the buffer that grows with the output up to the declared length,
+	 * so a forged length does not allocate more than the data really inflates to
+	 */
+
+	@Override
+	public byte[] decompress(byte[] data, int offset, int length, int uncompressedLength) {
+
+		if (uncompressedLength < 0) {
+			throw new IllegalArgumentException("negative uncompressed length: " + uncompressedLength);
+		}
+
+		Inflater inflater = this.inflater.get();
+
+		byte[] result = new byte[Math.min(uncompressedLength, Math.max(8192, 2 * length))];
+
+		try {
+
+			inflater.setInput(data, offset, length);
+
+			int size = 0;
+
+			while (size != uncompressedLength) {
+
+				if (size == result.length) {
+					result = Arrays.copyOf(result, (int) Math.min(uncompressedLength, 2L * result.length));
+				}
+
+				int n = inflater.inflate(result, size, result.length - size);
+
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				size += n;
+			}
+
+			if (size != uncompressedLength) {
+				throw new MessageBoxException("corrupted deflate data, expected " + uncompressedLength + " bytes, got " + size);
+			}
+
+			if (!inflater.finished() && inflater.inflate(this.buffer.get(), 0, 1) != 0) {
+				throw new MessageBoxException("corrupted deflate data, more than " + uncompressedLength + " bytes");
+			}
+
+		} catch (DataFormatException e) {
+			throw new MessageBoxException("corrupted deflate data", e);
+		}
+		finally {
+			inflater.reset();
+		}
+
+		return result;
+	}
+
+}
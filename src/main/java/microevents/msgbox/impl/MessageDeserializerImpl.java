@@ -0,0 +1,590 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ArrayBufferInput;
+import org.msgpack.core.buffer.ByteBufferInput;
+import org.msgpack.core.buffer.MessageBufferInput;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageDeserializer;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageProjection;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.MessageValueExpression;
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.support.MessageException;
+
+/**
+ * MessageDeserializerImpl
+ *
+ * Keeps one unpacker and resets it to the array or buffer input on every call
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageDeserializerImpl implements MessageDeserializer {
+
+	private static final byte[] EMPTY = new byte[0];
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap(EMPTY);
+
+	private static final ThreadLocal<MessageDeserializerImpl> LOCAL = new ThreadLocal<MessageDeserializerImpl>() {
+
+		@Override
+		protected MessageDeserializerImpl initialValue() {
+			return new MessageDeserializerImpl();
+		}
+
+	};
+
+	private final ArrayBufferInput arrayInput = new ArrayBufferInput(EMPTY);
+	private final ByteBufferInput bufferInput = new ByteBufferInput(EMPTY_BUFFER);
+	private DirectBufferInput directInput;
+
+	private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(arrayInput);
+
+	private boolean busy;
+
+	/**
+	 * Gets deserializer of the current thread
+	 *
+	 * Gives a new instance if the thread deserializer is in use, for example by nested call
+	 *
+	 * @return not null deserializer
+	 */
+
+	public static MessageDeserializerImpl local() {
+		MessageDeserializerImpl deserializer = LOCAL.get();
+		return deserializer.busy ? new MessageDeserializerImpl() : deserializer;
+	}
+
+	@Override
+	public MessageBox parseBox(byte[] blob) {
+
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return parseBox(blob, 0, blob.length);
+	}
+
+	@Override
+	public MessageBox parseBox(byte[] buffer, int offset, int length) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		arrayInput.reset(buffer, offset, length);
+
+		try {
+			return unpackBox(arrayInput);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageBox parseBox(ByteBuffer buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		try {
+			return unpackBox(resetInput(buffer));
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageBox parseBox(byte[] blob, MessageProjection projection) {
+
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		MessageProjectionImpl impl = MessageProjectionImpl.of(projection);
+
+		arrayInput.reset(blob, 0, blob.length);
+
+		try {
+			return unpackProjectedBox(arrayInput, impl);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageBox parseBox(ByteBuffer buffer, MessageProjection projection) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		MessageProjectionImpl impl = MessageProjectionImpl.of(projection);
+
+		try {
+			return unpackProjectedBox(resetInput(buffer), impl);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public Map<String, String> parseHeaders(byte[] blob) {
+
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return parseHeaders(blob, 0, blob.length);
+	}
+
+	@Override
+	public Map<String, String> parseHeaders(byte[] buffer, int offset, int length) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		arrayInput.reset(buffer, offset, length);
+
+		try {
+			return unpackHeaders(arrayInput);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public Map<String, String> parseHeaders(ByteBuffer buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		try {
+			return unpackHeaders(resetInput(buffer));
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> newValue(byte[] buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return newValue(buffer, 0, buffer.length);
+	}
+
+	@Override
+	public MessageValue<?> newValue(byte[] buffer, int offset, int length) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		arrayInput.reset(buffer, offset, length);
+
+		try {
+			return unpackValue(arrayInput);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> newValue(ByteBuffer buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		try {
+			return unpackValue(resetInput(buffer));
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> newValue(byte[] buffer, MessageProjection projection) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		MessageProjectionImpl impl = MessageProjectionImpl.of(projection);
+
+		arrayInput.reset(buffer, 0, buffer.length);
+
+		try {
+			return unpackProjectedValue(arrayInput, impl);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> newValue(ByteBuffer buffer, MessageProjection projection) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		MessageProjectionImpl impl = MessageProjectionImpl.of(projection);
+
+		try {
+			return unpackProjectedValue(resetInput(buffer), impl);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> getValue(byte[] buffer, MessageValueExpression ve) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		if (ve == null) {
+			throw new IllegalArgumentException("null ve");
+		}
+
+		arrayInput.reset(buffer, 0, buffer.length);
+
+		try {
+			return unpackPath(arrayInput, ve);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> getValue(ByteBuffer buffer, MessageValueExpression ve) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		if (ve == null) {
+			throw new IllegalArgumentException("null ve");
+		}
+
+		try {
+			return unpackPath(resetInput(buffer), ve);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> getBoxValue(byte[] blob, MessageValueExpression ve) {
+
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		if (ve == null) {
+			throw new IllegalArgumentException("null ve");
+		}
+
+		arrayInput.reset(blob, 0, blob.length);
+
+		try {
+			return unpackBoxPath(arrayInput, ve);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	@Override
+	public MessageValue<?> getBoxValue(ByteBuffer buffer, MessageValueExpression ve) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		if (ve == null) {
+			throw new IllegalArgumentException("null ve");
+		}
+
+		try {
+			return unpackBoxPath(resetInput(buffer), ve);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	/**
+	 * Extracts values of the projection from serialized value
+	 *
+	 * @param buffer - not null byte array
+	 * @param projection - not null projection
+	 * @return not null array of values
+	 */
+
+	MessageValue<?>[] project(byte[] buffer, MessageProjectionImpl projection) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		arrayInput.reset(buffer, 0, buffer.length);
+
+		try {
+			return unpackProjection(arrayInput, projection);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	/**
+	 * Extracts values of the projection from serialized value
+	 *
+	 * @param buffer - not null byte buffer, remaining bytes are used
+	 * @param projection - not null projection
+	 * @return not null array of values
+	 */
+
+	MessageValue<?>[] project(ByteBuffer buffer, MessageProjectionImpl projection) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		try {
+			return unpackProjection(resetInput(buffer), projection);
+		} catch (IOException e) {
+			throw new MessageException("unexpected IOException", e);
+		}
+	}
+
+	/**
+	 * Extracts values of the projection from serialized message
+	 *
+	 * @param blob - not null input buffer
+	 * @param projection - not null projection
+	 * @return not null array of values
+	 */
+
+	MessageValue<?>[] projectBox(byte[] blob, MessageProjectionImpl projection) {
+
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		arrayInput.reset(blob, 0, blob.length);
+
+		try {
+			return unpackBoxProjection(arrayInput, projection);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	/**
+	 * Extracts values of the projection from serialized message
+	 *
+	 * @param buffer - not null input buffer, remaining bytes are used
+	 * @param projection - not null projection
+	 * @return not null array of values
+	 */
+
+	MessageValue<?>[] projectBox(ByteBuffer buffer, MessageProjectionImpl projection) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		try {
+			return unpackBoxProjection(resetInput(buffer), projection);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	/**
+	 * Parses the box that must take all the bytes of the frame
+	 *
+	 * @param buffer - not null input buffer
+	 * @param offset - offset of the frame
+	 * @param length - length of the frame
+	 * @return box or null if bytes are left after the box
+	 */
+
+	MessageBox parseFrame(byte[] buffer, int offset, int length) {
+
+		arrayInput.reset(buffer, offset, length);
+
+		try {
+			return unpackFrame(arrayInput);
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	/**
+	 * Parses the box that must take all the remaining bytes of the buffer
+	 *
+	 * @param buffer - not null input buffer
+	 * @return box or null if bytes are left after the box
+	 */
+
+	MessageBox parseFrame(ByteBuffer buffer) {
+
+		try {
+			return unpackFrame(resetInput(buffer));
+		} catch (IOException e) {
+			throw new MessageBoxException("unexpected IOException", e);
+		}
+	}
+
+	private MessageBufferInput resetInput(ByteBuffer buffer) {
+
+		if (DirectBufferInput.isRequired(buffer)) {
+
+			if (directInput == null) {
+				directInput = new DirectBufferInput(buffer);
+			}
+			else {
+				directInput.reset(buffer);
+			}
+
+			return directInput;
+		}
+
+		bufferInput.reset(buffer);
+		return bufferInput;
+	}
+
+	/**
+	 * Resets the unpacker to the input and marks the deserializer as used
+	 *
+	 * @param input - prepared input
+	 * @return unpacker that must be released after parsing
+	 */
+
+	private MessageUnpacker acquire(MessageBufferInput input) throws IOException {
+		busy = true;
+		unpacker.reset(input);
+		return unpacker;
+	}
+
+	/**
+	 * Resets inputs to the empty array, so the caller buffer is not referenced
+	 */
+
+	private void release() throws IOException {
+		arrayInput.reset(EMPTY);
+		bufferInput.reset(EMPTY_BUFFER);
+		if (directInput != null) {
+			directInput.reset(EMPTY_BUFFER);
+		}
+		unpacker.reset(arrayInput);
+		busy = false;
+	}
+
+	private MessageBox unpackBox(MessageBufferInput input) throws IOException {
+		try {
+			return new MessageBoxImpl(acquire(input));
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageBox unpackProjectedBox(MessageBufferInput input, MessageProjectionImpl projection) throws IOException {
+		try {
+			return new MessageBoxImpl(acquire(input), projection);
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageBox unpackFrame(MessageBufferInput input) throws IOException {
+		try {
+			MessageBox box = new MessageBoxImpl(acquire(input));
+			return unpacker.hasNext() ? null : box;
+		}
+		finally {
+			release();
+		}
+	}
+
+	private Map<String, String> unpackHeaders(MessageBufferInput input) throws IOException {
+		try {
+			return MessageBoxImpl.parseHeaders(acquire(input), false);
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageValue<?> unpackValue(MessageBufferInput input) throws IOException {
+		try {
+			return MessageFactory.newValue(acquire(input));
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageValue<?> unpackProjectedValue(MessageBufferInput input, MessageProjectionImpl projection) throws IOException {
+		try {
+			return projection.materialize(acquire(input));
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageValue<?> unpackPath(MessageBufferInput input, MessageValueExpression ve) throws IOException {
+		try {
+			return MessagePathEvaluator.getValue(acquire(input), ve);
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageValue<?> unpackBoxPath(MessageBufferInput input, MessageValueExpression ve) throws IOException {
+		try {
+			return MessagePathEvaluator.getBoxValue(acquire(input), ve);
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageValue<?>[] unpackProjection(MessageBufferInput input, MessageProjectionImpl projection) throws IOException {
+		try {
+			return projection.extract(acquire(input));
+		}
+		finally {
+			release();
+		}
+	}
+
+	private MessageValue<?>[] unpackBoxProjection(MessageBufferInput input, MessageProjectionImpl projection) throws IOException {
+		try {
+			return projection.extractBox(acquire(input));
+		}
+		finally {
+			release();
+		}
+	}
+
+}
@@ -0,0 +1,259 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.msgpack.core.ExtensionTypeHeader;
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
+
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.MessageDictionary;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageDictionaryImpl
+ *
+ * Array of keys with the hash index, keeps ready ext encodings of all keys
+ *
+ * Also holds the process wide registry of dictionaries by id
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageDictionaryImpl implements MessageDictionary {
+
+	public static final int MAX_SIZE = 1 << 16;
+
+	private static final ConcurrentMap<Integer, MessageDictionary> REGISTRY = new ConcurrentHashMap<Integer, MessageDictionary>();
+
+	private final int id;
+	private final String[] keys;
+	private final byte[][] encoded;
+	private final Map<String, Integer> indexes;
+
+	public MessageDictionaryImpl(int id, List<String> keys) {
+
+		if (keys == null) {
+			throw new IllegalArgumentException("null keys");
+		}
+
+		if (keys.size() > MAX_SIZE) {
+			throw new IllegalArgumentException("too many keys: " + keys.size());
+		}
+
+		this.id = id;
+		this.keys = new String[keys.size()];
+		this.encoded = new byte[keys.size()][];
+		this.indexes = new HashMap<String, Integer>(keys.size() * 2);
+
+		for (int i = 0; i != keys.size(); ++i) {
+
+			String key = keys.get(i);
+
+			if (key == null) {
+				throw new IllegalArgumentException("null key at " + i);
+			}
+
+			if (indexes.put(key, i) != null) {
+				throw new IllegalArgumentException("duplicate key: " + key);
+			}
+
+			this.keys[i] = key;
+			this.encoded[i] = encode(i);
+		}
+
+	}
+
+	private static byte[] encode(int index) {
+
+		if (index < 256) {
+			return new byte[] { (byte) 0xd4, MessageConstants.DICTIONARY_KEY_EXT_TYPE, (byte) index };
+		}
+
+		return new byte[] { (byte) 0xd5, MessageConstants.DICTIONARY_KEY_EXT_TYPE, (byte) (index >>> 8), (byte) index };
+	}
+
+	@Override
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public String getKey(int index) {
+		return index >= 0 && index < keys.length ? keys[index] : null;
+	}
+
+	@Override
+	public int indexOf(String key) {
+		Integer index = indexes.get(key);
+		return index != null ? index.intValue() : -1;
+	}
+
+	/**
+	 * Registers the dictionary, the same instance or a dictionary with the same keys could be registered again
+	 *
+	 * @param dictionary - not null dictionary
+	 * @return registered instance
+	 * @throws IllegalArgumentException if other keys are registered with the same id
+	 */
+
+	public static MessageDictionary register(MessageDictionary dictionary) {
+
+		if (dictionary == null) {
+			throw new IllegalArgumentException("null dictionary");
+		}
+
+		MessageDictionary existing = REGISTRY.putIfAbsent(dictionary.getId(), dictionary);
+
+		if (existing == null) {
+			return dictionary;
+		}
+
+		if (existing != dictionary && !sameKeys(existing, dictionary)) {
+			throw new IllegalArgumentException("dictionary is already registered: " + dictionary.getId());
+		}
+
+		return existing;
+	}
+
+	private static boolean sameKeys(MessageDictionary left, MessageDictionary right) {
+
+		if (left.size() != right.size()) {
+			return false;
+		}
+
+		for (int i = 0; i != left.size(); ++i) {
+			if (!left.getKey(i).equals(right.getKey(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds registered dictionary
+	 *
+	 * @param id - id of the dictionary
+	 * @return dictionary or null
+	 */
+
+	public static MessageDictionary find(int id) {
+		return REGISTRY.get(id);
+	}
+
+	/**
+	 * Finds the dictionary recorded in the header
+	 *
+	 * @param header - not null header
+	 * @return dictionary or null if the header has no registered dictionary
+	 */
+
+	public static MessageDictionary find(Map<String, String> header) {
+
+		return find(header.get(MessageConstants.DICTIONARY_HEADER));
+	}
+
+	/**
+	 * Finds the dictionary by the header value
+	 *
+	 * Value that is not the id of a registered dictionary is a plain header,
+	 * keys written by the unknown dictionary fail in unpackKey
+	 *
+	 * @param id - value of the dictionary header or null
+	 * @return dictionary or null if id is null, not a number or not registered
+	 */
+
+	public static MessageDictionary find(String id) {
+
+		if (id == null || !MessageTableImpl.isIntKey(id)) {
+			return null;
+		}
+
+		return find(Integer.parseInt(id));
+	}
+
+	/**
+	 * Writes table key, the key found in the dictionary is written as ext value
+	 *
+	 * @param packer - not null packer
+	 * @param dictionary - dictionary or null
+	 * @param key - not null key
+	 * @throws IOException
+	 */
+
+	public static void packKey(MessagePacker packer, MessageDictionary dictionary, String key) throws IOException {
+
+		int index = dictionary != null ? dictionary.indexOf(key) : -1;
+
+		if (index < 0 || index >= MAX_SIZE) {
+			StringInternTable.KEYS.packString(packer, key);
+		}
+		else if (dictionary instanceof MessageDictionaryImpl) {
+			packer.writePayload(((MessageDictionaryImpl) dictionary).encoded[index]);
+		}
+		else {
+			packer.writePayload(encode(index));
+		}
+
+	}
+
+	/**
+	 * Checks if the table key could be the dictionary index
+	 *
+	 * @param format - format of the key
+	 * @return true for fixext1 and fixext2
+	 */
+
+	public static boolean isKey(MessageFormat format) {
+		return format == MessageFormat.FIXEXT1 || format == MessageFormat.FIXEXT2;
+	}
+
+	/**
+	 * Reads the table key written by the dictionary index
+	 *
+	 * @param unpacker - unpacker at fixext1 or fixext2 value
+	 * @param dictionary - dictionary or null
+	 * @return key or null if the value is not the dictionary key
+	 * @throws MessageBoxException if the dictionary is not known or has no key with the index
+	 * @throws IOException
+	 */
+
+	public static String unpackKey(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
+
+		ExtensionTypeHeader ext = unpacker.unpackExtensionTypeHeader();
+		MessageBuffer payload = unpacker.readPayloadAsReference(ext.getLength());
+
+		if (ext.getType() != MessageConstants.DICTIONARY_KEY_EXT_TYPE) {
+			return null;
+		}
+
+		if (dictionary == null) {
+			throw new MessageBoxException("dictionary key without known dictionary");
+		}
+
+		int index = payload.size() == 1 ? payload.getByte(0) & 0xFF : (payload.getByte(0) & 0xFF) << 8 | (payload.getByte(1) & 0xFF);
+
+		String key = dictionary.getKey(index);
+
+		if (key == null) {
+			throw new MessageBoxException("unknown key index " + index + " in dictionary " + dictionary.getId());
+		}
+
+		return key;
+	}
+
+}
@@ -0,0 +1,267 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageFrameCodec;
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.util.MessageCrc32cUtil;
+
+/**
+ * MessageFrameCodecImpl
+ *
+ * Packs every message to the reusable message buffer and appends the frame to the batch buffer,
+ * so the whole batch is written to the output at once
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageFrameCodecImpl implements MessageFrameCodec {
+
+	private static final int MAX_VARINT_SIZE = 5;
+
+	private final boolean checksum;
+
+	private final ReusableBufferOutput messageOutput = new ReusableBufferOutput();
+	private final ReusableBufferOutput frameOutput = new ReusableBufferOutput();
+	private final MessagePacker packer = MessagePack.newDefaultPacker(messageOutput);
+
+	private final MessageDeserializerImpl deserializer = new MessageDeserializerImpl();
+
+	private final byte[] scratch = new byte[MAX_VARINT_SIZE];
+
+	public MessageFrameCodecImpl(boolean checksum) {
+		this.checksum = checksum;
+	}
+
+	@Override
+	public boolean hasChecksum() {
+		return checksum;
+	}
+
+	@Override
+	public byte[] encode(List<MessageBox> boxes) {
+
+		try {
+			encodeFrames(boxes);
+			return frameOutput.toByteArray();
+		} catch (IOException e) {
+			throw new MessageBoxException("IOException happened during serialization to byte array", e);
+		}
+		finally {
+			frameOutput.clear();
+		}
+	}
+
+	@Override
+	public int encode(List<MessageBox> boxes, ByteBuffer buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		try {
+
+			encodeFrames(boxes);
+
+			int size = frameOutput.getSize();
+			if (size > buffer.remaining()) {
+				throw new BufferOverflowException();
+			}
+
+			buffer.put(frameOutput.array(), 0, size);
+			return size;
+
+		} catch (IOException e) {
+			throw new MessageBoxException("IOException happened during serialization to byte buffer", e);
+		}
+		finally {
+			frameOutput.clear();
+		}
+	}
+
+	@Override
+	public void encode(List<MessageBox> boxes, OutputStream out) throws IOException {
+
+		if (out == null) {
+			throw new IllegalArgumentException("null out");
+		}
+
+		try {
+			encodeFrames(boxes);
+			out.write(frameOutput.array(), 0, frameOutput.getSize());
+		}
+		finally {
+			frameOutput.clear();
+		}
+	}
+
+	private void encodeFrames(List<MessageBox> boxes) throws IOException {
+
+		if (boxes == null) {
+			throw new IllegalArgumentException("null boxes");
+		}
+
+		frameOutput.clear();
+
+		for (MessageBox box : boxes) {
+
+			if (box == null) {
+				throw new IllegalArgumentException("null box");
+			}
+
+			packer.flush();
+			messageOutput.clear();
+
+			box.writeTo(packer);
+			packer.flush();
+
+			int length = messageOutput.getSize();
+
+			writeVarint(length);
+			frameOutput.write(messageOutput.array(), 0, length);
+
+			if (checksum) {
+				writeIntLE(MessageCrc32cUtil.crc32c(messageOutput.array(), 0, length));
+			}
+
+		}
+
+		messageOutput.clear();
+	}
+
+	private void writeVarint(int value) {
+
+		int size = 0;
+
+		while ((value & ~0x7F) != 0) {
+			scratch[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		scratch[size++] = (byte) value;
+
+		frameOutput.write(scratch, 0, size);
+	}
+
+	private void writeIntLE(int value) {
+		scratch[0] = (byte) value;
+		scratch[1] = (byte) (value >>> 8);
+		scratch[2] = (byte) (value >>> 16);
+		scratch[3] = (byte) (value >>> 24);
+		frameOutput.write(scratch, 0, 4);
+	}
+
+	@Override
+	public List<MessageBox> decode(byte[] frames) {
+
+		if (frames == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return decode(ByteBuffer.wrap(frames));
+	}
+
+	@Override
+	public List<MessageBox> decode(byte[] frames, int offset, int length) {
+
+		if (frames == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return decode(ByteBuffer.wrap(frames, offset, length));
+	}
+
+	@Override
+	public List<MessageBox> decode(ByteBuffer frames) {
+
+		if (frames == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		List<MessageBox> boxes = new ArrayList<MessageBox>();
+
+		int start = frames.position();
+
+		while (frames.hasRemaining()) {
+
+			int offset = frames.position() - start;
+
+			int length = readVarint(frames, offset);
+			int frameEnd = length + (checksum ? 4 : 0);
+
+			if (frameEnd < 0 || frameEnd > frames.remaining()) {
+				throw new MessageBoxException("truncated frame at offset " + offset);
+			}
+
+			ByteBuffer message = frames.slice();
+			message.limit(length);
+
+			if (checksum) {
+
+				int expected = (frames.get(frames.position() + length) & 0xFF)
+						| (frames.get(frames.position() + length + 1) & 0xFF) << 8
+						| (frames.get(frames.position() + length + 2) & 0xFF) << 16
+						| (frames.get(frames.position() + length + 3) & 0xFF) << 24;
+
+				if (MessageCrc32cUtil.crc32c(message) != expected) {
+					throw new MessageBoxException("checksum mismatch in frame at offset " + offset);
+				}
+			}
+
+			MessageBox box;
+
+			if (message.hasArray()) {
+				box = deserializer.parseFrame(message.array(), message.arrayOffset(), length);
+			}
+			else {
+				box = deserializer.parseFrame(message);
+			}
+
+			if (box == null) {
+				throw new MessageBoxException("invalid frame at offset " + offset);
+			}
+
+			boxes.add(box);
+
+			frames.position(frames.position() + frameEnd);
+		}
+
+		return boxes;
+	}
+
+	private static int readVarint(ByteBuffer frames, int offset) {
+
+		int value = 0;
+
+		for (int shift = 0; shift != 7 * MAX_VARINT_SIZE; shift += 7) {
+
+			if (!frames.hasRemaining()) {
+				throw new MessageBoxException("truncated frame at offset " + offset);
+			}
+
+			int b = frames.get();
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+
+				if (value < 0) {
+					break;
+				}
+
+				return value;
+			}
+		}
+
+		throw new MessageBoxException("invalid frame length at offset " + offset);
+	}
+
+}
@@ -0,0 +1,658 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.ValueType;
+
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.MessageDictionary;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.util.MessageJsonUtil;
+
+/**
+ * MessageJsonTranscoder
+ *
+ * Converts MsgPack stream to json without building messages and values
+ *
+ * Gives the same json as parsing followed by toJson(): nil and unsupported values are dropped from maps,
+ * arrays with dropped elements become int key tables, maps with int keys 0..n-1 become arrays, binary strings and compressed payloads are written as UTF-8 strings
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageJsonTranscoder {
+
+	private static final int[] EMPTY = new int[0];
+
+	private final MessageUnpacker unpacker;
+	private Appendable out;
+
+	/**
+	 * Dictionary of table keys from the header of the box
+	 */
+
+	private MessageDictionary dictionary;
+
+	/**
+	 * Builder of arrays and maps if the output is not StringBuilder
+	 */
+
+	private StringBuilder buffer;
+
+	public MessageJsonTranscoder(MessageUnpacker unpacker, Appendable out) {
+
+		if (unpacker == null) {
+			throw new IllegalArgumentException("null unpacker");
+		}
+
+		if (out == null) {
+			throw new IllegalArgumentException("null out");
+		}
+
+		this.unpacker = unpacker;
+		this.out = out;
+	}
+
+	/**
+	 * Transcodes serialized message box
+	 *
+	 * @throws IOException
+	 */
+
+	public void writeBox() throws IOException {
+
+		out.append('{');
+
+		if (unpacker.hasNext()) {
+
+			MessageFormat format = unpacker.getNextFormat();
+
+			if (MessageFactory.isNull(format)) {
+				unpacker.unpackNil();
+			}
+			else if (!MessageFactory.isMap(format)) {
+				throw new MessageBoxException("expected Map in message pack format");
+			}
+			else {
+				writeBoxEntries();
+			}
+
+		}
+
+		out.append('}');
+	}
+
+	private void writeBoxEntries() throws IOException {
+
+		boolean first = true;
+		boolean headerRead = false;
+		MessageUnpacker deferredBody = null;
+
+    int size = unpacker.unpackMapHeader();
+
+    for (int i = 0; i != size; ++i) {
+
+    	String key = unpacker.unpackString();
+
+    	if (MessageConstants.HEADER_KEY.equals(key)) {
+    		first = writeHeader(first);
+    		headerRead = true;
+    	}
+    	else if (MessageConstants.BODY_KEY.equals(key) && !headerRead && i + 1 != size) {
+    		deferredBody = MessageBoxImpl.bufferEntry(unpacker);
+    	}
+    	else if (MessageConstants.BODY_KEY.equals(key)) {
+    		first = writeBody(first);
+    	}
+    	else {
+    		throw new MessageBoxException("unexpected key in the map: " + key);
+    	}
+
+    }
+
+    if (deferredBody != null) {
+    	MessageJsonTranscoder transcoder = new MessageJsonTranscoder(deferredBody, out);
+    	transcoder.dictionary = dictionary;
+    	transcoder.writeBody(first);
+    }
+
+	}
+
+	private boolean writeHeader(boolean first) throws IOException {
+
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (MessageFactory.isNull(format)) {
+			unpacker.unpackNil();
+			return first;
+		}
+
+		if (!MessageFactory.isMap(format)) {
+			throw new MessageBoxException("expected Map in message pack format");
+		}
+
+    int size = unpacker.unpackMapHeader();
+    if (size == 0) {
+    	return first;
+    }
+
+    writeKey(MessageConstants.HEADER_KEY, first);
+    out.append('{');
+
+    for (int i = 0; i != size; ++i) {
+
+    	if (i != 0) {
+    		out.append(',');
+    	}
+
+    	String key = unpacker.unpackString();
+    	String value = unpacker.unpackString();
+
+    	if (MessageConstants.DICTIONARY_HEADER.equals(key)) {
+    		dictionary = MessageDictionaryImpl.find(value);
+    	}
+
+    	MessageJsonUtil.writeString(out, key);
+    	out.append(':');
+    	MessageJsonUtil.writeString(out, value);
+
+    }
+
+    out.append('}');
+		return false;
+	}
+
+	private boolean writeBody(boolean first) throws IOException {
+
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (MessageFactory.isNull(format)) {
+			unpacker.unpackNil();
+			return first;
+		}
+
+		if (!MessageFactory.isMap(format)) {
+			throw new MessageBoxException("expected Map in message pack format");
+		}
+
+		boolean empty = true;
+
+    int size = unpacker.unpackMapHeader();
+
+    for (int i = 0; i != size; ++i) {
+
+    	String key = unpacker.unpackString();
+
+    	byte[] compressed = null;
+
+    	if (unpacker.getNextFormat().getValueType() == ValueType.EXTENSION) {
+    		compressed = MessageCodecRegistry.unpack(unpacker);
+    		if (compressed == null) {
+    			continue;
+    		}
+    	}
+    	else if (isDropped(unpacker.getNextFormat())) {
+    		unpacker.skipValue();
+    		continue;
+    	}
+
+    	if (empty) {
+    		writeKey(MessageConstants.BODY_KEY, first);
+    		out.append('{');
+    		empty = false;
+    	}
+    	else {
+    		out.append(',');
+    	}
+
+    	MessageJsonUtil.writeString(out, key);
+    	out.append(':');
+
+    	if (compressed != null) {
+    		byte[] bytes = MessageCodecRegistry.decompress(compressed);
+    		MessageJsonUtil.writeUtf8(out, bytes, 0, bytes.length);
+    	}
+    	else {
+    		writeValue();
+    	}
+
+    }
+
+    if (empty) {
+    	return first;
+    }
+
+    out.append('}');
+    return false;
+	}
+
+	private void writeKey(String key, boolean first) throws IOException {
+		if (!first) {
+			out.append(',');
+		}
+		MessageJsonUtil.writeString(out, key);
+		out.append(':');
+	}
+
+	/**
+	 * Transcodes serialized message value
+	 *
+	 * @throws IOException
+	 */
+
+	public void writeValue() throws IOException {
+
+		if (!unpacker.hasNext()) {
+			out.append("null");
+			return;
+		}
+
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (MessageFactory.isArray(format)) {
+			writeArray();
+		}
+
+		else if (MessageFactory.isMap(format)) {
+			writeMap();
+		}
+
+		else {
+			writeSimpleValue(format);
+		}
+
+	}
+
+	/**
+	 * Writes the array, elements are written as json array while keys of the elements are 0..n-1,
+	 * the first element after the dropped one turns the array into the int key table
+	 * and the elements written before it are rewritten with their keys
+	 *
+	 * Array is kept in the builder until it ends, because an element could be dropped
+	 * at any position
+	 *
+	 * @throws IOException
+	 */
+
+	private void writeArray() throws IOException {
+
+    int arraySize = unpacker.unpackArrayHeader();
+
+    Appendable parent = out;
+    StringBuilder builder = builder();
+    int mark = builder.length();
+    out = builder;
+
+    int[] ends = EMPTY;
+    int count = 0;
+    boolean array = true;
+
+    try {
+
+    	builder.append('[');
+
+	    for (int i = 0; i != arraySize; ++i) {
+
+	    	if (isDropped(unpacker.getNextFormat())) {
+	    		unpacker.skipValue();
+	    		continue;
+	    	}
+
+	    	if (array && count != i) {
+	    		rewriteWithKeys(builder, mark, ends, count);
+	    		array = false;
+	    	}
+
+	    	if (count != 0) {
+	    		builder.append(',');
+	    	}
+
+	    	if (!array) {
+	    		MessageJsonUtil.writeString(builder, Integer.toString(i));
+	    		builder.append(':');
+	    	}
+
+	    	writeValue();
+
+	    	if (array) {
+	    		ends = grow(ends, count);
+	    		ends[count] = builder.length();
+	    	}
+	    	count++;
+	    }
+
+    }
+    finally {
+    	out = parent;
+    }
+
+    if (count == 0) {
+    	builder.setLength(mark);
+    	builder.append("{}");
+    }
+    else {
+    	builder.append(array ? ']' : '}');
+    }
+
+    flush(parent, builder, mark);
+	}
+
+	/**
+	 * Rewrites elements of the array written to the builder as entries of the int key table
+	 *
+	 * @param builder - builder of the array
+	 * @param mark - position of the array in the builder
+	 * @param ends - end positions of the elements
+	 * @param count - number of the elements
+	 */
+
+	private static void rewriteWithKeys(StringBuilder builder, int mark, int[] ends, int count) throws IOException {
+
+		String elements = builder.substring(mark + 1);
+
+		builder.setLength(mark);
+		builder.append('{');
+
+		for (int i = 0, start = 0; i != count; ++i) {
+
+			if (i != 0) {
+				builder.append(',');
+			}
+
+			MessageJsonUtil.writeString(builder, Integer.toString(i));
+			builder.append(':');
+
+			int end = ends[i] - mark - 1;
+			builder.append(elements, start, end);
+			start = end + 1;
+		}
+
+	}
+
+	/**
+	 * Writes the map, the map with int keys 0..n-1 becomes the json array as in toJson() of the table
+	 *
+	 * Map is kept in the builder only while all keys are int, the first other key
+	 * flushes it and the rest is written directly to the output
+	 *
+	 * @throws IOException
+	 */
+
+	private void writeMap() throws IOException {
+
+    int mapSize = unpacker.unpackMapHeader();
+
+    Appendable parent = out;
+    StringBuilder builder = builder();
+    int mark = builder.length();
+    out = builder;
+
+    int[] keys = EMPTY;
+    int[] starts = EMPTY;
+    int[] ends = EMPTY;
+    int count = 0;
+    boolean intKeys = true;
+
+    try {
+
+    	out.append('{');
+
+	    for (int i = 0; i != mapSize; ++i) {
+
+	    	String key = readKey();
+
+	    	if (key == null || isDropped(unpacker.getNextFormat())) {
+	    		unpacker.skipValue();
+	    		continue;
+	    	}
+
+	    	if (intKeys && !MessageTableImpl.isIntKey(key)) {
+	    		intKeys = false;
+	    		flush(parent, builder, mark);
+	    		out = parent;
+	    	}
+
+	    	if (count != 0) {
+	    		out.append(',');
+	    	}
+
+	    	MessageJsonUtil.writeString(out, key);
+	    	out.append(':');
+
+	    	if (intKeys) {
+	    		keys = grow(keys, count);
+	    		starts = grow(starts, count);
+	    		keys[count] = Integer.parseInt(key);
+	    		starts[count] = builder.length();
+	    	}
+
+	    	writeValue();
+
+	    	if (intKeys) {
+	    		ends = grow(ends, count);
+	    		ends[count] = builder.length();
+	    	}
+	    	count++;
+	    }
+
+    }
+    finally {
+    	out = parent;
+    }
+
+    if (!intKeys) {
+    	out.append('}');
+    	return;
+    }
+
+    int[] order = sequence(keys, count);
+
+    if (order != null) {
+
+    	String entries = builder.substring(mark);
+
+    	builder.setLength(mark);
+    	builder.append('[');
+
+    	for (int i = 0; i != count; ++i) {
+    		if (i != 0) {
+    			builder.append(',');
+    		}
+    		int entry = order[i];
+    		builder.append(entries, starts[entry] - mark, ends[entry] - mark);
+    	}
+
+    	builder.append(']');
+    }
+    else {
+    	builder.append('}');
+    }
+
+    flush(parent, builder, mark);
+	}
+
+	/**
+	 * Orders entries by int keys if keys are 0..count-1 without gaps and duplicates
+	 *
+	 * @param keys - keys of the entries
+	 * @param count - number of the entries
+	 * @return indexes of the entries by keys or null
+	 */
+
+	private static int[] sequence(int[] keys, int count) {
+
+		if (count == 0) {
+			return null;
+		}
+
+		int[] order = new int[count];
+		Arrays.fill(order, -1);
+
+		for (int i = 0; i != count; ++i) {
+
+			int key = keys[i];
+
+			if (key < 0 || key >= count || order[key] != -1) {
+				return null;
+			}
+
+			order[key] = i;
+		}
+
+		return order;
+	}
+
+	/**
+	 * Gets the builder for the array or the map, the output itself when it is StringBuilder
+	 * so nested arrays and maps are written to the same builder
+	 *
+	 * @return not null builder
+	 */
+
+	private StringBuilder builder() {
+
+		if (out instanceof StringBuilder) {
+			return (StringBuilder) out;
+		}
+
+		if (buffer == null) {
+			buffer = new StringBuilder();
+		}
+
+		return buffer;
+	}
+
+	private static void flush(Appendable parent, StringBuilder builder, int mark) throws IOException {
+		if (parent != builder) {
+			parent.append(builder, mark, builder.length());
+			builder.setLength(mark);
+		}
+	}
+
+	private static int[] grow(int[] array, int count) {
+		return count != array.length ? array : Arrays.copyOf(array, Math.max(8, count * 2));
+	}
+
+	private String readKey() throws IOException {
+
+		MessageFormat format = unpacker.getNextFormat();
+
+		switch (format) {
+
+		case INT8:
+		case INT16:
+		case INT32:
+		case INT64:
+		case UINT8:
+		case UINT16:
+		case UINT32:
+		case UINT64:
+		case POSFIXINT:
+		case NEGFIXINT:
+			return Integer.toString((int) unpacker.unpackLong());
+
+		case STR8:
+		case STR16:
+		case STR32:
+		case FIXSTR:
+			return unpacker.unpackString();
+
+		case FIXEXT1:
+		case FIXEXT2:
+			return MessageDictionaryImpl.unpackKey(unpacker, dictionary);
+
+		default:
+			MessageValue<?> key = MessageFactory.newValue(unpacker);
+			return key != null ? key.asString() : null;
+		}
+
+	}
+
+	private void writeSimpleValue(MessageFormat format) throws IOException {
+
+		switch (format) {
+
+		case NIL:
+			unpacker.unpackNil();
+			out.append("null");
+			break;
+
+		case BOOLEAN:
+			MessageJsonUtil.writeBoolean(out, unpacker.unpackBoolean());
+			break;
+
+		case INT8:
+		case INT16:
+		case INT32:
+		case INT64:
+		case UINT8:
+		case UINT16:
+		case UINT32:
+		case UINT64:
+		case POSFIXINT:
+		case NEGFIXINT:
+			MessageJsonUtil.writeLong(out, unpacker.unpackLong());
+			break;
+
+		case FLOAT32:
+		case FLOAT64:
+			MessageJsonUtil.writeDouble(out, unpacker.unpackDouble());
+			break;
+
+		case STR8:
+		case STR16:
+		case STR32:
+		case FIXSTR:
+			MessageJsonUtil.writeString(out, unpacker.unpackString());
+			break;
+
+		case BIN8:
+		case BIN16:
+		case BIN32:
+			byte[] bytes = unpacker.readPayload(unpacker.unpackBinaryHeader());
+			MessageJsonUtil.writeUtf8(out, bytes, 0, bytes.length);
+			break;
+
+		default:
+			unpacker.skipValue();
+			out.append("null");
+		}
+
+	}
+
+	/**
+	 * Checks if the value would be dropped by parser
+	 *
+	 * @param format - format of the value
+	 * @return true if value is nil or has unsupported type
+	 */
+
+	private static boolean isDropped(MessageFormat format) {
+
+		switch (format) {
+
+		case NIL:
+		case FIXEXT1:
+		case FIXEXT2:
+		case FIXEXT4:
+		case FIXEXT8:
+		case FIXEXT16:
+		case EXT8:
+		case EXT16:
+		case EXT32:
+		case NEVER_USED:
+			return true;
+
+		default:
+			return false;
+		}
+
+	}
+
+}
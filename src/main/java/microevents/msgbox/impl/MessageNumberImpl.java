@@ -11,6 +11,7 @@ import microevents.msgbox.MessageNumber;
 import microevents.msgbox.MessageNumberType;
 import microevents.msgbox.support.MessageException;
 import microevents.msgbox.support.MessageNumberFormatException;
+import microevents.msgbox.util.MessageJsonUtil;
 import microevents.msgbox.util.MessageStringifyUtil;
 import microevents.msgbox.util.MessageStringifyUtil.NumberType;
 
@@ -205,6 +206,20 @@ public final class MessageNumberImpl extends AbstractMessageValueImpl<MessageNum
 		}	
 	}
   
+  @Override
+	public void writeJsonTo(Appendable out) throws IOException {
+		switch(type) {
+		case LONG:
+			MessageJsonUtil.writeLong(out, longValue);
+			break;
+		case DOUBLE:
+			MessageJsonUtil.writeDouble(out, doubleValue);
+			break;
+		default:
+		  throw new IOException("unexpected type: " + type);		
+		}	
+	}
+  
 	@Override
 	public int hashCode() {
 		final int prime = 31;
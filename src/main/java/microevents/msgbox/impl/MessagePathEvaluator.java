@@ -0,0 +1,287 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.value.ValueType;
+
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.MessageDictionary;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.MessageValueExpression;
+
+/**
+ * MessagePathEvaluator
+ *
+ * Evaluates value expression on serialized MsgPack without building tables,
+ * walks the maps and arrays along the path and skips other entries by skipValue()
+ *
+ * Keys are matched as MessageTableImpl matches them: string keys by UTF-8 bytes,
+ * int keys and array indexes by the canonical int string of the path element
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessagePathEvaluator {
+
+	private MessagePathEvaluator() {
+	}
+
+	/**
+	 * Moves the unpacker to the value at the path
+	 *
+	 * @param unpacker - unpacker at the root value
+	 * @param ve - not null expression
+	 * @param from - first element of the path to evaluate
+	 * @param dictionary - dictionary of table keys or null
+	 * @return true if the unpacker is at the value, false if the path is not found and the unpacker position is undefined
+	 * @throws IOException
+	 */
+
+	public static boolean seek(MessageUnpacker unpacker, MessageValueExpression ve, int from, MessageDictionary dictionary) throws IOException {
+
+		MessageValueExpressionImpl compiled = MessageValueExpressionImpl.compile(ve);
+
+		for (int i = from; i != compiled.size(); ++i) {
+
+			if (!unpacker.hasNext()) {
+				return false;
+			}
+
+			MessageFormat format = unpacker.getNextFormat();
+
+			if (MessageFactory.isMap(format)) {
+				if (!seekKey(unpacker, compiled, i, dictionary)) {
+					return false;
+				}
+			}
+			else if (MessageFactory.isArray(format)) {
+				if (!seekIndex(unpacker, compiled, i)) {
+					return false;
+				}
+			}
+			else {
+				return false;
+			}
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets value at the path of the serialized value
+	 *
+	 * @param unpacker - unpacker at the value
+	 * @param ve - not null expression
+	 * @return value or null
+	 * @throws IOException
+	 */
+
+	public static MessageValue<?> getValue(MessageUnpacker unpacker, MessageValueExpression ve) throws IOException {
+		return seek(unpacker, ve, 0, null) ? MessageFactory.newValue(unpacker) : null;
+	}
+
+	/**
+	 * Gets value at the path of the serialized message, the path starts from header or body
+	 *
+	 * Header value is the string, binary and compressed payloads are strings of bytes,
+	 * table keys are decoded by the dictionary of the message
+	 *
+	 * @param unpacker - unpacker at the message
+	 * @param ve - not null expression
+	 * @return value or null
+	 * @throws IOException
+	 */
+
+	public static MessageValue<?> getBoxValue(MessageUnpacker unpacker, MessageValueExpression ve) throws IOException {
+
+		if (ve.isEmpty() || !unpacker.hasNext() || !MessageFactory.isMap(unpacker.getNextFormat())) {
+			return null;
+		}
+
+		String root = ve.get(0);
+		boolean body = MessageConstants.BODY_KEY.equals(root);
+
+		if (!body && !MessageConstants.HEADER_KEY.equals(root)) {
+			return null;
+		}
+
+		MessageDictionary dictionary = null;
+		boolean headerRead = false;
+		MessageUnpacker deferredBody = null;
+
+		int size = unpacker.unpackMapHeader();
+
+		for (int i = 0; i != size; ++i) {
+
+			String key = StringInternTable.KEYS.unpackString(unpacker);
+
+			if (body && !headerRead && i + 1 != size && root.equals(key)) {
+				deferredBody = MessageBoxImpl.bufferEntry(unpacker);
+			}
+			else if (root.equals(key)) {
+				return readBoxValue(unpacker, ve, dictionary);
+			}
+			else if (body && MessageConstants.HEADER_KEY.equals(key)) {
+				dictionary = findDictionary(unpacker);
+				headerRead = true;
+			}
+			else {
+				unpacker.skipValue();
+			}
+
+		}
+
+		return deferredBody != null ? readBoxValue(deferredBody, ve, dictionary) : null;
+	}
+
+	private static MessageValue<?> readBoxValue(MessageUnpacker unpacker, MessageValueExpression ve, MessageDictionary dictionary) throws IOException {
+		return seek(unpacker, ve, 1, dictionary) ? readBoxValue(unpacker, dictionary) : null;
+	}
+
+	/**
+	 * Reads the value of the message, compressed payload is read as the string of decompressed bytes
+	 *
+	 * @param unpacker - unpacker at the value
+	 * @param dictionary - dictionary of the message or null
+	 * @return value or null
+	 * @throws IOException
+	 */
+
+	static MessageValue<?> readBoxValue(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
+
+		if (unpacker.hasNext() && unpacker.getNextFormat().getValueType() == ValueType.EXTENSION) {
+			byte[] compressed = MessageCodecRegistry.unpack(unpacker);
+			return compressed != null ? new MessageStringImpl(MessageCodecRegistry.decompress(compressed), false) : null;
+		}
+
+		return MessageFactory.newValue(unpacker, dictionary);
+	}
+
+	/**
+	 * Reads the header and finds the dictionary recorded in it, other headers are skipped
+	 *
+	 * @param unpacker - unpacker at the header
+	 * @return registered dictionary or null
+	 * @throws IOException
+	 */
+
+	static MessageDictionary findDictionary(MessageUnpacker unpacker) throws IOException {
+
+		if (!MessageFactory.isMap(unpacker.getNextFormat())) {
+			unpacker.skipValue();
+			return null;
+		}
+
+		MessageDictionary dictionary = null;
+
+		int size = unpacker.unpackMapHeader();
+
+		for (int i = 0; i != size; ++i) {
+
+			String key = StringInternTable.HEADERS.unpackString(unpacker);
+
+			if (MessageConstants.DICTIONARY_HEADER.equals(key)) {
+				dictionary = MessageDictionaryImpl.find(StringInternTable.HEADERS.unpackString(unpacker));
+			}
+			else {
+				unpacker.skipValue();
+			}
+		}
+
+		return dictionary;
+	}
+
+	private static boolean seekKey(MessageUnpacker unpacker, MessageValueExpressionImpl ve, int index, MessageDictionary dictionary) throws IOException {
+
+		String element = ve.get(index);
+		byte[] bytes = ve.getBytes(index);
+
+		boolean intKey = ve.isIntKey(index);
+		int intValue = ve.getInt(index);
+
+		int size = unpacker.unpackMapHeader();
+
+		for (int i = 0; i != size; ++i) {
+
+			MessageFormat format = unpacker.getNextFormat();
+			boolean match;
+
+			switch (format.getValueType()) {
+
+			case STRING:
+				match = matchString(unpacker, bytes);
+				break;
+
+			case INTEGER:
+				long key = unpacker.unpackLong();
+				match = intKey && key == intValue;
+				break;
+
+			case EXTENSION:
+				if (MessageDictionaryImpl.isKey(format)) {
+					match = element.equals(MessageDictionaryImpl.unpackKey(unpacker, dictionary));
+				}
+				else {
+					unpacker.skipValue();
+					match = false;
+				}
+				break;
+
+			default:
+				unpacker.skipValue();
+				match = false;
+			}
+
+			if (match) {
+				return true;
+			}
+
+			unpacker.skipValue();
+		}
+
+		return false;
+	}
+
+	private static boolean matchString(MessageUnpacker unpacker, byte[] bytes) throws IOException {
+
+		int length = unpacker.unpackRawStringHeader();
+		MessageBuffer payload = unpacker.readPayloadAsReference(length);
+
+		if (length != bytes.length) {
+			return false;
+		}
+
+		for (int i = 0; i != length; ++i) {
+			if (payload.getByte(i) != bytes[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean seekIndex(MessageUnpacker unpacker, MessageValueExpressionImpl ve, int i) throws IOException {
+
+		int size = unpacker.unpackArrayHeader();
+
+		if (!ve.isIntKey(i)) {
+			return false;
+		}
+
+		int index = ve.getInt(i);
+
+		if (index < 0 || index >= size) {
+			return false;
+		}
+
+		unpacker.skipValue(index);
+		return true;
+	}
+
+}
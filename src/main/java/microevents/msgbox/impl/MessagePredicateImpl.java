@@ -0,0 +1,629 @@
+package microevents.msgbox.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microevents.msgbox.MessageBoolean;
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.MessageNumber;
+import microevents.msgbox.MessageNumberType;
+import microevents.msgbox.MessagePredicate;
+import microevents.msgbox.MessageString;
+import microevents.msgbox.MessageTable;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.MessageValueExpression;
+import microevents.msgbox.support.MessageParseException;
+import microevents.msgbox.util.MessageStringifyUtil;
+import microevents.msgbox.util.MessageStringifyUtil.NumberType;
+
+/**
+ * MessagePredicateImpl
+ *
+ * Condition is compiled by recursive descent into the tree of nodes, paths are compiled once
+ * and shared by all comparisons with the same path
+ *
+ * Header paths and body paths are compiled to two projections, each projection extracts
+ * all its values by one pass when the node needs the first of them, && and || stop at the
+ * first operand that decides the outcome, so a header check in front of the condition
+ * rejects the message without walking the body
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessagePredicateImpl implements MessagePredicate {
+
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int GT = 2;
+	private static final int GE = 3;
+	private static final int LT = 4;
+	private static final int LE = 5;
+
+	private static final String[] OPERATORS = { "==", "!=", ">=", "<=", ">", "<" };
+	private static final int[] OPERATOR_CODES = { EQ, NE, GE, LE, GT, LT };
+
+	/**
+	 * Values of the paths read during one test, header and body values are extracted
+	 * by one pass of their projection on the first access
+	 */
+
+	private static final class Context {
+
+		private final MessagePredicateImpl predicate;
+		private final byte[] blob;
+		private final ByteBuffer buffer;
+
+		private MessageValue<?>[] headerValues;
+		private MessageValue<?>[] bodyValues;
+
+		Context(MessagePredicateImpl predicate, byte[] blob, ByteBuffer buffer) {
+			this.predicate = predicate;
+			this.blob = blob;
+			this.buffer = buffer;
+		}
+
+		MessageValue<?> get(int path) {
+
+			int slot = predicate.slots[path];
+
+			if (predicate.headerPaths[path]) {
+
+				if (headerValues == null) {
+					headerValues = extract(predicate.headerProjection);
+				}
+
+				return headerValues[slot];
+			}
+
+			if (bodyValues == null) {
+				bodyValues = extract(predicate.bodyProjection);
+			}
+
+			return bodyValues[slot];
+		}
+
+		private MessageValue<?>[] extract(MessageProjectionImpl projection) {
+			return blob != null ? projection.extractBox(blob) : projection.extractBox(buffer.duplicate());
+		}
+
+	}
+
+	private static abstract class Condition {
+
+		abstract boolean test(Context context);
+
+	}
+
+	private static final class Or extends Condition {
+
+		private final Condition[] operands;
+
+		Or(List<Condition> operands) {
+			this.operands = operands.toArray(new Condition[operands.size()]);
+		}
+
+		@Override
+		boolean test(Context context) {
+			for (Condition operand : operands) {
+				if (operand.test(context)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	private static final class And extends Condition {
+
+		private final Condition[] operands;
+
+		And(List<Condition> operands) {
+			this.operands = operands.toArray(new Condition[operands.size()]);
+		}
+
+		@Override
+		boolean test(Context context) {
+			for (Condition operand : operands) {
+				if (!operand.test(context)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+	private static final class Not extends Condition {
+
+		private final Condition operand;
+
+		Not(Condition operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		boolean test(Context context) {
+			return !operand.test(context);
+		}
+
+	}
+
+	/**
+	 * Path without comparison, true for boolean true or string "true"
+	 */
+
+	private static final class Truth extends Condition {
+
+		private final int path;
+
+		Truth(int path) {
+			this.path = path;
+		}
+
+		@Override
+		boolean test(Context context) {
+
+			MessageValue<?> value = context.get(path);
+
+			if (value instanceof MessageBoolean) {
+				return ((MessageBoolean) value).asBoolean();
+			}
+
+			return value instanceof MessageString && "true".equalsIgnoreCase(value.asString());
+		}
+
+	}
+
+	private static final class Compare extends Condition {
+
+		private final int path;
+		private final int op;
+
+		/**
+		 * String, Long, Double, Boolean or null
+		 */
+
+		private final Object literal;
+
+		Compare(int path, int op, Object literal) {
+			this.path = path;
+			this.op = op;
+			this.literal = literal;
+		}
+
+		@Override
+		boolean test(Context context) {
+
+			MessageValue<?> value = context.get(path);
+
+			if (literal == null) {
+				return (value == null) == (op == EQ);
+			}
+
+			if (value == null) {
+				return op == NE;
+			}
+
+			Integer cmp;
+
+			if (literal instanceof String) {
+				cmp = value instanceof MessageTable ? null : Integer.valueOf(value.asString().compareTo((String) literal));
+			}
+			else if (literal instanceof Boolean) {
+				cmp = compareBoolean(value, (Boolean) literal);
+			}
+			else {
+				cmp = compareNumber(value, (Number) literal);
+			}
+
+			if (cmp == null) {
+				return op == NE;
+			}
+
+			switch (op) {
+			case EQ:
+				return cmp == 0;
+			case NE:
+				return cmp != 0;
+			case GT:
+				return cmp > 0;
+			case GE:
+				return cmp >= 0;
+			case LT:
+				return cmp < 0;
+			default:
+				return cmp <= 0;
+			}
+		}
+
+	}
+
+	/**
+	 * Recursive descent parser, keeps the position and the paths of one compilation
+	 */
+
+	private static final class Parser {
+
+		private final String condition;
+		private final List<MessageValueExpression> paths = new ArrayList<MessageValueExpression>();
+		private final Map<String, Integer> pathIndexes = new HashMap<String, Integer>();
+
+		private int pos;
+
+		Parser(String condition) {
+			this.condition = condition;
+		}
+
+		Condition parse() {
+
+			Condition root = parseOr();
+
+			skipSpaces();
+
+			if (pos != condition.length()) {
+				throw error("unexpected character");
+			}
+
+			return root;
+		}
+
+		private Condition parseOr() {
+
+			List<Condition> operands = new ArrayList<Condition>();
+			operands.add(parseAnd());
+
+			while (match("||")) {
+				operands.add(parseAnd());
+			}
+
+			return operands.size() == 1 ? operands.get(0) : new Or(operands);
+		}
+
+		private Condition parseAnd() {
+
+			List<Condition> operands = new ArrayList<Condition>();
+			operands.add(parseUnary());
+
+			while (match("&&")) {
+				operands.add(parseUnary());
+			}
+
+			return operands.size() == 1 ? operands.get(0) : new And(operands);
+		}
+
+		private Condition parseUnary() {
+
+			if (match("!")) {
+				return new Not(parseUnary());
+			}
+
+			if (match("(")) {
+
+				Condition inner = parseOr();
+
+				if (!match(")")) {
+					throw error("expected )");
+				}
+
+				return inner;
+			}
+
+			return parseComparison();
+		}
+
+		private Condition parseComparison() {
+
+			int path = parsePath();
+
+			int op = -1;
+			for (int i = 0; i != OPERATORS.length; ++i) {
+				if (match(OPERATORS[i])) {
+					op = OPERATOR_CODES[i];
+					break;
+				}
+			}
+
+			if (op == -1) {
+				return new Truth(path);
+			}
+
+			Object literal = parseLiteral();
+
+			if ((literal == null || literal instanceof Boolean) && op != EQ && op != NE) {
+				throw error("only == and != are allowed for " + literal);
+			}
+
+			return new Compare(path, op, literal);
+		}
+
+		private int parsePath() {
+
+			skipSpaces();
+
+			int start = pos;
+
+			while (pos != condition.length()) {
+				char ch = condition.charAt(pos);
+				if (!Character.isLetterOrDigit(ch) && "_-$.[]".indexOf(ch) == -1) {
+					break;
+				}
+				pos++;
+			}
+
+			String text = condition.substring(start, pos);
+			MessageValueExpression ve = MessageValueExpressionImpl.compile(text);
+
+			if (ve.isEmpty() || (!MessageConstants.HEADER_KEY.equals(ve.get(0)) && !MessageConstants.BODY_KEY.equals(ve.get(0)))) {
+				pos = start;
+				throw error("expected path starting from header or body");
+			}
+
+			Integer index = pathIndexes.get(text);
+
+			if (index == null) {
+				index = paths.size();
+				paths.add(ve);
+				pathIndexes.put(text, index);
+			}
+
+			return index;
+		}
+
+		private Object parseLiteral() {
+
+			skipSpaces();
+
+			if (pos == condition.length()) {
+				throw error("expected literal");
+			}
+
+			char ch = condition.charAt(pos);
+
+			if (ch == '"') {
+				return parseString();
+			}
+
+			int start = pos;
+
+			while (pos != condition.length()) {
+				ch = condition.charAt(pos);
+				if (!Character.isLetterOrDigit(ch) && "+-.".indexOf(ch) == -1) {
+					break;
+				}
+				pos++;
+			}
+
+			String text = condition.substring(start, pos);
+
+			if ("true".equals(text) || "false".equals(text)) {
+				return Boolean.valueOf(text);
+			}
+
+			if ("null".equals(text)) {
+				return null;
+			}
+
+			NumberType type = MessageStringifyUtil.detectNumber(text);
+
+			try {
+				if (type == NumberType.LONG) {
+					return Long.valueOf(text);
+				}
+				if (type == NumberType.DOUBLE) {
+					return Double.valueOf(text);
+				}
+			} catch (NumberFormatException e) {
+			}
+
+			pos = start;
+			throw error("expected literal");
+		}
+
+		private String parseString() {
+
+			StringBuilder str = new StringBuilder();
+
+			for (pos++; pos != condition.length(); pos++) {
+
+				char ch = condition.charAt(pos);
+
+				if (ch == '"') {
+					pos++;
+					return str.toString();
+				}
+
+				if (ch == '\\' && pos + 1 != condition.length()) {
+
+					ch = condition.charAt(++pos);
+
+					switch (ch) {
+					case 'n':
+						ch = '\n';
+						break;
+					case 't':
+						ch = '\t';
+						break;
+					case 'r':
+						ch = '\r';
+						break;
+					default:
+						break;
+					}
+				}
+
+				str.append(ch);
+			}
+
+			throw error("unterminated string");
+		}
+
+		private boolean match(String token) {
+
+			skipSpaces();
+
+			if (condition.startsWith(token, pos)) {
+				pos += token.length();
+				return true;
+			}
+
+			return false;
+		}
+
+		private void skipSpaces() {
+			while (pos != condition.length() && Character.isWhitespace(condition.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		private MessageParseException error(String message) {
+			return new MessageParseException(message + " at " + pos + " in condition: " + condition);
+		}
+	}
+
+	private final String condition;
+	private final Condition root;
+
+	/**
+	 * Index of the path in its projection and true for the header path
+	 */
+
+	private final int[] slots;
+	private final boolean[] headerPaths;
+
+	private final MessageProjectionImpl headerProjection;
+	private final MessageProjectionImpl bodyProjection;
+
+	/**
+	 * Compiles the condition
+	 *
+	 * @param condition - not null condition
+	 * @throws MessageParseException for invalid condition
+	 */
+
+	public MessagePredicateImpl(String condition) {
+
+		if (condition == null) {
+			throw new IllegalArgumentException("null condition");
+		}
+
+		Parser parser = new Parser(condition);
+
+		this.condition = condition;
+		this.root = parser.parse();
+
+		List<MessageValueExpression> headerExpressions = new ArrayList<MessageValueExpression>();
+		List<MessageValueExpression> bodyExpressions = new ArrayList<MessageValueExpression>();
+
+		int size = parser.paths.size();
+
+		this.slots = new int[size];
+		this.headerPaths = new boolean[size];
+
+		for (int i = 0; i != size; ++i) {
+
+			MessageValueExpression ve = parser.paths.get(i);
+
+			if (MessageConstants.HEADER_KEY.equals(ve.get(0))) {
+				headerPaths[i] = true;
+				slots[i] = headerExpressions.size();
+				headerExpressions.add(ve);
+			}
+			else {
+				slots[i] = bodyExpressions.size();
+				bodyExpressions.add(ve);
+			}
+		}
+
+		this.headerProjection = headerExpressions.isEmpty() ? null : new MessageProjectionImpl(headerExpressions);
+		this.bodyProjection = bodyExpressions.isEmpty() ? null : new MessageProjectionImpl(bodyExpressions);
+	}
+
+	@Override
+	public boolean test(byte[] blob) {
+
+		if (blob == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return root.test(new Context(this, blob, null));
+	}
+
+	@Override
+	public boolean test(ByteBuffer buffer) {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		return root.test(new Context(this, null, buffer));
+	}
+
+	@Override
+	public String toString() {
+		return condition;
+	}
+
+	private static Integer compareBoolean(MessageValue<?> value, Boolean literal) {
+
+		Boolean bool;
+
+		if (value instanceof MessageBoolean) {
+			bool = ((MessageBoolean) value).asBoolean();
+		}
+		else if (value instanceof MessageString && ("true".equalsIgnoreCase(value.asString()) || "false".equalsIgnoreCase(value.asString()))) {
+			bool = Boolean.valueOf(value.asString().toLowerCase());
+		}
+		else {
+			return null;
+		}
+
+		return bool.equals(literal) ? 0 : 1;
+	}
+
+	private static Integer compareNumber(MessageValue<?> value, Number literal) {
+
+		if (value instanceof MessageNumber) {
+
+			MessageNumber number = (MessageNumber) value;
+
+			if (number.getType() == MessageNumberType.LONG && literal instanceof Long) {
+				return Long.compare(number.asLong(), literal.longValue());
+			}
+
+			return Double.compare(number.asDouble(), literal.doubleValue());
+		}
+
+		if (!(value instanceof MessageString)) {
+			return null;
+		}
+
+		String str = value.asString();
+
+		try {
+
+			switch (MessageStringifyUtil.detectNumber(str)) {
+
+			case LONG:
+				if (literal instanceof Long) {
+					return Long.compare(Long.parseLong(str), literal.longValue());
+				}
+				return Double.compare(Long.parseLong(str), literal.doubleValue());
+
+			case DOUBLE:
+				return Double.compare(Double.parseDouble(str), literal.doubleValue());
+
+			default:
+				return null;
+			}
+
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,586 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
+
+import microevents.msgbox.MessageConstants;
+import microevents.msgbox.MessageDictionary;
+import microevents.msgbox.MessageFactory;
+import microevents.msgbox.MessageProjection;
+import microevents.msgbox.MessageTable;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.MessageValueExpression;
+
+/**
+ * MessageProjectionImpl
+ *
+ * Expressions are merged into the trie of path elements, the walk descends only into entries
+ * found in the trie and skips others by skipValue(), a map or array is left as soon as all
+ * distinct children of the node are found, so repeated keys of a map do not end it early
+ *
+ * Value at the node with expressions is decoded once, deeper expressions under it are
+ * taken from the decoded table. Keys are matched by the rules of MessagePathEvaluator
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageProjectionImpl implements MessageProjection {
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	/**
+	 * Element of the path shared by expressions
+	 */
+
+	static final class Node {
+
+		private final String key;
+		private final boolean intKey;
+		private final int intValue;
+		private final byte[] bytes;
+
+		/**
+		 * Position in children of the parent
+		 */
+
+		private final int index;
+
+		private Node[] children = NO_CHILDREN;
+
+		/**
+		 * Indexes of expressions ending at this node or null
+		 */
+
+		private int[] targets;
+
+		Node(String key, boolean intKey, int intValue, byte[] bytes, int index) {
+			this.key = key;
+			this.intKey = intKey;
+			this.intValue = intValue;
+			this.bytes = bytes;
+			this.index = index;
+		}
+
+		Node child(MessageValueExpressionImpl ve, int i) {
+
+			String element = ve.get(i);
+
+			for (Node child : children) {
+				if (child.key.equals(element)) {
+					return child;
+				}
+			}
+
+			Node child = new Node(element, ve.isIntKey(i), ve.getInt(i), ve.getBytes(i), children.length);
+
+			children = Arrays.copyOf(children, children.length + 1);
+			children[children.length - 1] = child;
+
+			return child;
+		}
+
+		boolean isTarget() {
+			return targets != null;
+		}
+
+		/**
+		 * Marks the child as found
+		 *
+		 * @param found - bits of children found before
+		 * @param child - found child of this node
+		 * @return bits with the child, children after the first 64 are not marked
+		 */
+
+		long mark(long found, Node child) {
+			return child.index < 64 ? found | 1L << child.index : found;
+		}
+
+		/**
+		 * Checks if all children are found, never true for nodes with more than 64 children
+		 *
+		 * @param found - bits of found children
+		 * @return true if the rest of the map could be skipped
+		 */
+
+		boolean allFound(long found) {
+			int size = children.length;
+			return size < 64 ? found == (1L << size) - 1 : size == 64 && found == -1L;
+		}
+
+		void addTarget(int index) {
+
+			if (targets == null) {
+				targets = new int[] { index };
+			}
+			else {
+				targets = Arrays.copyOf(targets, targets.length + 1);
+				targets[targets.length - 1] = index;
+			}
+		}
+
+		Node findString(MessageBuffer payload, int length) {
+
+			for (Node child : children) {
+				if (StringInternTable.equals(child.bytes, payload, length)) {
+					return child;
+				}
+			}
+
+			return null;
+		}
+
+		Node findInt(long value) {
+
+			for (Node child : children) {
+				if (child.intKey && child.intValue == value) {
+					return child;
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * Reads the key of map entry and finds the child by it
+		 *
+		 * @param unpacker - unpacker at the key
+		 * @param dictionary - dictionary of table keys or null
+		 * @return child or null
+		 * @throws IOException
+		 */
+
+		Node unpackKey(MessageUnpacker unpacker, MessageDictionary dictionary) throws IOException {
+
+			MessageFormat format = unpacker.getNextFormat();
+
+			switch (format.getValueType()) {
+
+			case STRING:
+				int length = unpacker.unpackRawStringHeader();
+				return findString(unpacker.readPayloadAsReference(length), length);
+
+			case INTEGER:
+				return findInt(unpacker.unpackLong());
+
+			case EXTENSION:
+				if (MessageDictionaryImpl.isKey(format)) {
+					return findKey(MessageDictionaryImpl.unpackKey(unpacker, dictionary));
+				}
+				unpacker.skipValue();
+				return null;
+
+			default:
+				unpacker.skipValue();
+				return null;
+			}
+		}
+
+		Node findKey(String value) {
+
+			if (value != null) {
+				for (Node child : children) {
+					if (child.key.equals(value)) {
+						return child;
+					}
+				}
+			}
+
+			return null;
+		}
+
+	}
+
+	private final List<MessageValueExpression> expressions;
+
+	private final Node root = new Node("", false, 0, new byte[0], 0);
+
+	/**
+	 * Creates projection
+	 *
+	 * @param expressions - not null expressions, duplicates and nested paths are allowed
+	 */
+
+	public MessageProjectionImpl(List<MessageValueExpression> expressions) {
+
+		if (expressions == null) {
+			throw new IllegalArgumentException("null expressions");
+		}
+
+		this.expressions = new ArrayList<MessageValueExpression>(expressions.size());
+
+		for (int index = 0; index != expressions.size(); ++index) {
+
+			MessageValueExpression expression = expressions.get(index);
+
+			if (expression == null) {
+				throw new IllegalArgumentException("null expression at " + index);
+			}
+
+			MessageValueExpressionImpl ve = MessageValueExpressionImpl.compile(expression);
+			this.expressions.add(ve);
+
+			Node node = root;
+
+			for (int i = 0; i != ve.size(); ++i) {
+				node = node.child(ve, i);
+			}
+
+			node.addTarget(index);
+		}
+
+	}
+
+	/**
+	 * Gets implementation of the projection
+	 *
+	 * @param projection - projection created by MessageFactory
+	 * @return not null implementation
+	 */
+
+	public static MessageProjectionImpl of(MessageProjection projection) {
+
+		if (projection == null) {
+			throw new IllegalArgumentException("null projection");
+		}
+
+		if (!(projection instanceof MessageProjectionImpl)) {
+			throw new IllegalArgumentException("unsupported projection: " + projection.getClass().getName());
+		}
+
+		return (MessageProjectionImpl) projection;
+	}
+
+	@Override
+	public int size() {
+		return expressions.size();
+	}
+
+	@Override
+	public MessageValueExpression get(int i) {
+		return expressions.get(i);
+	}
+
+	@Override
+	public MessageValue<?>[] extract(MessageTable table) {
+
+		if (table == null) {
+			throw new IllegalArgumentException("null table");
+		}
+
+		MessageValue<?>[] results = new MessageValue<?>[expressions.size()];
+
+		setTargets(root, table, results);
+		extract(table, root, results);
+		return results;
+	}
+
+	@Override
+	public MessageValue<?>[] extract(byte[] buffer) {
+		return MessageDeserializerImpl.local().project(buffer, this);
+	}
+
+	@Override
+	public MessageValue<?>[] extract(ByteBuffer buffer) {
+		return MessageDeserializerImpl.local().project(buffer, this);
+	}
+
+	@Override
+	public MessageValue<?>[] extractBox(byte[] blob) {
+		return MessageDeserializerImpl.local().projectBox(blob, this);
+	}
+
+	@Override
+	public MessageValue<?>[] extractBox(ByteBuffer buffer) {
+		return MessageDeserializerImpl.local().projectBox(buffer, this);
+	}
+
+	/**
+	 * Extracts values from serialized value
+	 *
+	 * @param unpacker - unpacker at the value
+	 * @return not null array of values by index of the expression
+	 * @throws IOException
+	 */
+
+	MessageValue<?>[] extract(MessageUnpacker unpacker) throws IOException {
+
+		MessageValue<?>[] results = new MessageValue<?>[expressions.size()];
+
+		if (unpacker.hasNext()) {
+			walk(unpacker, root, results, null, false);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Extracts values from serialized message, the dictionary of the body is read from the header,
+	 * the header is decoded whole only if both the header and the body are projected,
+	 * the body written before the header is buffered until the header is read,
+	 * entries after the header are not read if the body is not projected
+	 *
+	 * @param unpacker - unpacker at the message
+	 * @return not null array of values by index of the expression
+	 * @throws IOException
+	 */
+
+	MessageValue<?>[] extractBox(MessageUnpacker unpacker) throws IOException {
+
+		MessageValue<?>[] results = new MessageValue<?>[expressions.size()];
+
+		if (!unpacker.hasNext() || !MessageFactory.isMap(unpacker.getNextFormat())) {
+			return results;
+		}
+
+		Node headerNode = root.findKey(MessageConstants.HEADER_KEY);
+		Node bodyNode = root.findKey(MessageConstants.BODY_KEY);
+
+		MessageDictionary dictionary = null;
+		boolean headerRead = false;
+		MessageUnpacker deferredBody = null;
+
+		int size = unpacker.unpackMapHeader();
+
+		for (int i = 0; i != size; ++i) {
+
+			String key = StringInternTable.KEYS.unpackString(unpacker);
+
+			if (MessageConstants.HEADER_KEY.equals(key)) {
+				headerRead = true;
+			}
+
+			if (MessageConstants.HEADER_KEY.equals(key) && bodyNode != null && headerNode == null) {
+				dictionary = MessagePathEvaluator.findDictionary(unpacker);
+			}
+			else if (MessageConstants.HEADER_KEY.equals(key) && bodyNode != null) {
+
+				MessageValue<?> header = MessageFactory.newValue(unpacker);
+
+				if (header instanceof MessageTable) {
+					dictionary = MessageDictionaryImpl.find(((MessageTable) header).getStringUtf8(MessageConstants.DICTIONARY_HEADER));
+					setTargets(headerNode, header, results);
+					extract((MessageTable) header, headerNode, results);
+				}
+			}
+			else if (MessageConstants.HEADER_KEY.equals(key) && headerNode != null) {
+				walk(unpacker, headerNode, results, null, true);
+				if (bodyNode == null) {
+					break;
+				}
+			}
+			else if (MessageConstants.BODY_KEY.equals(key) && bodyNode != null && !headerRead && i + 1 != size) {
+				deferredBody = MessageBoxImpl.bufferEntry(unpacker);
+			}
+			else if (MessageConstants.BODY_KEY.equals(key) && bodyNode != null) {
+				walk(unpacker, bodyNode, results, dictionary, true);
+			}
+			else {
+				unpacker.skipValue();
+			}
+		}
+
+		if (deferredBody != null) {
+			walk(deferredBody, bodyNode, results, dictionary, true);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Gets trie node of body payloads
+	 *
+	 * @return node or null if no expression starts from body
+	 */
+
+	Node getBodyNode() {
+		return root.findKey(MessageConstants.BODY_KEY);
+	}
+
+	/**
+	 * Builds the value with only projected paths, other entries are skipped without decoding
+	 *
+	 * @param unpacker - unpacker at the value
+	 * @return value or null
+	 * @throws IOException
+	 */
+
+	MessageValue<?> materialize(MessageUnpacker unpacker) throws IOException {
+
+		if (!unpacker.hasNext()) {
+			return null;
+		}
+
+		MessageValue<?> value = materialize(unpacker, root, null);
+		return value != null || root.children.length == 0 ? value : new MessageTableImpl();
+	}
+
+	/**
+	 * Builds the value with only paths under the node, value at the node with expressions is decoded whole
+	 *
+	 * @param unpacker - unpacker at the value
+	 * @param node - not null node
+	 * @param dictionary - dictionary of table keys or null
+	 * @return table with found paths, decoded value or null if nothing is found
+	 * @throws IOException
+	 */
+
+	static MessageValue<?> materialize(MessageUnpacker unpacker, Node node, MessageDictionary dictionary) throws IOException {
+
+		if (node.targets != null) {
+			return MessageFactory.newValue(unpacker, dictionary);
+		}
+
+		MessageFormat format = unpacker.getNextFormat();
+		boolean map = MessageFactory.isMap(format);
+
+		if (!map && !MessageFactory.isArray(format)) {
+			unpacker.skipValue();
+			return null;
+		}
+
+		MessageTable table = new MessageTableImpl();
+
+		int size = map ? unpacker.unpackMapHeader() : unpacker.unpackArrayHeader();
+		long found = 0;
+
+		for (int i = 0; i != size; ++i) {
+
+			if (node.allFound(found)) {
+				unpacker.skipValue(map ? 2 * (size - i) : size - i);
+				break;
+			}
+
+			Node child = map ? node.unpackKey(unpacker, dictionary) : node.findInt(i);
+
+			if (child == null) {
+				unpacker.skipValue();
+				continue;
+			}
+
+			MessageValue<?> value = materialize(unpacker, child, dictionary);
+
+			if (value != null) {
+				table.put(child.key, value);
+			}
+
+			found = node.mark(found, child);
+		}
+
+		return table.size() != 0 ? table : null;
+	}
+
+	private static void setTargets(Node node, MessageValue<?> value, MessageValue<?>[] results) {
+		if (node.targets != null) {
+			for (int target : node.targets) {
+				results[target] = value;
+			}
+		}
+	}
+
+	private static void extract(MessageTable table, Node node, MessageValue<?>[] results) {
+
+		for (Node child : node.children) {
+
+			MessageValue<?> value = MessageTableImpl.get(table, child.key, child.intKey, child.intValue);
+
+			if (value == null) {
+				continue;
+			}
+
+			setTargets(child, value, results);
+
+			if (child.children.length != 0 && value instanceof MessageTable) {
+				extract((MessageTable) value, child, results);
+			}
+		}
+
+	}
+
+	private static void walk(MessageUnpacker unpacker, Node node, MessageValue<?>[] results, MessageDictionary dictionary, boolean box) throws IOException {
+
+		if (node.targets != null) {
+
+			MessageValue<?> value = box ? MessagePathEvaluator.readBoxValue(unpacker, dictionary) : MessageFactory.newValue(unpacker, dictionary);
+
+			setTargets(node, value, results);
+
+			if (node.children.length != 0 && value instanceof MessageTable) {
+				extract((MessageTable) value, node, results);
+			}
+
+			return;
+		}
+
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (MessageFactory.isMap(format)) {
+			walkMap(unpacker, node, results, dictionary, box);
+		}
+		else if (MessageFactory.isArray(format)) {
+			walkArray(unpacker, node, results, dictionary, box);
+		}
+		else {
+			unpacker.skipValue();
+		}
+
+	}
+
+	private static void walkMap(MessageUnpacker unpacker, Node node, MessageValue<?>[] results, MessageDictionary dictionary, boolean box) throws IOException {
+
+		int size = unpacker.unpackMapHeader();
+		long found = 0;
+
+		for (int i = 0; i != size; ++i) {
+
+			if (node.allFound(found)) {
+				unpacker.skipValue(2 * (size - i));
+				return;
+			}
+
+			Node child = node.unpackKey(unpacker, dictionary);
+
+			if (child != null) {
+				walk(unpacker, child, results, dictionary, box);
+				found = node.mark(found, child);
+			}
+			else {
+				unpacker.skipValue();
+			}
+		}
+
+	}
+
+	private static void walkArray(MessageUnpacker unpacker, Node node, MessageValue<?>[] results, MessageDictionary dictionary, boolean box) throws IOException {
+
+		int size = unpacker.unpackArrayHeader();
+		int found = 0;
+
+		for (int i = 0; i != size; ++i) {
+
+			if (found == node.children.length) {
+				unpacker.skipValue(size - i);
+				return;
+			}
+
+			Node child = node.findInt(i);
+
+			if (child != null) {
+				walk(unpacker, child, results, dictionary, box);
+				found++;
+			}
+			else {
+				unpacker.skipValue();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,303 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.ChannelBufferOutput;
+import org.msgpack.core.buffer.MessageBufferOutput;
+import org.msgpack.core.buffer.OutputStreamBufferOutput;
+
+import microevents.msgbox.MessageBox;
+import microevents.msgbox.MessageSerializer;
+import microevents.msgbox.MessageValue;
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.support.MessageException;
+
+/**
+ * MessageSerializerImpl
+ *
+ * Keeps one packer and resets it to the array, buffer, stream or channel output on every call
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageSerializerImpl implements MessageSerializer {
+
+	private static final ThreadLocal<MessageSerializerImpl> LOCAL = new ThreadLocal<MessageSerializerImpl>() {
+
+		@Override
+		protected MessageSerializerImpl initialValue() {
+			return new MessageSerializerImpl();
+		}
+
+	};
+
+	/**
+	 * Stream and channel outputs are reset to the null sinks after the call,
+	 * so the serializer of the thread never keeps the caller's stream or channel
+	 */
+
+	private static final OutputStream NULL_STREAM = new OutputStream() {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+
+	};
+
+	private static final WritableByteChannel NULL_CHANNEL = Channels.newChannel(NULL_STREAM);
+
+	private final ReusableBufferOutput arrayOutput = new ReusableBufferOutput();
+	private final ByteBufferOutput bufferOutput = new ByteBufferOutput();
+	private OutputStreamBufferOutput streamOutput;
+	private ChannelBufferOutput channelOutput;
+
+	private MessagePacker packer = MessagePack.newDefaultPacker(arrayOutput);
+
+	private boolean busy;
+
+	/**
+	 * Gets serializer of the current thread
+	 *
+	 * Gives a new instance if the thread serializer is in use, for example by nested call
+	 *
+	 * @return not null serializer
+	 */
+
+	public static MessageSerializerImpl local() {
+		MessageSerializerImpl serializer = LOCAL.get();
+		return serializer.busy ? new MessageSerializerImpl() : serializer;
+	}
+
+	@Override
+	public byte[] toByteArray(MessageBox box) {
+
+		if (box == null) {
+			throw new IllegalArgumentException("null box");
+		}
+
+		try {
+			return toByteArray((Object) box);
+		} catch (IOException e) {
+			throw new MessageBoxException("IOException happened during serialization to byte array", e);
+		}
+	}
+
+	@Override
+	public byte[] toByteArray(MessageValue<?> value) {
+
+		if (value == null) {
+			throw new IllegalArgumentException("null value");
+		}
+
+		try {
+			return toByteArray((Object) value);
+		} catch (IOException e) {
+			throw new MessageException("IOException happened during serialization to byte array", e);
+		}
+	}
+
+	private byte[] toByteArray(Object message) throws IOException {
+
+		arrayOutput.clear();
+
+		try {
+			pack(message, arrayOutput);
+			return arrayOutput.toByteArray();
+		}
+		finally {
+			arrayOutput.clear();
+		}
+	}
+
+	@Override
+	public int writeTo(MessageBox box, ByteBuffer buffer) {
+
+		if (box == null) {
+			throw new IllegalArgumentException("null box");
+		}
+
+		try {
+			return writeTo((Object) box, buffer);
+		} catch (IOException e) {
+			throw new MessageBoxException("IOException happened during serialization to byte buffer", e);
+		}
+	}
+
+	@Override
+	public int writeTo(MessageValue<?> value, ByteBuffer buffer) {
+
+		if (value == null) {
+			throw new IllegalArgumentException("null value");
+		}
+
+		try {
+			return writeTo((Object) value, buffer);
+		} catch (IOException e) {
+			throw new MessageException("IOException happened during serialization to byte buffer", e);
+		}
+	}
+
+	private int writeTo(Object message, ByteBuffer buffer) throws IOException {
+
+		if (buffer == null) {
+			throw new IllegalArgumentException("null buffer");
+		}
+
+		if (buffer.isReadOnly()) {
+			throw new IllegalArgumentException("read-only buffer");
+		}
+
+		int position = buffer.position();
+
+		bufferOutput.reset(buffer);
+
+		try {
+			pack(message, bufferOutput);
+		}
+		catch(BufferOverflowException e) {
+			buffer.position(position);
+			throw e;
+		}
+		finally {
+			bufferOutput.reset(null);
+		}
+
+		return buffer.position() - position;
+	}
+
+	@Override
+	public void writeTo(MessageBox box, OutputStream out) throws IOException {
+
+		if (box == null) {
+			throw new IllegalArgumentException("null box");
+		}
+
+		writeTo((Object) box, out);
+	}
+
+	@Override
+	public void writeTo(MessageValue<?> value, OutputStream out) throws IOException {
+
+		if (value == null) {
+			throw new IllegalArgumentException("null value");
+		}
+
+		writeTo((Object) value, out);
+	}
+
+	private void writeTo(Object message, OutputStream out) throws IOException {
+
+		if (out == null) {
+			throw new IllegalArgumentException("null out");
+		}
+
+		if (streamOutput == null) {
+			streamOutput = new OutputStreamBufferOutput(out);
+		}
+		else {
+			streamOutput.reset(out);
+		}
+
+		try {
+			pack(message, streamOutput);
+		}
+		finally {
+			streamOutput.reset(NULL_STREAM);
+		}
+	}
+
+	@Override
+	public void writeTo(MessageBox box, WritableByteChannel channel) throws IOException {
+
+		if (box == null) {
+			throw new IllegalArgumentException("null box");
+		}
+
+		writeTo((Object) box, channel);
+	}
+
+	@Override
+	public void writeTo(MessageValue<?> value, WritableByteChannel channel) throws IOException {
+
+		if (value == null) {
+			throw new IllegalArgumentException("null value");
+		}
+
+		writeTo((Object) value, channel);
+	}
+
+	private void writeTo(Object message, WritableByteChannel channel) throws IOException {
+
+		if (channel == null) {
+			throw new IllegalArgumentException("null channel");
+		}
+
+		if (channelOutput == null) {
+			channelOutput = new ChannelBufferOutput(channel);
+		}
+		else {
+			channelOutput.reset(channel);
+		}
+
+		try {
+			pack(message, channelOutput);
+		}
+		finally {
+			channelOutput.reset(NULL_CHANNEL);
+		}
+	}
+
+	/**
+	 * Packs message or value to the output
+	 *
+	 * Packer is replaced after failure, so bytes left in its buffer never reach the next output
+	 *
+	 * @param message - MessageBox or MessageValue
+	 * @param out - output
+	 * @throws IOException
+	 */
+
+	private void pack(Object message, MessageBufferOutput out) throws IOException {
+
+		busy = true;
+		boolean done = false;
+
+		try {
+
+			packer.reset(out);
+
+			if (message instanceof MessageBox) {
+				((MessageBox) message).writeTo(packer);
+			}
+			else {
+				((MessageValue<?>) message).writeTo(packer);
+			}
+
+			packer.flush();
+			packer.reset(arrayOutput);
+			done = true;
+		}
+		finally {
+
+			if (!done) {
+				packer = MessagePack.newDefaultPacker(arrayOutput);
+			}
+
+			busy = false;
+		}
+
+	}
+
+}
@@ -12,6 +12,7 @@ import org.msgpack.value.impl.ImmutableStringValueImpl;
 import microevents.msgbox.MessageString;
 import microevents.msgbox.MessageStringType;
 import microevents.msgbox.support.MessageException;
+import microevents.msgbox.util.MessageJsonUtil;
 
 /**
  * MessageStringImpl
@@ -125,6 +126,23 @@ public final class MessageStringImpl extends AbstractMessageValueImpl<MessageStr
 		}	
 	}
   
+  @Override
+	public void writeJsonTo(Appendable out) throws IOException {
+		switch(type) {
+		
+		case UTF8:
+			MessageJsonUtil.writeString(out, stringValue);
+			break;
+			
+		case BYTES:
+			MessageJsonUtil.writeUtf8(out, bytesValue, 0, bytesValue.length);
+			break;
+			
+		default:
+		  throw new IOException("unexpected type: " + type);		
+		}	
+	}
+  
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -1,22 +1,26 @@
 package microevents.msgbox.impl;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.msgpack.core.MessagePacker;
 import org.msgpack.value.Value;
+import org.msgpack.value.impl.ImmutableArrayValueImpl;
 import org.msgpack.value.impl.ImmutableLongValueImpl;
 import org.msgpack.value.impl.ImmutableMapValueImpl;
 import org.msgpack.value.impl.ImmutableStringValueImpl;
 
 import microevents.msgbox.MessageBoolean;
+import microevents.msgbox.MessageDictionary;
 import microevents.msgbox.MessageFactory;
 import microevents.msgbox.MessageNumber;
 import microevents.msgbox.MessageString;
@@ -26,6 +30,7 @@ import microevents.msgbox.MessageValue;
 import microevents.msgbox.MessageValueExpression;
 import microevents.msgbox.support.MessageException;
 import microevents.msgbox.support.MessageNumberFormatException;
+import microevents.msgbox.util.MessageJsonUtil;
 import microevents.msgbox.util.MessageStringifyUtil;
 import microevents.msgbox.util.MessageStringifyUtil.NumberType;
 import microevents.msgbox.util.MessageValueUtil;
@@ -40,10 +45,16 @@ import microevents.msgbox.util.MessageValueUtil;
 public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> implements MessageTable {
 
 	/**
-	 * Keys could be stringify integers or any strings
+	 * Values by int keys while all keys are integers, null after the first string key
+	 */
+	
+	private IntKeyTable intTable = new IntKeyTable();
+	
+	/**
+	 * Keys could be stringify integers or any strings, null while int table is used
 	 */
 
-	private final Map<String, MessageValue<?>> table = new HashMap<String, MessageValue<?>>();
+	private Map<String, MessageValue<?>> table;
 
 	private MessageTableType type = MessageTableType.INT_KEY;
 
@@ -81,6 +92,11 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 	public MessageTableType getType() {
 		return type;
 	}
+	
+	@Override
+	public boolean isArray() {
+		return type == MessageTableType.INT_KEY && intTable != null && intTable.isSequence();
+	}
 
 	@Override
 	public MessageValue<?> get(String key) {
@@ -89,6 +105,10 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 			throw new IllegalArgumentException("empty key");
 		}
 		
+		if (intTable != null) {
+			return isIntKey(key) ? intTable.get(Integer.parseInt(key)) : null;
+		}
+		
 		return table.get(key);
 	}
 	
@@ -144,6 +164,10 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 			throw new IllegalArgumentException("empty key");
 		}
 		
+		if (intTable != null) {
+			return intTable.get(key);
+		}
+		
 		return table.get(key.toString());
 	}
 	
@@ -203,12 +227,13 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 			return this;
 		}
 		
-		int lastIndex = ve.size() - 1;
+		MessageValueExpressionImpl compiled = MessageValueExpressionImpl.compile(ve);
+		
+		int lastIndex = compiled.size() - 1;
 		MessageTable currentTable = this;
 		for (int i = 0; i != lastIndex; ++i) {
 			
-			String key = ve.get(i);
-			MessageValue<?> existingValue = currentTable.get(key);
+			MessageValue<?> existingValue = get(currentTable, compiled, i);
 			
 			if (existingValue == null || !(existingValue instanceof MessageTable)) {
 				return null;
@@ -219,11 +244,43 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 			
 		}
 		
-		String key = ve.get(lastIndex);
-		return currentTable.get(key);
+		return get(currentTable, compiled, lastIndex);
 		
 	}
 	
+	/**
+	 * Gets value by i-th element of compiled expression, int keys are not parsed again
+	 */
+	
+	private static MessageValue<?> get(MessageTable table, MessageValueExpressionImpl ve, int i) {
+		return get(table, ve.get(i), ve.isIntKey(i), ve.getInt(i));
+	}
+	
+	/**
+	 * Gets value by the key classified in advance
+	 * 
+	 * @param table - not null table
+	 * @param key - not null key
+	 * @param intKey - true if the key is the canonical string of int number
+	 * @param intValue - int value of the key
+	 * @return value or null
+	 */
+	
+	static MessageValue<?> get(MessageTable table, String key, boolean intKey, int intValue) {
+		
+		if (!(table instanceof MessageTableImpl)) {
+			return table.get(key);
+		}
+		
+		MessageTableImpl impl = (MessageTableImpl) table;
+		
+		if (impl.intTable != null) {
+			return intKey ? impl.intTable.get(intValue) : null;
+		}
+		
+		return impl.table.get(key);
+	}
+	
 	@Override
 	public MessageTable getTable(MessageValueExpression ve) {
 		return MessageValueUtil.toTable(get(ve));
@@ -281,6 +338,15 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 
 		}
 
+		if (intTable != null) {
+			
+			if (isIntKey(key)) {
+				return put(Integer.parseInt(key), value);
+			}
+			
+			toStringTable();
+		}
+		
 		if (value != null) {
 			return table.put(key, value);
 		}
@@ -289,6 +355,56 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 		}
 	}
 	
+	/**
+	 * Checks that the key is the canonical string of int number, 
+	 * so Integer.toString(Integer.parseInt(key)) gives the same key
+	 * 
+	 * @param key - not null key
+	 * @return true if key could be stored in int table
+	 */
+	
+	static boolean isIntKey(String key) {
+		
+		int length = key.length();
+		if (length == 0 || length > 11) {
+			return false;
+		}
+		
+		int i = key.charAt(0) == '-' ? 1 : 0;
+		if (i == length || (key.charAt(i) == '0' && (length > i + 1 || i == 1))) {
+			return false;
+		}
+		
+		long value = 0;
+		for (; i != length; ++i) {
+			char ch = key.charAt(i);
+			if (ch < '0' || ch > '9') {
+				return false;
+			}
+			value = value * 10 + (ch - '0');
+		}
+		
+		return key.charAt(0) == '-' ? -value >= Integer.MIN_VALUE : value <= Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Moves values from the int table to the string table
+	 */
+	
+	private void toStringTable() {
+		
+		table = new HashMap<String, MessageValue<?>>(Math.max(16, intTable.size() * 2));
+		
+		for (int slot = 0; slot != intTable.capacity(); ++slot) {
+			MessageValue<?> value = intTable.valueAt(slot);
+			if (value != null) {
+				table.put(Integer.toString(intTable.keyAt(slot)), value);
+			}
+		}
+		
+		intTable = null;
+	}
+	
 	@Override
 	public MessageValue<?> put(String key, String stringfyValue) {
 		return put(key, MessageFactory.newStringifyValue(stringfyValue));
@@ -322,6 +438,10 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 	@Override
 	public MessageValue<?> put(Integer key, MessageValue<?> value) {
 		
+		if (intTable != null) {
+			return value != null ? intTable.put(key, value) : intTable.remove(key);
+		}
+		
 		if (value != null) {
 			return table.put(key.toString(), value);
 		}
@@ -372,12 +492,14 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 			return value;
 		}
 		
-		int lastIndex = ve.size() - 1;
+		MessageValueExpressionImpl compiled = MessageValueExpressionImpl.compile(ve);
+		
+		int lastIndex = compiled.size() - 1;
 		MessageTable currentTable = this;
 		for (int i = 0; i != lastIndex; ++i) {
 			
-			String key = ve.get(i);
-			MessageValue<?> existingValue = currentTable.get(key);
+			String key = compiled.get(i);
+			MessageValue<?> existingValue = get(currentTable, compiled, i);
 			
 			if (existingValue == null || !(existingValue instanceof MessageTable)) {
 			  MessageTable newTable = new MessageTableImpl();
@@ -390,7 +512,7 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 			
 		}
 		
-		String key = ve.get(lastIndex);
+		String key = compiled.get(lastIndex);
 		return currentTable.put(key, value);
 	}
 		
@@ -441,12 +563,87 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 	
 	@Override
 	public Set<String> keySet() {
+		
+		if (intTable != null) {
+			return new IntKeySet();
+		}
+		
 		return table.keySet();
 	}
 	
+	/**
+	 * Read-only view of the int table keys as strings
+	 * 
+	 * @author Alex Shvid
+	 *
+	 */
+	
+	private final class IntKeySet extends AbstractSet<String> {
+
+		@Override
+		public Iterator<String> iterator() {
+			
+			final IntKeyTable keys = intTable;
+			
+			return new Iterator<String>() {
+				
+				private int slot = nextSlot(0);
+				
+				private int nextSlot(int from) {
+					while (from != keys.capacity() && keys.valueAt(from) == null) {
+						from++;
+					}
+					return from;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return slot != keys.capacity();
+				}
+
+				@Override
+				public String next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					String key = Integer.toString(keys.keyAt(slot));
+					slot = nextSlot(slot + 1);
+					return key;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+				
+			};
+		}
+
+		@Override
+		public int size() {
+			return intTable != null ? intTable.size() : table.size();
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof String && get((String) o) != null;
+		}
+		
+	}
+	
 	@Override
 	public List<Integer> intKeys() {
 		
+		if (intTable != null) {
+			
+			int[] keys = intTable.sortedKeys();
+			List<Integer> list = new ArrayList<Integer>(keys.length);
+			for (int key : keys) {
+				list.add(key);
+			}
+			return list;
+		}
+		
 		List<Integer> list = new ArrayList<Integer>(table.size());
 		
 		for (String key : table.keySet()) {
@@ -467,6 +664,10 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 	@Override
 	public Integer minIntKey() {
 		
+		if (intTable != null) {
+			return intTable.minKey();
+		}
+		
 		Integer minKey = null;
 		
 		for (String key : table.keySet()) {
@@ -488,6 +689,10 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 	@Override
 	public Integer maxIntKey() {
 		
+		if (intTable != null) {
+			return intTable.maxKey();
+		}
+		
 		Integer maxKey = null;
 		
 		for (String key : table.keySet()) {
@@ -508,12 +713,13 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 
 	@Override
 	public int size() {
-		return table.size();
+		return intTable != null ? intTable.size() : table.size();
 	}
 
 	@Override
 	public void clear() {
-		table.clear();
+		intTable = new IntKeyTable();
+		table = null;
 	}
 
 	@Override
@@ -521,7 +727,7 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 		StringBuilder str = new StringBuilder();
 		str.append("{");
 		boolean first = true;
-		for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
+		for (Map.Entry<String, MessageValue<?>> entry : stringTable().entrySet()) {
 			if (!first) {
 				str.append(", ");
 			}
@@ -548,14 +754,58 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 		throw new MessageException("unexpected type: " + type);
 	}
 
+	/**
+	 * Gets values by string keys, builds a temporary map for the int table
+	 * 
+	 * @return not null map
+	 */
+	
+	private Map<String, MessageValue<?>> stringTable() {
+		
+		if (intTable == null) {
+			return table;
+		}
+		
+		Map<String, MessageValue<?>> map = new HashMap<String, MessageValue<?>>(Math.max(16, intTable.size() * 2));
+		
+		for (int slot = 0; slot != intTable.capacity(); ++slot) {
+			MessageValue<?> value = intTable.valueAt(slot);
+			if (value != null) {
+				map.put(Integer.toString(intTable.keyAt(slot)), value);
+			}
+		}
+		
+		return map;
+	}
+	
 	private Value toIntValue() {
 		
+		if (isArray()) {
+			return toArrayValue();
+		}
+		
     int size = size();
     
     int capacity = size << 1;
     Value[] array = new Value[capacity];
     
     int index = 0;
+    
+    if (intTable != null) {
+    	
+    	for (int slot = 0; slot != intTable.capacity(); ++slot) {
+    		
+    		MessageValue<?> val = intTable.valueAt(slot);
+    		
+    		if (val != null) {
+    			array[index++] = new ImmutableLongValueImpl(intTable.keyAt(slot));
+    			array[index++] = val.toValue();
+    		}
+    	}
+    	
+    	return new ImmutableMapValueImpl(array);
+    }
+    
     for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
       
     	int integerKey;
@@ -577,6 +827,19 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 		
 	}
 
+	private Value toArrayValue() {
+		
+		int size = intTable.size();
+		
+		Value[] array = new Value[size];
+		
+		for (int i = 0; i != size; ++i) {
+			array[i] = intTable.valueAt(i).toValue();
+		}
+		
+		return new ImmutableArrayValueImpl(array);
+	}
+	
 	private Value toStringValue() {
 		
     int size = size();
@@ -585,7 +848,7 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
     Value[] array = new Value[capacity];
     
     int index = 0;
-    for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
+    for (Map.Entry<String, MessageValue<?>> entry : stringTable().entrySet()) {
       
     	MessageValue<?> val = entry.getValue();
       
@@ -600,14 +863,27 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 	
   @Override
 	public void writeTo(MessagePacker packer) throws IOException {
+  	writeTo(packer, null);
+	}
+  
+  /**
+   * Writes the table and nested tables, string keys found in the dictionary 
+   * are written by their indexes
+   * 
+   * @param packer - not null packer
+   * @param dictionary - dictionary or null
+   * @throws IOException
+   */
+  
+	public void writeTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
 		switch(type) {
 		
 		case INT_KEY:
-			writeIntMapTo(packer);
+			writeIntMapTo(packer, dictionary);
 			break;
 			
 		case STRING_KEY:
-			writeStringMapTo(packer);
+			writeStringMapTo(packer, dictionary);
 			break;
 			
 		default:
@@ -615,13 +891,54 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
 		}
 		
 	}	
+	
+	private static void writeValueTo(MessageValue<?> value, MessagePacker packer, MessageDictionary dictionary) throws IOException {
+		if (dictionary != null && value instanceof MessageTableImpl) {
+			((MessageTableImpl) value).writeTo(packer, dictionary);
+		}
+		else {
+			value.writeTo(packer);
+		}
+	}
+  
+  private void writeArrayTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
+  	
+  	int size = intTable.size();
+  	
+  	packer.packArrayHeader(size);
+  	
+  	for (int i = 0; i != size; ++i) {
+  		writeValueTo(intTable.valueAt(i), packer, dictionary);
+  	}
+  	
+  }
   
-  private void writeIntMapTo(MessagePacker packer) throws IOException {
+  private void writeIntMapTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
+  	
+  	if (isArray()) {
+  		writeArrayTo(packer, dictionary);
+  		return;
+  	}
   	
     int size = size();
     
     packer.packMapHeader(size);
     
+    if (intTable != null) {
+    	
+    	for (int slot = 0; slot != intTable.capacity(); ++slot) {
+    		
+    		MessageValue<?> value = intTable.valueAt(slot);
+    		
+    		if (value != null) {
+    			packer.packInt(intTable.keyAt(slot));
+    			writeValueTo(value, packer, dictionary);
+    		}
+    	}
+    	
+    	return;
+    }
+    
     for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
     	
     	String key = entry.getKey();
@@ -636,37 +953,101 @@ public class MessageTableImpl extends AbstractMessageValueImpl<MessageTable> imp
     	MessageValue<?> value = entry.getValue();
     	
 			packer.packInt(intKey);
-    	value.writeTo(packer);
+    	writeValueTo(value, packer, dictionary);
     }
     
   }
   
-  private void writeStringMapTo(MessagePacker packer) throws IOException {
+  private void writeStringMapTo(MessagePacker packer, MessageDictionary dictionary) throws IOException {
   	
     int size = size();
     
     packer.packMapHeader(size);
     
-    for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
-    	
-    	String key = entry.getKey();
-    	MessageValue<?> value = entry.getValue();
+    for (Map.Entry<String, MessageValue<?>> entry : stringTable().entrySet()) {
     	
-			byte[] data = key.getBytes(StandardCharsets.UTF_8);
-			packer.packRawStringHeader(data.length);
-			packer.writePayload(data);
-			
-    	value.writeTo(packer);
+    	MessageDictionaryImpl.packKey(packer, dictionary, entry.getKey());
+    	writeValueTo(entry.getValue(), packer, dictionary);
     }
     
   }  
 
+  @Override
+	public void writeJsonTo(Appendable out) throws IOException {
+  	
+  	if (isArray()) {
+  		
+  		out.append('[');
+  		
+  		for (int i = 0; i != intTable.size(); ++i) {
+  			if (i != 0) {
+  				out.append(',');
+  			}
+  			intTable.valueAt(i).writeJsonTo(out);
+  		}
+  		
+  		out.append(']');
+  		return;
+  	}
+  	
+		out.append('{');
+		
+		boolean first = true;
+		
+		if (intTable != null) {
+			
+    	for (int slot = 0; slot != intTable.capacity(); ++slot) {
+    		
+    		MessageValue<?> value = intTable.valueAt(slot);
+    		
+    		if (value != null) {
+    			
+    			if (!first) {
+    				out.append(',');
+    			}
+    			first = false;
+    			
+    			out.append('"').append(Integer.toString(intTable.keyAt(slot))).append("\":");
+    			value.writeJsonTo(out);
+    		}
+    	}
+			
+			out.append('}');
+			return;
+		}
+		
+		for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
+			
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			
+			String key = entry.getKey();
+			
+			if (type == MessageTableType.INT_KEY) {
+	    	try {
+	    		key = Integer.toString(Integer.parseInt(key));
+	    	}
+	    	catch(NumberFormatException e) {
+	    		throw new MessageNumberFormatException(key, e);
+	    	}
+			}
+			
+			MessageJsonUtil.writeString(out, key);
+			out.append(':');
+			entry.getValue().writeJsonTo(out);
+		}
+		
+		out.append('}');
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder str = new StringBuilder();
-		str.append("MsgTableImpl [type=" + type + ", size=" + table.size() + "] {\n");
+		str.append("MsgTableImpl [type=" + type + ", size=" + size() + "] {\n");
 		boolean first = true;
-		for (Map.Entry<String, MessageValue<?>> entry : table.entrySet()) {
+		for (Map.Entry<String, MessageValue<?>> entry : stringTable().entrySet()) {
 			if (!first) {
 				str.append(",\n");
 			}
@@ -1,9 +1,9 @@
 package microevents.msgbox.impl;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.StringTokenizer;
 
 import microevents.msgbox.MessageValueExpression;
 import microevents.msgbox.util.MessageStringifyUtil;
@@ -11,49 +11,209 @@ import microevents.msgbox.util.MessageStringifyUtil.NumberType;
 
 /**
  * MsgValueExpressionImpl
- * 
+ *
+ * Compiled expression, every element of the path is classified once as int or string key,
+ * keeps its int value, hash and UTF-8 bytes for lookups in tables and serialized messages
+ *
+ * Compiled expressions are immutable and shared by the bounded cache of compile()
+ *
  * @author Alex Shvid
  *
  */
 
 public final class MessageValueExpressionImpl implements MessageValueExpression {
 
-	private final List<String> path = new ArrayList<String>();
+	private static final String DELIMITERS = ".[]";
+
+	/**
+	 * Expressions longer than this are compiled without the cache
+	 */
+
+	private static final int MAX_CACHED_LENGTH = 256;
+
+	/**
+	 * Compiled expressions by hash of the expression string, two ways per set, the most recent first,
+	 * no locks because expressions are immutable and a lost update only means one more compile
+	 */
+
+	private static final MessageValueExpressionImpl[] CACHE = new MessageValueExpressionImpl[2048];
+	private static final int CACHE_MASK = (CACHE.length >>> 1) - 1;
+
+	private final String expression;
+
+	private final String[] path;
+	private final boolean[] intKeys;
+	private final int[] ints;
+	private final byte[][] bytes;
 
 	public MessageValueExpressionImpl(String valueExpression) {
-		
+		this(valueExpression, tokenize(valueExpression));
+	}
+
+	private MessageValueExpressionImpl(String expression, String[] path) {
+
+		this.expression = expression;
+		this.path = path;
+
+		int size = path.length;
+		this.intKeys = new boolean[size];
+		this.ints = new int[size];
+		this.bytes = new byte[size][];
+
+		for (int i = 0; i != size; ++i) {
+
+			String element = path[i];
+
+			if (MessageTableImpl.isIntKey(element)) {
+				intKeys[i] = true;
+				ints[i] = Integer.parseInt(element);
+			}
+
+			byte[] encoded = StringInternTable.KEYS.encode(element);
+			bytes[i] = encoded != null ? encoded : element.getBytes(StandardCharsets.UTF_8);
+		}
+
+	}
+
+	/**
+	 * Gets compiled expression from the cache or compiles it
+	 *
+	 * @param valueExpression - not null expression
+	 * @return not null shared expression
+	 */
+
+	public static MessageValueExpressionImpl compile(String valueExpression) {
+
 		if (valueExpression == null) {
 			throw new IllegalArgumentException("empty valueExpression");
 		}
 
-		StringTokenizer tokenizer = new StringTokenizer(valueExpression, ".[]");
-		
-		while(tokenizer.hasMoreTokens()) {
-			
-			String token = tokenizer.nextToken().trim();
-			
-			if (!token.isEmpty()) {
-				path.add(token);
+		if (valueExpression.length() > MAX_CACHED_LENGTH) {
+			return new MessageValueExpressionImpl(valueExpression);
+		}
+
+		int way = (valueExpression.hashCode() & CACHE_MASK) << 1;
+
+		MessageValueExpressionImpl ve = CACHE[way];
+
+		if (ve != null && valueExpression.equals(ve.expression)) {
+			return ve;
+		}
+
+		ve = CACHE[way + 1];
+
+		if (ve == null || !valueExpression.equals(ve.expression)) {
+			ve = new MessageValueExpressionImpl(valueExpression);
+		}
+
+		CACHE[way + 1] = CACHE[way];
+		CACHE[way] = ve;
+
+		return ve;
+	}
+
+	/**
+	 * Gets compiled form of any expression
+	 *
+	 * @param ve - not null expression
+	 * @return the same instance if compiled, otherwise compiled from the path
+	 */
+
+	public static MessageValueExpressionImpl compile(MessageValueExpression ve) {
+
+		if (ve instanceof MessageValueExpressionImpl) {
+			return (MessageValueExpressionImpl) ve;
+		}
+
+		List<String> path = ve.getPath();
+		return new MessageValueExpressionImpl(ve.toString(), path.toArray(new String[path.size()]));
+	}
+
+	private static String[] tokenize(String valueExpression) {
+
+		if (valueExpression == null) {
+			throw new IllegalArgumentException("empty valueExpression");
+		}
+
+		String[] tokens = new String[4];
+		int size = 0;
+
+		int length = valueExpression.length();
+		int start = 0;
+
+		for (int i = 0; i <= length; ++i) {
+
+			if (i != length && DELIMITERS.indexOf(valueExpression.charAt(i)) == -1) {
+				continue;
+			}
+
+			if (i != start) {
+
+				String token = valueExpression.substring(start, i).trim();
+
+				if (!token.isEmpty()) {
+
+					if (size == tokens.length) {
+						tokens = Arrays.copyOf(tokens, size * 2);
+					}
+
+					tokens[size++] = token;
+				}
 			}
-			
+
+			start = i + 1;
 		}
-		
+
+		return Arrays.copyOf(tokens, size);
 	}
 
 	public boolean isEmpty() {
-		return path.isEmpty();
+		return path.length == 0;
 	}
-	
+
 	public int size() {
-		return path.size();
+		return path.length;
 	}
-	
+
 	public String get(int i) {
-		return path.get(i);
+		return path[i];
+	}
+
+	/**
+	 * Checks that i-th element is the canonical string of int number
+	 *
+	 * @param i - ith element
+	 * @return true if the element is int key or index
+	 */
+
+	public boolean isIntKey(int i) {
+		return intKeys[i];
 	}
-	
+
+	/**
+	 * Gets int value of i-th element
+	 *
+	 * @param i - ith element
+	 * @return int value, 0 if not int key
+	 */
+
+	public int getInt(int i) {
+		return ints[i];
+	}
+
+	/**
+	 * Gets UTF-8 bytes of i-th element, caller must not modify them
+	 *
+	 * @param i - ith element
+	 * @return not null shared bytes
+	 */
+
+	public byte[] getBytes(int i) {
+		return bytes[i];
+	}
+
 	public List<String> getPath() {
-		return Collections.unmodifiableList(path);
+		return Collections.unmodifiableList(Arrays.asList(path));
 	}
 
 	public String asString() {
@@ -72,10 +232,10 @@ public final class MessageValueExpressionImpl implements MessageValueExpression
 		}
 		return str.toString();
 	}
-	
+
 	@Override
 	public String toString() {
 		return asString();
 	}
-	
+
 }
@@ -0,0 +1,114 @@
+package microevents.msgbox.impl;
+
+import java.util.Arrays;
+
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.core.buffer.MessageBufferOutput;
+
+/**
+ * ReusableBufferOutput
+ *
+ * Growing byte array output that keeps the array between serializations
+ *
+ * Arrays bigger than MAX_RETAINED_SIZE are released on clear, so one big message
+ * does not hold the memory forever
+ *
+ * @author Alex Shvid
+ *
+ */
+
+final class ReusableBufferOutput implements MessageBufferOutput {
+
+	private static final int INITIAL_SIZE = 8192;
+	private static final int MAX_RETAINED_SIZE = 1 << 20;
+
+	private byte[] array = new byte[INITIAL_SIZE];
+	private int size;
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets backing array, valid up to getSize()
+	 *
+	 * @return not null array
+	 */
+
+	public byte[] array() {
+		return array;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(array, size);
+	}
+
+	/**
+	 * Drops bytes written after the size
+	 *
+	 * @param size - new size not greater than the current one
+	 */
+
+	public void truncate(int size) {
+
+		if (size < 0 || size > this.size) {
+			throw new IllegalArgumentException("invalid size " + size);
+		}
+
+		this.size = size;
+	}
+
+	public void clear() {
+		if (array.length > MAX_RETAINED_SIZE) {
+			array = new byte[INITIAL_SIZE];
+		}
+		size = 0;
+	}
+
+	@Override
+	public MessageBuffer next(int minimumSize) {
+		ensureCapacity(minimumSize);
+		return MessageBuffer.wrap(array, size, array.length - size);
+	}
+
+	@Override
+	public void writeBuffer(int length) {
+		size += length;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(buffer, offset, array, size, length);
+		size += length;
+	}
+
+	@Override
+	public void add(byte[] buffer, int offset, int length) {
+		write(buffer, offset, length);
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private void ensureCapacity(int length) {
+
+		long required = (long) size + length;
+
+		if (required > array.length) {
+
+			if (required > Integer.MAX_VALUE - 8) {
+				throw new OutOfMemoryError("message is too big: " + required);
+			}
+
+			array = Arrays.copyOf(array, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * array.length)));
+		}
+
+	}
+
+}
@@ -0,0 +1,262 @@
+package microevents.msgbox.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.msgpack.core.MessageFormat;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.MessageBuffer;
+import org.msgpack.value.ValueType;
+
+/**
+ * StringInternTable
+ *
+ * Shared symbol table of short strings, keeps the decoded string together with its UTF-8 bytes
+ *
+ * On parse the bytes of the string are compared with the cached symbol in place,
+ * so a repeated string is returned without allocation. On write the cached bytes
+ * are written without encoding.
+ *
+ * Parsed and written symbols are kept in separate 2-way set-associative tables with LRU
+ * eviction inside the set, found by the hash of bytes and by the hash of string.
+ * Tables are not mixed, because malformed UTF-8 does not survive the round trip.
+ * There are no locks, symbols are immutable and a lost update only means one more miss
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class StringInternTable {
+
+	/**
+	 * Header keys and short header values like tenant or type
+	 */
+
+	public static final StringInternTable HEADERS = new StringInternTable(1024, 32);
+
+	/**
+	 * Keys of message tables and payloads
+	 */
+
+	public static final StringInternTable KEYS = new StringInternTable(2048, 64);
+
+	private static final class Symbol {
+
+		private final int hash;
+		private final byte[] bytes;
+		private final String value;
+
+		Symbol(int hash, byte[] bytes, String value) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Symbols by hash of bytes, two ways per set, the most recent first
+	 */
+
+	private final Symbol[] byBytes;
+
+	/**
+	 * Symbols by hash of string, two ways per set, the most recent first
+	 */
+
+	private final Symbol[] byString;
+
+	private final int mask;
+	private final int maxLength;
+
+	/**
+	 * Creates the table
+	 *
+	 * @param capacity - number of symbols, rounded up to power of two
+	 * @param maxLength - maximum length of the symbol in bytes
+	 */
+
+	public StringInternTable(int capacity, int maxLength) {
+
+		if (capacity < 2) {
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		this.byBytes = new Symbol[size];
+		this.byString = new Symbol[size];
+		this.mask = (size >>> 1) - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Unpacks string value, short strings are looked up in the table
+	 *
+	 * @param unpacker - not null unpacker
+	 * @return not null string
+	 * @throws IOException
+	 */
+
+	public String unpackString(MessageUnpacker unpacker) throws IOException {
+
+		MessageFormat format = unpacker.getNextFormat();
+
+		if (format.getValueType() != ValueType.STRING) {
+			return unpacker.unpackString();
+		}
+
+		int length = unpacker.unpackRawStringHeader();
+
+		if (length > maxLength) {
+			byte[] bytes = new byte[length];
+			unpacker.readPayload(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		MessageBuffer payload = unpacker.readPayloadAsReference(length);
+
+		int hash = hash(payload, length);
+		int way = (hash & mask) << 1;
+
+		Symbol symbol = byBytes[way];
+
+		if (symbol != null && symbol.hash == hash && equals(symbol.bytes, payload, length)) {
+			return symbol.value;
+		}
+
+		symbol = byBytes[way + 1];
+
+		if (symbol != null && symbol.hash == hash && equals(symbol.bytes, payload, length)) {
+			insert(byBytes, way, symbol);
+			return symbol.value;
+		}
+
+		byte[] bytes = payload.toByteArray();
+		String value = new String(bytes, StandardCharsets.UTF_8);
+
+		symbol = new Symbol(hash, bytes, value);
+		insert(byBytes, way, symbol);
+
+		return value;
+	}
+
+	/**
+	 * Packs string value, short strings are written by cached bytes
+	 *
+	 * @param packer - not null packer
+	 * @param value - not null string
+	 * @throws IOException
+	 */
+
+	public void packString(MessagePacker packer, String value) throws IOException {
+
+		byte[] bytes = encode(value);
+
+		if (bytes == null) {
+			packer.packString(value);
+			return;
+		}
+
+		packer.packRawStringHeader(bytes.length);
+		packer.writePayload(bytes);
+	}
+
+	/**
+	 * Gets UTF-8 bytes of the short string from the table, caller must not modify them
+	 *
+	 * @param value - not null string
+	 * @return shared bytes or null if the string is too long
+	 */
+
+	public byte[] encode(String value) {
+
+		if (value.length() > maxLength) {
+			return null;
+		}
+
+		int way = (value.hashCode() & mask) << 1;
+
+		Symbol symbol = byString[way];
+
+		if (symbol != null && value.equals(symbol.value)) {
+			return symbol.bytes;
+		}
+
+		symbol = byString[way + 1];
+
+		if (symbol != null && value.equals(symbol.value)) {
+			insert(byString, way, symbol);
+			return symbol.bytes;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+		if (bytes.length > maxLength) {
+			return null;
+		}
+
+		insert(byString, way, new Symbol(0, bytes, value));
+
+		return bytes;
+	}
+
+	/**
+	 * Moves the symbol to the first way of the set, the previous first becomes the second
+	 */
+
+	private static void insert(Symbol[] symbols, int way, Symbol symbol) {
+		symbols[way + 1] = symbols[way];
+		symbols[way] = symbol;
+	}
+
+	private static int hash(MessageBuffer payload, int length) {
+
+		int hash = 0;
+
+		if (payload.hasArray()) {
+			byte[] array = payload.array();
+			for (int i = payload.arrayOffset(), end = i + length; i != end; ++i) {
+				hash = 31 * hash + array[i];
+			}
+		}
+		else {
+			for (int i = 0; i != length; ++i) {
+				hash = 31 * hash + payload.getByte(i);
+			}
+		}
+
+		return hash ^ (hash >>> 16);
+	}
+
+	static boolean equals(byte[] bytes, MessageBuffer payload, int length) {
+
+		if (bytes.length != length) {
+			return false;
+		}
+
+		if (payload.hasArray()) {
+			byte[] array = payload.array();
+			int offset = payload.arrayOffset();
+			for (int i = 0; i != length; ++i) {
+				if (bytes[i] != array[offset + i]) {
+					return false;
+				}
+			}
+		}
+		else {
+			for (int i = 0; i != length; ++i) {
+				if (bytes[i] != payload.getByte(i)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,125 @@
+package microevents.msgbox.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MessageCrc32cUtil
+ *
+ * CRC-32C (Castagnoli) checksum, slicing-by-8 implementation
+ *
+ * Gives the same result as java.util.zip.CRC32C which is not available before Java 9
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageCrc32cUtil {
+
+	private static final int POLYNOMIAL = 0x82F63B78;
+
+	private static final int[][] TABLES = newTables();
+
+	private MessageCrc32cUtil() {
+	}
+
+	/**
+	 * Calculates checksum of the bytes
+	 *
+	 * @param bytes - not null array
+	 * @param offset - offset in the array
+	 * @param length - number of bytes
+	 * @return checksum
+	 */
+
+	public static int crc32c(byte[] bytes, int offset, int length) {
+		return update(0, bytes, offset, length);
+	}
+
+	/**
+	 * Calculates checksum of the remaining bytes, position of the buffer is not changed
+	 *
+	 * @param buffer - not null buffer
+	 * @return checksum
+	 */
+
+	public static int crc32c(ByteBuffer buffer) {
+
+		if (buffer.hasArray()) {
+			return update(0, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+
+		int crc = ~0;
+
+		for (int i = buffer.position(); i != buffer.limit(); ++i) {
+			crc = (crc >>> 8) ^ TABLES[0][(crc ^ buffer.get(i)) & 0xFF];
+		}
+
+		return ~crc;
+	}
+
+	/**
+	 * Continues checksum calculation
+	 *
+	 * @param checksum - checksum of the previous bytes, 0 for the first call
+	 * @param bytes - not null array
+	 * @param offset - offset in the array
+	 * @param length - number of bytes
+	 * @return checksum
+	 */
+
+	public static int update(int checksum, byte[] bytes, int offset, int length) {
+
+		int crc = ~checksum;
+		int end = offset + length;
+
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+
+		for (; offset + 8 <= end; offset += 8) {
+
+			int low = crc
+					^ (bytes[offset] & 0xFF)
+					^ (bytes[offset + 1] & 0xFF) << 8
+					^ (bytes[offset + 2] & 0xFF) << 16
+					^ (bytes[offset + 3] & 0xFF) << 24;
+
+			crc = t7[low & 0xFF]
+					^ t6[(low >>> 8) & 0xFF]
+					^ t5[(low >>> 16) & 0xFF]
+					^ t4[low >>> 24]
+					^ t3[bytes[offset + 4] & 0xFF]
+					^ t2[bytes[offset + 5] & 0xFF]
+					^ t1[bytes[offset + 6] & 0xFF]
+					^ t0[bytes[offset + 7] & 0xFF];
+		}
+
+		for (; offset != end; ++offset) {
+			crc = (crc >>> 8) ^ t0[(crc ^ bytes[offset]) & 0xFF];
+		}
+
+		return ~crc;
+	}
+
+	private static int[][] newTables() {
+
+		int[][] tables = new int[8][256];
+
+		for (int i = 0; i != 256; ++i) {
+			int crc = i;
+			for (int bit = 0; bit != 8; ++bit) {
+				crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+			}
+			tables[0][i] = crc;
+		}
+
+		for (int i = 0; i != 256; ++i) {
+			for (int t = 1; t != 8; ++t) {
+				int prev = tables[t - 1][i];
+				tables[t][i] = (prev >>> 8) ^ tables[0][prev & 0xFF];
+			}
+		}
+
+		return tables;
+	}
+
+}
@@ -0,0 +1,247 @@
+package microevents.msgbox.util;
+
+import java.io.IOException;
+
+/**
+ * MessageJsonUtil
+ *
+ * Streaming json primitives, output is the same as msgpack Value.toJson() gives
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public final class MessageJsonUtil {
+
+	private final static char REPLACEMENT = '\uFFFD';
+
+	private final static char[] HEX_ARRAY = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+	private MessageJsonUtil() {
+	}
+
+	/**
+	 * Writes quoted and escaped json string
+	 *
+	 * @param out - output
+	 * @param value - not null string
+	 * @throws IOException
+	 */
+
+	public static void writeString(Appendable out, CharSequence value) throws IOException {
+
+		out.append('"');
+
+		int length = value.length();
+		int start = 0;
+
+		for (int i = 0; i != length; ++i) {
+
+			char ch = value.charAt(i);
+
+			if (ch >= 0x20 && ch != '"' && ch != '\\' && (ch < Character.MIN_SURROGATE || ch > Character.MAX_SURROGATE)) {
+				continue;
+			}
+
+			if (start != i) {
+				out.append(value, start, i);
+			}
+			start = i + 1;
+
+			writeEscaped(out, ch);
+		}
+
+		if (start != length) {
+			out.append(value, start, length);
+		}
+
+		out.append('"');
+	}
+
+	/**
+	 * Writes the char that must be escaped in json string
+	 */
+
+	private static void writeEscaped(Appendable out, char ch) throws IOException {
+
+		switch(ch) {
+
+		case '"':
+			out.append("\\\"");
+			break;
+
+		case '\\':
+			out.append("\\\\");
+			break;
+
+		case '\b':
+			out.append("\\b");
+			break;
+
+		case '\f':
+			out.append("\\f");
+			break;
+
+		case '\n':
+			out.append("\\n");
+			break;
+
+		case '\r':
+			out.append("\\r");
+			break;
+
+		case '\t':
+			out.append("\\t");
+			break;
+
+		default:
+			out.append("\\u")
+			.append(HEX_ARRAY[(ch >>> 12) & 0x0F])
+			.append(HEX_ARRAY[(ch >>> 8) & 0x0F])
+			.append(HEX_ARRAY[(ch >>> 4) & 0x0F])
+			.append(HEX_ARRAY[ch & 0x0F]);
+		}
+	}
+
+	/**
+	 * Writes UTF-8 bytes as quoted and escaped json string
+	 *
+	 * Bytes are decoded directly to the output without building a string,
+	 * every maximal malformed subsequence and every encoded surrogate is replaced
+	 * by the replacement character as new String(bytes, UTF_8) does
+	 *
+	 * @param out - output
+	 * @param bytes - not null UTF-8 bytes
+	 * @param offset - offset in the array
+	 * @param length - number of bytes
+	 * @throws IOException
+	 */
+
+	public static void writeUtf8(Appendable out, byte[] bytes, int offset, int length) throws IOException {
+
+		out.append('"');
+
+		int end = offset + length;
+		int i = offset;
+
+		while (i != end) {
+
+			int b = bytes[i] & 0xFF;
+
+			if (b < 0x80) {
+				if (b >= 0x20 && b != '"' && b != '\\') {
+					out.append((char) b);
+				}
+				else {
+					writeEscaped(out, (char) b);
+				}
+				i++;
+				continue;
+			}
+
+			int need;
+			int low = 0x80;
+			int high = 0xBF;
+
+			if (b >= 0xC2 && b <= 0xDF) {
+				need = 1;
+			}
+			else if (b >= 0xE0 && b <= 0xEF) {
+				need = 2;
+				if (b == 0xE0) {
+					low = 0xA0;
+				}
+			}
+			else if (b >= 0xF0 && b <= 0xF4) {
+				need = 3;
+				if (b == 0xF0) {
+					low = 0x90;
+				}
+				else if (b == 0xF4) {
+					high = 0x8F;
+				}
+			}
+			else {
+				out.append(REPLACEMENT);
+				i++;
+				continue;
+			}
+
+			int codePoint = b & (0x3F >> need);
+			int j = i + 1;
+			int read = 0;
+
+			while (read != need && j != end) {
+
+				int c = bytes[j] & 0xFF;
+
+				if (c < low || c > high) {
+					break;
+				}
+
+				codePoint = (codePoint << 6) | (c & 0x3F);
+				low = 0x80;
+				high = 0xBF;
+				read++;
+				j++;
+			}
+
+			i = j;
+
+			if (read != need || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+				out.append(REPLACEMENT);
+			}
+			else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				out.append((char) codePoint);
+			}
+			else {
+				writeEscaped(out, Character.highSurrogate(codePoint));
+				writeEscaped(out, Character.lowSurrogate(codePoint));
+			}
+		}
+
+		out.append('"');
+	}
+
+	/**
+	 * Writes long number
+	 *
+	 * @param out - output
+	 * @param value - number
+	 * @throws IOException
+	 */
+
+	public static void writeLong(Appendable out, long value) throws IOException {
+		out.append(Long.toString(value));
+	}
+
+	/**
+	 * Writes double number, NaN and infinite values are written as null
+	 *
+	 * @param out - output
+	 * @param value - number
+	 * @throws IOException
+	 */
+
+	public static void writeDouble(Appendable out, double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			out.append("null");
+		}
+		else {
+			out.append(Double.toString(value));
+		}
+	}
+
+	/**
+	 * Writes boolean
+	 *
+	 * @param out - output
+	 * @param value - boolean
+	 * @throws IOException
+	 */
+
+	public static void writeBoolean(Appendable out, boolean value) throws IOException {
+		out.append(value ? "true" : "false");
+	}
+
+}
@@ -0,0 +1,232 @@
+package microevents.msgbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.ArrayBufferOutput;
+
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.util.MessageCrc32cUtil;
+
+/**
+ * MessageBlockTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageBlockTest {
+
+	@Test
+	public void testEmpty() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageFactory.newBlockWriter(out, MessageFactory.getDeflateCodec(), 1024).close();
+
+		Assert.assertEquals(0, out.size());
+		Assert.assertFalse(MessageFactory.newBlockReader(new ByteArrayInputStream(out.toByteArray())).hasNext());
+
+	}
+
+	@Test
+	public void testBlocks() throws IOException {
+
+		for (MessageCodec codec : Arrays.asList(MessageFactory.getDeflateCodec(), null)) {
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			MessageBlockWriter writer = MessageFactory.newBlockWriter(out, codec, 4096);
+
+			List<MessageBox> boxes = new ArrayList<MessageBox>();
+			List<long[]> locations = new ArrayList<long[]>();
+
+			int plainSize = 0;
+
+			for (int i = 0; i != 500; ++i) {
+
+				MessageBox box = MessageFactory.newBox()
+						.addHeader("type", "order")
+						.addHeader("id", Integer.toString(i))
+						.addPayloadUtf8("text", "status=ok region=eu-west amount=" + (i % 17));
+
+				int index = writer.write(box);
+				locations.add(new long[] { writer.getBlockOffset(), index });
+
+				boxes.add(box);
+				plainSize += box.toByteArray().length;
+			}
+
+			writer.close();
+
+			byte[] archive = out.toByteArray();
+			Assert.assertEquals(archive.length, writer.getWrittenBytes());
+
+			if (codec != null) {
+				Assert.assertTrue(archive.length * 3 < plainSize);
+			}
+
+			MessageBlockReader reader = MessageFactory.newBlockReader(new ByteArrayInputStream(archive));
+
+			int i = 0;
+			int blocks = 0;
+
+			while (reader.hasNext()) {
+
+				MessageBlock block = reader.next();
+				blocks++;
+
+				for (int j = 0; j != block.size(); ++j, ++i) {
+					Assert.assertEquals(locations.get(i)[0], block.getOffset());
+					Assert.assertEquals(locations.get(i)[1], j);
+					Assert.assertEquals(boxes.get(i).toJson(), block.get(j).toJson());
+				}
+			}
+
+			reader.close();
+
+			Assert.assertEquals(boxes.size(), i);
+			Assert.assertTrue(blocks > 1);
+
+			long[] location = locations.get(321);
+
+			ByteBuffer buffer = ByteBuffer.wrap(archive);
+			buffer.position((int) location[0]);
+
+			MessageBlock block = MessageFactory.parseBlock(buffer);
+			Assert.assertEquals(location[0], block.getOffset());
+			Assert.assertEquals("321", block.get((int) location[1]).getHeader("id"));
+
+		}
+
+	}
+
+	@Test
+	public void testFailedWrite() throws IOException {
+
+		MessageFactory.newDictionary(1005, Arrays.asList("amount"));
+
+		ArrayBufferOutput blob = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(blob);
+		packer.packMapHeader(2);
+		packer.packString(MessageConstants.HEADER_KEY).packMapHeader(1);
+		packer.packString(MessageConstants.DICTIONARY_HEADER).packString("1005");
+		packer.packString(MessageConstants.BODY_KEY).packMapHeader(1);
+		packer.packString("order").packMapHeader(1);
+		packer.writePayload(new byte[] { (byte) 0xd4, MessageConstants.DICTIONARY_KEY_EXT_TYPE, 5 });
+		packer.packLong(10);
+		packer.flush();
+
+		MessageBox broken = MessageFactory.parseLazyBox(blob.toByteArray()).setDictionary(null);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageBlockWriter writer = MessageFactory.newBlockWriter(out, null, 1024);
+		Assert.assertEquals(0, writer.write(MessageFactory.newBox().addHeader("id", "1")));
+
+		try {
+			writer.write(broken);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+
+		Assert.assertEquals(1, writer.write(MessageFactory.newBox().addHeader("id", "2")));
+		writer.close();
+
+		MessageBlock block = MessageFactory.parseBlock(ByteBuffer.wrap(out.toByteArray()));
+		Assert.assertEquals(2, block.size());
+		Assert.assertEquals("1", block.get(0).getHeader("id"));
+		Assert.assertEquals("2", block.get(1).getHeader("id"));
+
+	}
+
+	@Test
+	public void testCorrupted() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageBlockWriter writer = MessageFactory.newBlockWriter(out, MessageFactory.getDeflateCodec(), 1024);
+		writer.write(MessageFactory.newBox().addHeader("id", "1"));
+		writer.close();
+
+		byte[] archive = out.toByteArray();
+		archive[archive.length - 1] ^= 1;
+
+		try {
+			MessageFactory.parseBlock(ByteBuffer.wrap(archive));
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+
+		try {
+			MessageFactory.parseBlock(ByteBuffer.wrap(archive, 0, archive.length - 1));
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+
+	}
+
+	@Test
+	public void testForgedLengths() throws IOException {
+
+		byte[] forgedLength = new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0, 0 };
+
+		for (int maxBlockSize : new int[] { 1 << 20, Integer.MAX_VALUE }) {
+			try {
+				MessageFactory.newBlockReader(new ByteArrayInputStream(forgedLength), maxBlockSize).next();
+				Assert.fail();
+			}
+			catch(MessageBoxException e) {
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageBlockWriter writer = MessageFactory.newBlockWriter(out, null, 1024);
+		writer.write(MessageFactory.newBox().addHeader("id", "1"));
+		writer.close();
+
+		// length, codec, data length and count take one byte each, then crc32c and stored data
+		byte[] archive = out.toByteArray();
+		Assert.assertEquals(archive.length, 8 + archive[2]);
+
+		byte[] forgedCount = archive.clone();
+		forgedCount[3] = 100;
+
+		byte[] forgedDataLength = archive.clone();
+		forgedDataLength[2] = 0x7F;
+
+		byte[] forgedOffset = archive.clone();
+		forgedOffset[forgedOffset.length - 4] = 100;
+		int crc = MessageCrc32cUtil.crc32c(forgedOffset, 8, forgedOffset.length - 8);
+		for (int i = 0; i != 4; ++i) {
+			forgedOffset[4 + i] = (byte) (crc >>> (8 * i));
+		}
+
+		for (byte[] forged : Arrays.asList(forgedCount, forgedDataLength, forgedOffset)) {
+
+			try {
+				MessageFactory.parseBlock(ByteBuffer.wrap(forged));
+				Assert.fail();
+			}
+			catch(MessageBoxException e) {
+			}
+
+			try {
+				MessageFactory.newBlockReader(new ByteArrayInputStream(forged)).next();
+				Assert.fail();
+			}
+			catch(MessageBoxException e) {
+			}
+		}
+
+	}
+
+}
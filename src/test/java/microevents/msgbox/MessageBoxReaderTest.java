@@ -0,0 +1,218 @@
+package microevents.msgbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageBoxReaderTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageBoxReaderTest {
+
+	@Test
+	public void testEmpty() throws IOException {
+
+		MessageBoxReader reader = MessageFactory.newBoxReader(new ByteArrayInputStream(new byte[0]));
+		Assert.assertFalse(reader.hasNext());
+
+		try {
+			reader.next();
+			Assert.fail();
+		}
+		catch(NoSuchElementException e) {
+		}
+
+		reader.close();
+
+	}
+
+	@Test
+	public void testStream() throws IOException {
+
+		List<MessageBox> boxes = new ArrayList<MessageBox>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		for (int i = 0; i != 100; ++i) {
+			MessageBox box = MessageFactory.newBox()
+					.addHeader("id", Integer.toString(i))
+					.addPayload("blob", new byte[i * 100], false);
+			boxes.add(box);
+			box.writeTo(out);
+		}
+
+		byte[] log = out.toByteArray();
+
+		assertBoxes(boxes, log.length, MessageFactory.newBoxReader(new ByteArrayInputStream(log)));
+		assertBoxes(boxes, log.length, MessageFactory.newBoxReader(Channels.newChannel(new ByteArrayInputStream(log))));
+
+	}
+
+	@Test
+	public void testNextHeaders() throws IOException {
+
+		MessageBox first = MessageFactory.newBox()
+				.addHeader("id", "1")
+				.addPayloadUtf8("text", "first");
+
+		MessageBox second = MessageFactory.newBox()
+				.addHeader("id", "2")
+				.addPayloadUtf8("text", "second");
+
+		MessageBox third = MessageFactory.newBox()
+				.addPayloadUtf8("text", "third");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		first.writeTo(out);
+		second.writeTo(out);
+		third.writeTo(out);
+		writeBodyFirst(out, "4", "fourth");
+
+		byte[] log = out.toByteArray();
+
+		for (int i = 0; i != 2; ++i) {
+
+			MessageBoxReader reader = i == 0 ? MessageFactory.newBoxReader(new ByteArrayInputStream(log))
+					: MessageFactory.newBoxReader(Channels.newChannel(new ByteArrayInputStream(log)));
+
+			Assert.assertEquals("1", reader.nextHeaders().get("id"));
+			Assert.assertEquals(0, reader.getReadBytes());
+			Assert.assertEquals(first.toJson(), reader.next().toJson());
+			Assert.assertEquals(first.toByteArray().length, reader.getReadBytes());
+
+			Assert.assertEquals("2", reader.nextHeaders().get("id"));
+			reader.skip();
+			Assert.assertEquals(first.toByteArray().length + second.toByteArray().length, reader.getReadBytes());
+
+			Assert.assertTrue(reader.nextHeaders().isEmpty());
+			Assert.assertEquals(third.toJson(), reader.next().toJson());
+
+			long offset = reader.getReadBytes();
+
+			Assert.assertEquals("4", reader.nextHeaders().get("id"));
+			Assert.assertEquals(offset, reader.getReadBytes());
+
+			MessageBox fourth = reader.next();
+			Assert.assertEquals("4", fourth.getHeader("id"));
+			Assert.assertEquals("fourth", fourth.getPayloadUtf8("text"));
+
+			Assert.assertFalse(reader.hasNext());
+			Assert.assertEquals(log.length, reader.getReadBytes());
+			reader.close();
+		}
+
+	}
+
+	@Test
+	public void testSkip() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		for (int i = 0; i != 3; ++i) {
+			MessageFactory.newBox()
+					.addHeader("id", Integer.toString(i))
+					.addPayload("blob", new byte[100], false)
+					.writeTo(out);
+		}
+
+		MessageBoxReader reader = MessageFactory.newBoxReader(new ByteArrayInputStream(out.toByteArray()));
+
+		reader.skip();
+		Assert.assertEquals("1", reader.nextHeaders().get("id"));
+		Assert.assertEquals("2", reader.nextHeaders().get("id"));
+		Assert.assertEquals("2", reader.next().getHeader("id"));
+		Assert.assertFalse(reader.hasNext());
+
+		try {
+			reader.skip();
+			Assert.fail();
+		}
+		catch(NoSuchElementException e) {
+		}
+
+		reader.close();
+
+	}
+
+	@Test
+	public void testBrokenHeader() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packMapHeader(1);
+		packer.packString(MessageConstants.HEADER_KEY);
+		packer.packInt(5);
+		packer.flush();
+
+		MessageFactory.newBox().addHeader("id", "2").writeTo(out);
+
+		MessageBoxReader reader = MessageFactory.newBoxReader(new ByteArrayInputStream(out.toByteArray()));
+
+		try {
+			reader.nextHeaders();
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+
+		reader.skip();
+		Assert.assertEquals("2", reader.nextHeaders().get("id"));
+		Assert.assertEquals("2", reader.next().getHeader("id"));
+		Assert.assertFalse(reader.hasNext());
+
+		reader.close();
+
+	}
+
+	private static void writeBodyFirst(ByteArrayOutputStream out, String id, String text) throws IOException {
+
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+
+		packer.packMapHeader(2);
+		packer.packString(MessageConstants.BODY_KEY);
+		packer.packMapHeader(1);
+		packer.packString("text");
+		packer.packString(text);
+		packer.packString(MessageConstants.HEADER_KEY);
+		packer.packMapHeader(1);
+		packer.packString("id");
+		packer.packString(id);
+
+		packer.flush();
+	}
+
+	private static void assertBoxes(List<MessageBox> expected, long length, MessageBoxReader reader) throws IOException {
+
+		try {
+
+			for (MessageBox box : expected) {
+				Assert.assertTrue(reader.hasNext());
+				Assert.assertEquals(box.toJson(), reader.next().toJson());
+			}
+
+			Assert.assertFalse(reader.hasNext());
+			Assert.assertEquals(length, reader.getReadBytes());
+		}
+		finally {
+			reader.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+package microevents.msgbox;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.support.MessageBoxException;
+
+/**
+ * MessageBoxScannerTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageBoxScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testScan() throws IOException {
+
+		List<MessageBox> boxes = new ArrayList<MessageBox>();
+		List<Long> offsets = new ArrayList<Long>();
+
+		File file = folder.newFile("log.msgpack");
+		FileOutputStream out = new FileOutputStream(file);
+
+		try {
+			long offset = 0;
+			for (int i = 0; i != 50; ++i) {
+				MessageTable table = new MessageTableImpl();
+				table.putLong("long", i * 100000L - 2500000L);
+				table.putDouble("double", i / 3.0);
+				table.putBoolean("flag", i % 2 == 0);
+				table.putString("text", new String(new char[(i % 5) * 20]).replace('\0', 'x'));
+				MessageBox box = MessageFactory.newBox()
+						.addHeader("id", Integer.toString(i))
+						.addPayload("blob", new byte[(i % 7) * 50], false)
+						.addPayload("table", table)
+						.addPayload("log", new byte[(i % 3) * 300], MessageFactory.getDeflateCodec(), 128);
+				boxes.add(box);
+				offsets.add(offset);
+				offset += box.toByteArray().length;
+				box.writeTo(out);
+			}
+		}
+		finally {
+			out.close();
+		}
+
+		for (int windowSize : new int[] { 64, 1000, 1 << 20 }) {
+
+			MessageBoxScanner scanner = MessageFactory.newBoxScanner(new RandomAccessFile(file, "r").getChannel(), windowSize);
+
+			try {
+
+				Assert.assertEquals(file.length(), scanner.size());
+
+				for (int i = 0; i != boxes.size(); ++i) {
+					Assert.assertTrue(scanner.hasNext());
+					Assert.assertEquals(offsets.get(i).longValue(), scanner.position());
+					Assert.assertEquals(boxes.get(i).toJson(), scanner.next().toJson());
+				}
+
+				Assert.assertFalse(scanner.hasNext());
+				Assert.assertEquals(file.length(), scanner.position());
+
+				Assert.assertEquals(boxes.get(3).toJson(), scanner.read(offsets.get(3)).toJson());
+				Assert.assertEquals(file.length(), scanner.position());
+
+				scanner.seek(offsets.get(40));
+				Assert.assertEquals(boxes.get(40).toJson(), scanner.next().toJson());
+				Assert.assertEquals(boxes.get(41).getHeader("id"), scanner.next().getHeader("id"));
+
+			}
+			finally {
+				scanner.close();
+			}
+
+		}
+
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+
+		byte[] blob = MessageFactory.newBox().addHeader("id", "123").toByteArray();
+
+		File file = folder.newFile("truncated.msgpack");
+		FileOutputStream out = new FileOutputStream(file);
+
+		try {
+			out.write(blob);
+			out.write(blob, 0, blob.length - 2);
+		}
+		finally {
+			out.close();
+		}
+
+		MessageBoxScanner scanner = MessageFactory.newBoxScanner(file);
+
+		try {
+
+			Assert.assertEquals("123", scanner.next().getHeader("id"));
+
+			try {
+				scanner.next();
+				Assert.fail();
+			}
+			catch(MessageBoxException e) {
+				Assert.assertEquals(blob.length, scanner.position());
+			}
+
+		}
+		finally {
+			scanner.close();
+		}
+
+	}
+
+}
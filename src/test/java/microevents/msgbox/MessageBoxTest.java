@@ -1,12 +1,24 @@
 package microevents.msgbox;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ArrayBufferOutput;
 
 import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.support.MessageBoxException;
 
 
 /**
@@ -134,4 +146,523 @@ public class MessageBoxTest {
 	}
 	
 	
+	@Test
+	public void testWriteTo() throws IOException {
+		
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("id", "123")
+				.addPayload("blob", new byte[20000], false);
+		
+		byte[] expected = box.toByteArray();
+		
+		ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length + 1);
+		buffer.put((byte) 1);
+		Assert.assertEquals(expected.length, box.writeTo(buffer));
+		buffer.flip().position(1);
+		
+		byte[] actual = new byte[expected.length];
+		buffer.get(actual);
+		Assert.assertArrayEquals(expected, actual);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		box.writeTo(out);
+		Assert.assertArrayEquals(expected, out.toByteArray());
+		
+		out.reset();
+		box.writeTo(Channels.newChannel(out));
+		Assert.assertArrayEquals(expected, out.toByteArray());
+		
+	}
+	
+	@Test
+	public void testDictionary() {
+		
+		MessageDictionary dictionary = MessageFactory.newDictionary(1001, Arrays.asList("amount", "currency", "items", "sku"));
+		Assert.assertSame(dictionary, MessageFactory.getDictionary(1001));
+		
+		MessageTable item = new MessageTableImpl();
+		item.putString("sku", "A-1");
+		item.putLong("amount", 2);
+		
+		MessageTable items = new MessageTableImpl();
+		items.put(0, item);
+		
+		MessageTable order = new MessageTableImpl();
+		order.putLong("amount", 1000);
+		order.putString("currency", "USD");
+		order.putString("comment", "fast");
+		order.put("items", items);
+		
+		MessageBox plain = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addPayload("order", order);
+		
+		byte[] plainBlob = plain.toByteArray();
+		
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addPayload("order", order)
+				.setDictionary(dictionary);
+		
+		Assert.assertSame(dictionary, box.getDictionary());
+		Assert.assertEquals("1001", box.getHeader(MessageConstants.DICTIONARY_HEADER));
+		
+		byte[] blob = box.toByteArray();
+		Assert.assertTrue(blob.length < plainBlob.length);
+		
+		String json = box.toJson();
+		Assert.assertTrue(json.contains("\"amount\":1000"));
+		Assert.assertTrue(json.contains("\"sku\":\"A-1\""));
+		
+		Assert.assertEquals(json, MessageFactory.parseBox(blob).toJson());
+		Assert.assertEquals(json, MessageFactory.parseLazyBox(blob).toJson());
+		Assert.assertEquals(json, MessageFactory.toBoxJson(blob));
+		
+		MessageBox lazy = MessageFactory.parseLazyBox(blob);
+		Assert.assertSame(dictionary, lazy.getDictionary());
+		Assert.assertArrayEquals(blob, lazy.toByteArray());
+		
+		lazy.setDictionary(null);
+		Assert.assertArrayEquals(plainBlob, lazy.toByteArray());
+		
+		MessageBox parsed = MessageFactory.parseBox(plainBlob).setDictionary(dictionary);
+		Assert.assertArrayEquals(blob, parsed.toByteArray());
+		
+		MessageBox unknown = MessageFactory.parseBox(MessageFactory.newBox().addHeader(MessageConstants.DICTIONARY_HEADER, "1002").toByteArray());
+		Assert.assertEquals("1002", unknown.getHeader(MessageConstants.DICTIONARY_HEADER));
+		Assert.assertNull(unknown.getDictionary());
+		
+		byte[] unknownBlob = new String(blob, StandardCharsets.ISO_8859_1).replace("1001", "1002").getBytes(StandardCharsets.ISO_8859_1);
+		
+		try {
+			MessageFactory.parseBox(unknownBlob);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+		
+		Assert.assertSame(dictionary, MessageFactory.newDictionary(1001, Arrays.asList("amount", "currency", "items", "sku")));
+		
+		try {
+			MessageFactory.newDictionary(1001, Arrays.asList("amount"));
+			Assert.fail();
+		}
+		catch(IllegalArgumentException e) {
+		}
+		
+	}
+	
+	@Test
+	public void testDictionaryHeader() throws IOException {
+		
+		MessageDictionary dictionary = MessageFactory.newDictionary(1003, Arrays.asList("amount"));
+		
+		MessageTable order = new MessageTableImpl();
+		order.putLong("amount", 10);
+		
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("dict", "en")
+				.addHeader("type", "order")
+				.addPayload("order", order);
+		
+		byte[] blob = box.toByteArray();
+		
+		MessageBox parsed = MessageFactory.parseBox(blob);
+		Assert.assertEquals("en", parsed.getHeader("dict"));
+		Assert.assertNull(parsed.getDictionary());
+		Assert.assertEquals(box.toJson(), parsed.toJson());
+		Assert.assertEquals(box.toJson(), MessageFactory.parseLazyBox(blob).toJson());
+		Assert.assertEquals(box.toJson(), MessageFactory.toBoxJson(blob));
+		Assert.assertEquals("en", MessageFactory.getBoxValue(blob, MessageFactory.newExpression("header.dict")).asString());
+		Assert.assertEquals("10", MessageFactory.getBoxValue(blob, MessageFactory.newExpression("body.order.amount")).asString());
+		
+		box.setDictionary(dictionary);
+		blob = box.toByteArray();
+		
+		parsed = MessageFactory.parseBox(blob);
+		Assert.assertEquals("en", parsed.getHeader("dict"));
+		Assert.assertSame(dictionary, parsed.getDictionary());
+		Assert.assertEquals(box.toJson(), parsed.toJson());
+		
+		MessageBox plain = MessageFactory.newBox().addHeader(MessageConstants.DICTIONARY_HEADER, "v2");
+		Assert.assertNull(plain.getDictionary());
+		Assert.assertEquals("v2", MessageFactory.parseBox(plain.toByteArray()).getHeader(MessageConstants.DICTIONARY_HEADER));
+		
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packMapHeader(2);
+		packer.packString(MessageConstants.BODY_KEY).packMapHeader(1);
+		packer.packString("order").packMapHeader(1);
+		packer.writePayload(new byte[] { (byte) 0xd4, MessageConstants.DICTIONARY_KEY_EXT_TYPE, 0 });
+		packer.packLong(10);
+		packer.packString(MessageConstants.HEADER_KEY).packMapHeader(1);
+		packer.packString(MessageConstants.DICTIONARY_HEADER).packString("1003");
+		packer.flush();
+		
+		byte[] bodyFirst = out.toByteArray();
+		
+		String json = "{\"header\":{\"msgbox-dict\":\"1003\"},\"body\":{\"order\":{\"amount\":10}}}";
+		MessageValueExpression amount = MessageFactory.newExpression("body.order.amount");
+		
+		parsed = MessageFactory.parseBox(bodyFirst);
+		Assert.assertSame(dictionary, parsed.getDictionary());
+		Assert.assertEquals(json, parsed.toJson());
+		Assert.assertEquals(json, MessageFactory.parseLazyBox(bodyFirst).toJson());
+		Assert.assertEquals(json, MessageFactory.toBoxJson(bodyFirst));
+		Assert.assertEquals("10", MessageFactory.getBoxValue(bodyFirst, amount).asString());
+		
+		MessageProjection projection = MessageFactory.newProjection(Arrays.asList(amount));
+		Assert.assertEquals("10", projection.extractBox(bodyFirst)[0].asString());
+		Assert.assertEquals(json, MessageFactory.parseBox(bodyFirst, projection).toJson());
+		Assert.assertTrue(MessageFactory.newPredicate("body.order.amount == 10").test(bodyFirst));
+		
+		MessageBoxReader reader = MessageFactory.newBoxReader(new ByteArrayInputStream(bodyFirst));
+		Assert.assertEquals("1003", reader.nextHeaders().get(MessageConstants.DICTIONARY_HEADER));
+		Assert.assertEquals(json, reader.next().toJson());
+		reader.close();
+		
+		byte[] unknownIndex = bodyFirst.clone();
+		for (int i = 0; i != unknownIndex.length - 2; ++i) {
+			if (unknownIndex[i] == (byte) 0xd4 && unknownIndex[i + 1] == MessageConstants.DICTIONARY_KEY_EXT_TYPE) {
+				unknownIndex[i + 2] = 5;
+			}
+		}
+		
+		try {
+			MessageFactory.parseBox(unknownIndex);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+			Assert.assertTrue(e.getMessage().startsWith("unknown key index 5"));
+		}
+		
+	}
+	
+	@Test
+	public void testCompressedPayload() throws IOException {
+		
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i != 500; ++i) {
+			text.append("line ").append(i % 10).append('\n');
+		}
+		
+		byte[] log = text.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] random = new byte[4096];
+		new Random(5).nextBytes(random);
+		
+		final MessageCodec codec = MessageFactory.getDeflateCodec();
+		Assert.assertSame(codec, MessageFactory.getCodec(codec.getId()));
+		
+		MessageFactory.registerCodec(codec);
+		
+		try {
+			MessageFactory.registerCodec(new MessageCodec() {
+				
+				@Override
+				public int getId() {
+					return codec.getId();
+				}
+				
+				@Override
+				public byte[] compress(byte[] data, int offset, int length) {
+					return data;
+				}
+				
+				@Override
+				public byte[] decompress(byte[] data, int offset, int length, int uncompressedLength) {
+					return data;
+				}
+				
+			});
+			Assert.fail();
+		}
+		catch(IllegalArgumentException e) {
+		}
+		
+		Assert.assertSame(codec, MessageFactory.getCodec(codec.getId()));
+		
+		MessageBox plain = MessageFactory.newBox()
+				.addPayload("log", log, false)
+				.addPayload("small", new byte[] { 1, 2, 3 }, false)
+				.addPayload("random", random, false);
+		
+		MessageBox box = MessageFactory.newBox()
+				.addPayload("log", log, codec, 1024)
+				.addPayload("small", new byte[] { 1, 2, 3 }, codec, 1024)
+				.addPayload("random", random, codec, 1024);
+		
+		byte[] blob = box.toByteArray();
+		Assert.assertTrue(blob.length < plain.toByteArray().length - log.length / 2);
+		
+		Assert.assertArrayEquals(log, box.getPayload("log", false));
+		Assert.assertEquals(plain.toJson(), box.toJson());
+		
+		for (MessageBox parsed : Arrays.asList(MessageFactory.parseBox(blob), MessageFactory.parseLazyBox(blob))) {
+			Assert.assertArrayEquals(blob, parsed.toByteArray());
+			Assert.assertArrayEquals(log, parsed.getPayload("log", true));
+			Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, parsed.getPayload("small", false));
+			Assert.assertArrayEquals(random, parsed.getPayload("random", false));
+			Assert.assertEquals(text.toString(), parsed.getPayloadUtf8("log"));
+			
+			parsed.getPayload("log", false)[0] = 'X';
+			byte[] edited = parsed.toByteArray();
+			Assert.assertTrue(edited.length < plain.toByteArray().length - log.length / 2);
+			Assert.assertEquals('X', MessageFactory.parseBox(edited).getPayload("log", false)[0]);
+		}
+		
+		Assert.assertEquals(plain.toJson(), MessageFactory.toBoxJson(blob));
+		
+		byte[] compressed = codec.compress(log, 0, log.length);
+		
+		for (int forged : new int[] { Integer.MAX_VALUE, log.length + 1, log.length - 1 }) {
+			try {
+				codec.decompress(compressed, 0, compressed.length, forged);
+				Assert.fail();
+			}
+			catch(MessageBoxException e) {
+			}
+		}
+		
+		byte[] payload = new byte[compressed.length + 6];
+		payload[0] = (byte) codec.getId();
+		payload[1] = payload[2] = payload[3] = payload[4] = (byte) 0xFF;
+		payload[5] = 0x07;
+		System.arraycopy(compressed, 0, payload, 6, compressed.length);
+		
+		try {
+			ArrayBufferOutput out = new ArrayBufferOutput();
+			MessagePacker packer = MessagePack.newDefaultPacker(out);
+			packer.packMapHeader(1).packString(MessageConstants.BODY_KEY).packMapHeader(1).packString("log");
+			packer.packExtensionTypeHeader(MessageConstants.COMPRESSED_EXT_TYPE, payload.length).writePayload(payload);
+			packer.flush();
+			MessageFactory.parseBox(out.toByteArray()).getPayload("log", false);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+		
+	}
+	
+	@Test
+	public void testInternedHeaders() {
+		
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("tenant", "acme")
+				.addHeader("trace", "0123456789abcdef0123456789abcdef0123456789abcdef");
+		
+		byte[] blob = box.toByteArray();
+		
+		Map<String, String> first = MessageFactory.parseHeaders(blob);
+		Map<String, String> second = MessageFactory.parseHeaders(blob);
+		
+		Assert.assertEquals("acme", first.get("tenant"));
+		Assert.assertEquals(first, second);
+		
+		Assert.assertSame(key(first, "tenant"), key(second, "tenant"));
+		Assert.assertSame(first.get("tenant"), second.get("tenant"));
+		
+		Assert.assertNotSame(first.get("trace"), second.get("trace"));
+		
+		MessageBox parsed = MessageFactory.parseBox(ByteBuffer.wrap(blob));
+		Assert.assertSame(first.get("tenant"), parsed.getHeader("tenant"));
+		
+	}
+	
+	private static String key(Map<String, String> map, String key) {
+		for (String k : map.keySet()) {
+			if (k.equals(key)) {
+				return k;
+			}
+		}
+		return null;
+	}
+	
+	@Test
+	public void testParseHeaders() throws IOException {
+		
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("id", "123")
+				.addHeader("type", "event")
+				.addPayload("blob", new byte[100000], false);
+		
+		byte[] blob = box.toByteArray();
+		
+		Map<String, String> headers = MessageFactory.parseHeaders(blob);
+		Assert.assertEquals(2, headers.size());
+		Assert.assertEquals("123", headers.get("id"));
+		Assert.assertEquals("event", headers.get("type"));
+		
+		try {
+			headers.put("id", "456");
+			Assert.fail();
+		}
+		catch(UnsupportedOperationException e) {
+		}
+		
+		Assert.assertEquals(headers, MessageFactory.parseHeaders(ByteBuffer.wrap(blob)));
+		Assert.assertTrue(MessageFactory.parseHeaders(MessageFactory.newBox().addPayloadUtf8("a", "b").toByteArray()).isEmpty());
+		Assert.assertTrue(MessageFactory.parseHeaders(new byte[0]).isEmpty());
+		
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packMapHeader(2);
+		packer.packString(MessageConstants.BODY_KEY).packMapHeader(1).packString("a").packString("b");
+		packer.packString(MessageConstants.HEADER_KEY).packMapHeader(1).packString("id").packString("1");
+		box.writeTo(packer);
+		packer.flush();
+		
+		byte[] bodyFirst = out.toByteArray();
+		Assert.assertEquals("1", MessageFactory.parseHeaders(bodyFirst).get("id"));
+		
+		MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bodyFirst);
+		Assert.assertEquals("1", MessageFactory.parseHeaders(unpacker).get("id"));
+		Assert.assertEquals(headers, MessageFactory.parseHeaders(unpacker));
+		Assert.assertFalse(unpacker.hasNext());
+		
+	}
+	
+	@Test
+	public void testLazyEmpty() {
+		
+		byte[] msgpack = MessageFactory.newBox().toByteArray();
+		
+		MessageBox actual = MessageFactory.parseLazyBox(msgpack);
+		Assert.assertTrue(actual.isEmpty());
+		Assert.assertTrue(Arrays.equals(msgpack, actual.toByteArray()));
+		
+	}
+	
+	@Test
+	public void testLazy() {
+		
+		MessageTable payload = new MessageTableImpl();
+		payload.put("name", "Bob");
+		
+		byte[] blob = "{}".getBytes(StandardCharsets.UTF_8);
+		
+		MessageBox message = MessageFactory.newBox()
+		.addHeader("id", "123")
+		.addPayloadUtf8("json", "{}")
+		.addPayload("blob", blob, false)
+		.addPayload("payload", payload);
+		
+		byte[] msgpack = message.toByteArray();
+		
+		byte[] buffer = new byte[msgpack.length + 10];
+		System.arraycopy(msgpack, 0, buffer, 5, msgpack.length);
+		
+		MessageBox actual = MessageFactory.parseLazyBox(buffer, 5, msgpack.length);
+		
+		Assert.assertEquals("123", actual.getHeader("id"));
+		Assert.assertEquals("{}", actual.getPayloadUtf8("json"));
+		Assert.assertTrue(Arrays.equals(blob, actual.getPayload("blob", false)));
+		
+		MessageTable actualPayload = actual.getTypedPayload("payload");
+		Assert.assertEquals("Bob", actualPayload.getStringUtf8("name"));
+		
+		Assert.assertEquals(message.getPayloadKeys(), actual.getPayloadKeys());
+		Assert.assertEquals(message.toJson(), actual.toJson());
+		
+		actual.addHeader("url", "www").addPayloadUtf8("json", null);
+		
+		MessageBox copy = MessageFactory.parseBox(actual.toByteArray());
+		Assert.assertEquals("123", copy.getHeader("id"));
+		Assert.assertEquals("www", copy.getHeader("url"));
+		Assert.assertNull(copy.getPayloadUtf8("json"));
+		Assert.assertEquals("Bob", copy.<MessageTable>getTypedPayload("payload").getStringUtf8("name"));
+		
+	}
+	
+	@Test
+	public void testLazyByteBuffer() {
+		
+		byte[] msgpack = MessageFactory.newBox()
+		.addHeader("id", "123")
+		.addPayloadUtf8("json", "{}")
+		.toByteArray();
+		
+		ByteBuffer buffer = ByteBuffer.allocate(msgpack.length + 3);
+		buffer.position(3);
+		buffer.put(msgpack).position(3);
+		
+		MessageBox actual = MessageFactory.parseLazyBox(buffer);
+		Assert.assertEquals("123", actual.getHeader("id"));
+		Assert.assertEquals("{}", actual.getPayloadUtf8("json"));
+		
+	}
+	
+	@Test
+	public void testLazyPassThrough() throws IOException {
+		
+		// int64 encoding of 5 is not the one the packer would choose
+		byte[] number = new byte[] { -45, 0, 0, 0, 0, 0, 0, 0, 5 };
+		
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packMapHeader(2);
+		packer.packString(MessageConstants.HEADER_KEY);
+		packer.packMapHeader(1).packString("id").packString("123");
+		packer.packString(MessageConstants.BODY_KEY);
+		packer.packMapHeader(1).packString("number");
+		packer.writePayload(number);
+		packer.flush();
+		
+		byte[] msgpack = out.toByteArray();
+		
+		MessageBox actual = MessageFactory.parseLazyBox(msgpack);
+		Assert.assertTrue(Arrays.equals(msgpack, actual.toByteArray()));
+
+		actual.addHeader("trace", "abc");
+		Assert.assertEquals("5", actual.getPayloadUtf8("number"));
+		
+		byte[] enriched = actual.toByteArray();
+		Assert.assertTrue(contains(enriched, number));
+		
+		MessageBox copy = MessageFactory.parseBox(enriched);
+		Assert.assertEquals("123", copy.getHeader("id"));
+		Assert.assertEquals("abc", copy.getHeader("trace"));
+		Assert.assertEquals(5L, ((MessageNumber) copy.getPayload("number")).asLong());
+		
+		actual.getPayload("number");
+		Assert.assertFalse(contains(actual.toByteArray(), number));
+		
+	}
+	
+	@Test
+	public void testLazyEmptyMapFormats() throws IOException {
+		
+		byte[] expected = MessageFactory.newBox().addHeader("id", "123").toByteArray();
+		
+		byte[][] emptyMaps = new byte[][] {
+				{ (byte) 0xde, 0, 0 },
+				{ (byte) 0xdf, 0, 0, 0, 0 }
+		};
+		
+		for (byte[] emptyMap : emptyMaps) {
+			
+			ArrayBufferOutput out = new ArrayBufferOutput();
+			MessagePacker packer = MessagePack.newDefaultPacker(out);
+			packer.packMapHeader(2);
+			packer.packString(MessageConstants.HEADER_KEY);
+			packer.packMapHeader(1).packString("id").packString("123");
+			packer.packString(MessageConstants.BODY_KEY);
+			packer.writePayload(emptyMap);
+			packer.flush();
+			
+			MessageBox actual = MessageFactory.parseLazyBox(out.toByteArray());
+			Assert.assertTrue(Arrays.equals(expected, actual.toByteArray()));
+			
+		}
+	
+	}
+	
+	private static boolean contains(byte[] array, byte[] subarray) {
+		for (int i = 0; i <= array.length - subarray.length; ++i) {
+			if (Arrays.equals(subarray, Arrays.copyOfRange(array, i, i + subarray.length))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 }
@@ -0,0 +1,188 @@
+package microevents.msgbox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.impl.MessageValueExpressionImpl;
+
+/**
+ * MessageDeserializerTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageDeserializerTest {
+
+	@Test
+	public void testReuse() {
+
+		MessageDeserializer deserializer = MessageFactory.newDeserializer();
+
+		for (int i = 0; i != 10; ++i) {
+
+			MessageBox box = MessageFactory.newBox()
+					.addHeader("id", Integer.toString(i))
+					.addPayloadUtf8("name", "name" + i);
+
+			byte[] blob = box.toByteArray();
+
+			byte[] padded = new byte[blob.length + 4];
+			System.arraycopy(blob, 0, padded, 2, blob.length);
+
+			Assert.assertEquals(box.toJson(), deserializer.parseBox(blob).toJson());
+			Assert.assertEquals(box.toJson(), deserializer.parseBox(padded, 2, blob.length).toJson());
+			Assert.assertEquals(box.toJson(), deserializer.parseBox(ByteBuffer.wrap(padded, 2, blob.length)).toJson());
+
+		}
+
+	}
+
+	@Test
+	public void testDirectBuffer() {
+
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("id", "123")
+				.addPayload("blob", new byte[100000], false);
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(200000);
+		box.writeTo(buffer);
+		buffer.flip();
+
+		Assert.assertEquals(box.toJson(), MessageFactory.newDeserializer().parseBox(buffer).toJson());
+		Assert.assertEquals(box.toJson(), MessageFactory.parseLazyBox(buffer).toJson());
+
+	}
+
+	@Test
+	public void testValue() {
+
+		MessageDeserializer deserializer = MessageFactory.newDeserializer();
+
+		MessageTable table = new MessageTableImpl();
+		table.put("name", "Alex");
+		table.putLong("age", 30);
+
+		byte[] blob = table.toByteArray();
+
+		Assert.assertEquals(table.toJson(), deserializer.newValue(blob).toJson());
+		Assert.assertEquals(table.toJson(), deserializer.newValue(ByteBuffer.wrap(blob)).toJson());
+		Assert.assertNull(deserializer.newValue(new byte[0]));
+
+	}
+
+	@Test
+	public void testAfterFailure() {
+
+		MessageDeserializer deserializer = MessageFactory.newDeserializer();
+
+		MessageBox box = MessageFactory.newBox().addHeader("id", "123");
+		byte[] blob = box.toByteArray();
+
+		try {
+			deserializer.parseBox(blob, 0, blob.length - 1);
+			Assert.fail();
+		}
+		catch(RuntimeException e) {
+		}
+
+		Assert.assertEquals(box.toJson(), deserializer.parseBox(blob).toJson());
+
+	}
+
+	@Test
+	public void testPath() {
+
+		MessageDeserializer deserializer = MessageFactory.newDeserializer();
+
+		MessageTable point = new MessageTableImpl();
+		point.putLong("x", 1);
+		point.putLong("y", 2);
+
+		MessageTable points = new MessageTableImpl();
+		points.put(0, point);
+		points.put(1, "none");
+		points.put(2, point);
+
+		MessageTable ids = new MessageTableImpl();
+		ids.putString("5", "five");
+		ids.put(7, "seven");
+
+		MessageTable table = new MessageTableImpl();
+		table.put("name", "Alex");
+		table.put("points", points);
+		table.put("ids", ids);
+		table.putLong("age", 30);
+
+		byte[] blob = table.toByteArray();
+
+		for (String path : Arrays.asList("name", "age", "points", "points[2].y", "points[1]", "ids[5]", "ids[7]", "ids")) {
+			MessageValueExpression ve = new MessageValueExpressionImpl(path);
+			Assert.assertEquals(path, table.get(ve).toJson(), deserializer.getValue(blob, ve).toJson());
+			Assert.assertEquals(path, table.get(ve).toJson(), MessageFactory.getValue(ByteBuffer.wrap(blob), ve).toJson());
+		}
+
+		for (String path : Arrays.asList("nick", "points[3]", "points[1].x", "name.first", "age[0]", "ids[6]")) {
+			Assert.assertNull(path, deserializer.getValue(blob, new MessageValueExpressionImpl(path)));
+		}
+
+		Assert.assertEquals(table.toJson(), deserializer.getValue(blob, new MessageValueExpressionImpl("")).toJson());
+
+	}
+
+	@Test
+	public void testBoxPath() {
+
+		MessageDictionary dictionary = MessageFactory.newDictionary(1021, Arrays.asList("sku", "items"));
+
+		MessageTable item = new MessageTableImpl();
+		item.putString("sku", "A-1");
+
+		MessageTable items = new MessageTableImpl();
+		items.put(0, item);
+
+		MessageTable order = new MessageTableImpl();
+		order.putLong("amount", 1500);
+		order.put("items", items);
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i != 200; ++i) {
+			text.append("line ").append(i).append('\n');
+		}
+		byte[] log = text.toString().getBytes(StandardCharsets.UTF_8);
+
+		MessageBox plain = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addPayload("order", order)
+				.addPayload("log", log, MessageFactory.getDeflateCodec(), 128);
+
+		MessageBox encoded = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addPayload("order", order)
+				.setDictionary(dictionary);
+
+		for (MessageBox box : Arrays.asList(plain, encoded)) {
+
+			byte[] blob = box.toByteArray();
+
+			Assert.assertEquals("order", MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("header.type")).asString());
+			Assert.assertEquals("A-1", MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("body.order.items[0].sku")).asString());
+			Assert.assertEquals(1500L, ((MessageNumber) MessageFactory.getBoxValue(ByteBuffer.wrap(blob), new MessageValueExpressionImpl("body.order.amount"))).asLong());
+			Assert.assertEquals(order.toJson(), MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("body.order")).toJson());
+
+			Assert.assertNull(MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("header.id")));
+			Assert.assertNull(MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("body.order.items[1]")));
+			Assert.assertNull(MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("order.amount")));
+		}
+
+		byte[] blob = plain.toByteArray();
+		Assert.assertArrayEquals(log, ((MessageString) MessageFactory.getBoxValue(blob, new MessageValueExpressionImpl("body.log"))).getBytes(true));
+
+	}
+
+}
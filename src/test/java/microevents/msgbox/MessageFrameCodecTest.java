@@ -0,0 +1,158 @@
+package microevents.msgbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import microevents.msgbox.support.MessageBoxException;
+import microevents.msgbox.util.MessageCrc32cUtil;
+
+/**
+ * MessageFrameCodecTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageFrameCodecTest {
+
+	@Test
+	public void testCrc32c() {
+
+		byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+		Assert.assertEquals(0xE3069283, MessageCrc32cUtil.crc32c(check, 0, check.length));
+		Assert.assertEquals(0xE3069283, MessageCrc32cUtil.crc32c(ByteBuffer.wrap(check)));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(check.length);
+		direct.put(check).flip();
+		Assert.assertEquals(0xE3069283, MessageCrc32cUtil.crc32c(direct));
+
+		int crc = MessageCrc32cUtil.update(0, check, 0, 4);
+		Assert.assertEquals(0xE3069283, MessageCrc32cUtil.update(crc, check, 4, 5));
+
+		Assert.assertEquals(0, MessageCrc32cUtil.crc32c(check, 0, 0));
+
+	}
+
+	@Test
+	public void testEmpty() {
+
+		MessageFrameCodec codec = MessageFactory.newFrameCodec(true);
+
+		byte[] frames = codec.encode(Collections.<MessageBox>emptyList());
+		Assert.assertEquals(0, frames.length);
+		Assert.assertTrue(codec.decode(frames).isEmpty());
+
+	}
+
+	@Test
+	public void testBatch() throws IOException {
+
+		List<MessageBox> boxes = newBoxes();
+
+		for (boolean checksum : new boolean[] { false, true }) {
+
+			MessageFrameCodec codec = MessageFactory.newFrameCodec(checksum);
+			Assert.assertEquals(checksum, codec.hasChecksum());
+
+			byte[] frames = codec.encode(boxes);
+			assertBoxes(boxes, codec.decode(frames));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			codec.encode(boxes, out);
+			Assert.assertArrayEquals(frames, out.toByteArray());
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(frames.length + 1);
+			direct.put((byte) 0);
+			Assert.assertEquals(frames.length, codec.encode(boxes, direct));
+			direct.flip().position(1);
+			assertBoxes(boxes, codec.decode(direct));
+			Assert.assertFalse(direct.hasRemaining());
+
+		}
+
+	}
+
+	@Test
+	public void testCorrupted() {
+
+		List<MessageBox> boxes = newBoxes();
+
+		MessageFrameCodec codec = MessageFactory.newFrameCodec(true);
+		byte[] frames = codec.encode(boxes);
+
+		try {
+			codec.decode(frames, 0, frames.length - 1);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+
+		frames[frames.length / 2] ^= 1;
+
+		try {
+			codec.decode(frames);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+		}
+
+		byte[] box = MessageFactory.newBox().addHeader("id", "1").toByteArray();
+
+		byte[] frame = new byte[box.length + 2];
+		frame[0] = (byte) (box.length + 1);
+		System.arraycopy(box, 0, frame, 1, box.length);
+		frame[frame.length - 1] = (byte) 0xC0;
+
+		try {
+			MessageFactory.newFrameCodec(false).decode(frame);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+			Assert.assertEquals("invalid frame at offset 0", e.getMessage());
+		}
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(frame.length);
+		direct.put(frame).flip();
+
+		try {
+			MessageFactory.newFrameCodec(false).decode(direct);
+			Assert.fail();
+		}
+		catch(MessageBoxException e) {
+			Assert.assertEquals("invalid frame at offset 0", e.getMessage());
+		}
+
+	}
+
+	private static List<MessageBox> newBoxes() {
+
+		List<MessageBox> boxes = new ArrayList<MessageBox>();
+
+		for (int i = 0; i != 20; ++i) {
+			boxes.add(MessageFactory.newBox()
+					.addHeader("id", Integer.toString(i))
+					.addPayload("blob", new byte[i * i * 100], false));
+		}
+
+		return boxes;
+	}
+
+	private static void assertBoxes(List<MessageBox> expected, List<MessageBox> actual) {
+
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i != expected.size(); ++i) {
+			Assert.assertEquals(expected.get(i).toJson(), actual.get(i).toJson());
+		}
+
+	}
+
+}
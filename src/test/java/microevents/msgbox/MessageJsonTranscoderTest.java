@@ -0,0 +1,200 @@
+package microevents.msgbox;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.ArrayBufferOutput;
+
+import microevents.msgbox.impl.MessageTableImpl;
+
+/**
+ * MessageJsonTranscoderTest
+ *
+ * Transcoded json must be the same as json of the parsed message
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageJsonTranscoderTest {
+
+	@Test
+	public void testEmpty() {
+
+		assertBoxJson(MessageFactory.newBox().toByteArray());
+		assertBoxJson(new byte[0]);
+		assertBoxJson(new byte[] { -64 });
+
+	}
+
+	@Test
+	public void testBox() {
+
+		MessageTable inner = new MessageTableImpl();
+		inner.put("first", "Alex\n");
+
+		MessageTable payload = new MessageTableImpl();
+		payload.put("name", inner);
+
+		assertBoxJson(MessageFactory.newBox().addHeader("id", "\"123\"").toByteArray());
+		assertBoxJson(MessageFactory.newBox().addPayloadUtf8("json", "{}").toByteArray());
+		assertBoxJson(MessageFactory.newBox().addPayload("blob", new byte[] { 'a', -1 }, false).toByteArray());
+		assertBoxJson(MessageFactory.newBox().addHeader("id", "123").addPayload("payload", payload).toByteArray());
+
+	}
+
+	@Test
+	public void testIntKeys() {
+
+		MessageTable table = new MessageTableImpl();
+		table.put(7, "seven");
+
+		MessageTable mixed = new MessageTableImpl();
+		mixed.put("name", table);
+
+		assertBoxJson(MessageFactory.newBox().addPayload("table", table).toByteArray());
+		assertBoxJson(MessageFactory.newBox().addPayload("mixed", mixed).toByteArray());
+
+	}
+
+	@Test
+	public void testDropped() throws IOException {
+
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packMapHeader(2);
+		packer.packString(MessageConstants.HEADER_KEY).packMapHeader(0);
+		packer.packString(MessageConstants.BODY_KEY).packMapHeader(3);
+		packer.packString("nil").packNil();
+		packer.packString("ext").packExtensionTypeHeader((byte) 1, 1).writePayload(new byte[] { 1 });
+		packer.packString("array").packArrayHeader(3).packNil().packDouble(1.5).packBoolean(true);
+		packer.flush();
+
+		byte[] msgpack = out.toByteArray();
+
+		Assert.assertEquals("{\"body\":{\"array\":{\"1\":1.5,\"2\":true}}}", MessageFactory.toBoxJson(msgpack));
+		assertBoxJson(msgpack);
+
+	}
+
+	@Test
+	public void testArray() throws IOException {
+
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+
+		packer.packArrayHeader(0);
+		packer.flush();
+		assertArrayJson("{}", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packArrayHeader(2).packLong(1).packArrayHeader(2).packString("a").packString("b");
+		packer.flush();
+		assertArrayJson("[1,[\"a\",\"b\"]]", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packArrayHeader(3).packArrayHeader(1).packNil().packNil().packLong(3);
+		packer.flush();
+		assertArrayJson("{\"0\":{},\"2\":3}", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packArrayHeader(4).packLong(1).packArrayHeader(2).packString("a").packNil().packNil().packArrayHeader(1).packLong(4);
+		packer.flush();
+		assertArrayJson("{\"0\":1,\"1\":[\"a\"],\"3\":[4]}", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packArrayHeader(Integer.MAX_VALUE).packNil();
+		packer.flush();
+
+		try {
+			MessageFactory.writeValueJson(out.toByteArray(), 0, out.getSize(), new StringBuilder());
+			Assert.fail("expected exception");
+		}
+		catch(Exception e) {
+			// truncated array, the header size is not allocated
+		}
+
+	}
+
+	@Test
+	public void testIntKeyMap() throws IOException {
+
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+
+		packer.packMapHeader(3).packInt(1).packString("b").packInt(0).packString("a").packInt(2).packMapHeader(1).packString("0").packLong(5);
+		packer.flush();
+		assertArrayJson("[\"a\",\"b\",[5]]", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packMapHeader(3).packInt(0).packString("a").packInt(2).packNil().packInt(1).packString("b");
+		packer.flush();
+		assertArrayJson("[\"a\",\"b\"]", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packMapHeader(2).packInt(0).packString("a").packInt(2).packString("c");
+		packer.flush();
+		assertArrayJson("{\"0\":\"a\",\"2\":\"c\"}", out.toByteArray());
+
+		out.clear();
+		packer.reset(out);
+		packer.packMapHeader(2).packInt(0).packString("a").packString("name").packMapHeader(1).packInt(0).packLong(1);
+		packer.flush();
+		assertArrayJson("{\"0\":\"a\",\"name\":[1]}", out.toByteArray());
+
+		MessageTable table = new MessageTableImpl();
+		table.put(0, "zero");
+		table.put(1, "one");
+
+		MessageTable mixed = new MessageTableImpl();
+		mixed.put("name", table);
+
+		assertBoxJson(MessageFactory.newBox().addPayload("table", table).addPayload("mixed", mixed).toByteArray());
+
+	}
+
+	private static void assertArrayJson(String expected, byte[] array) throws IOException {
+
+		StringBuilder json = new StringBuilder();
+		MessageFactory.writeValueJson(array, 0, array.length, json);
+
+		Assert.assertEquals(expected, json.toString());
+		Assert.assertEquals(MessageFactory.newValue(array).toJson(), json.toString());
+
+		StringWriter writer = new StringWriter();
+		MessageFactory.writeValueJson(array, 0, array.length, writer);
+
+		Assert.assertEquals(expected, writer.toString());
+
+	}
+
+	@Test
+	public void testValue() throws IOException {
+
+		MessageTable table = new MessageTableImpl();
+		table.putLong(1, -5);
+
+		byte[] msgpack = table.toByteArray();
+
+		StringBuilder json = new StringBuilder();
+		MessageFactory.writeValueJson(msgpack, 0, msgpack.length, json);
+
+		Assert.assertEquals(table.toJson(), json.toString());
+
+	}
+
+	private static void assertBoxJson(byte[] msgpack) {
+		Assert.assertEquals(MessageFactory.parseBox(msgpack).toJson(), MessageFactory.toBoxJson(msgpack));
+	}
+
+}
@@ -0,0 +1,153 @@
+package microevents.msgbox;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import microevents.msgbox.impl.MessageBooleanImpl;
+import microevents.msgbox.impl.MessageNumberImpl;
+import microevents.msgbox.impl.MessageStringImpl;
+import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.util.MessageJsonUtil;
+
+/**
+ * MessageJsonUtilTest
+ *
+ * Streaming json must be the same as msgpack Value json
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageJsonUtilTest {
+
+	private static final String SPECIAL = "a\"\\/\b\f\n\r\t\u0001\u001f\u007f é 😀";
+
+	@Test
+	public void testString() throws IOException {
+
+		StringBuilder out = new StringBuilder();
+		MessageJsonUtil.writeString(out, SPECIAL);
+
+		Assert.assertEquals(new MessageStringImpl(SPECIAL).toValue().toJson(), out.toString());
+		Assert.assertEquals("\"a\\\"\\\\/\\b\\f\\n\\r\\t\\u0001\\u001F\u007f é \\uD83D\\uDE00\"", out.toString());
+
+	}
+
+	@Test
+	public void testUtf8() throws IOException {
+
+		byte[] special = SPECIAL.getBytes(StandardCharsets.UTF_8);
+		assertUtf8(special);
+
+		byte[][] malformed = {
+				{ (byte) 0x80 }, { (byte) 0xC0, (byte) 0xAF }, { (byte) 0xC3 }, { (byte) 0xE2, (byte) 0x82 },
+				{ (byte) 0xE0, (byte) 0x80, (byte) 0x80 }, { (byte) 0xED, (byte) 0xA0, (byte) 0x80 },
+				{ (byte) 0xF0, (byte) 0x9F, (byte) 0x98 }, { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 },
+				{ (byte) 0xF0, (byte) 0x9D, (byte) 0xA0, (byte) 0x80 }, { (byte) 0xF8, 'a' }, { (byte) 0xE2, 'a', (byte) 0x82, (byte) 0xAC } };
+
+		for (byte[] bytes : malformed) {
+			assertUtf8(bytes);
+		}
+
+		Random random = new Random(5);
+		byte[] bytes = new byte[16];
+
+		for (int i = 0; i != 10000; ++i) {
+			random.nextBytes(bytes);
+			assertUtf8(bytes);
+		}
+
+		StringBuilder out = new StringBuilder();
+		MessageJsonUtil.writeUtf8(out, special, 1, 3);
+		Assert.assertEquals("\"\\\"\\\\/\"", out.toString());
+
+	}
+
+	private static void assertUtf8(byte[] bytes) throws IOException {
+
+		StringBuilder expected = new StringBuilder();
+		MessageJsonUtil.writeString(expected, new String(bytes, StandardCharsets.UTF_8));
+
+		StringBuilder actual = new StringBuilder();
+		MessageJsonUtil.writeUtf8(actual, bytes, 0, bytes.length);
+
+		Assert.assertEquals(Arrays.toString(bytes), expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testSimpleValues() {
+
+		assertJson(new MessageStringImpl(""));
+		assertJson(new MessageStringImpl(SPECIAL));
+		assertJson(new MessageStringImpl(new byte[] { -16, -97, -104, -128, -61, 'x', -128 }, false));
+		assertJson(new MessageBooleanImpl(true));
+		assertJson(new MessageBooleanImpl(false));
+		assertJson(new MessageNumberImpl(-123L));
+		assertJson(new MessageNumberImpl(Long.MAX_VALUE));
+		assertJson(new MessageNumberImpl(1.5E20));
+		assertJson(new MessageNumberImpl(Double.NaN));
+		assertJson(new MessageNumberImpl(Double.NEGATIVE_INFINITY));
+
+	}
+
+	@Test
+	public void testTable() {
+
+		MessageTable table = new MessageTableImpl();
+		assertJson(table);
+
+		table.put(1, "one");
+		table.put(2, "2.5");
+		assertJson(table);
+
+		MessageTable inner = new MessageTableImpl();
+		inner.put("name", SPECIAL);
+		inner.putBytes("blob", new byte[] { 1, 2, 3 }, false);
+		inner.putBoolean("flag", true);
+		inner.put("list", table);
+
+		MessageTable outer = new MessageTableImpl();
+		outer.put("inner", inner);
+		outer.put(SPECIAL, "special key");
+		assertJson(outer);
+
+	}
+
+	@Test
+	public void testBox() throws IOException {
+
+		MessageBox box = MessageFactory.newBox();
+		Assert.assertEquals(box.toValue().toJson(), box.toJson());
+
+		box.addHeader("id", SPECIAL);
+		Assert.assertEquals(box.toValue().toJson(), box.toJson());
+
+		MessageTable table = new MessageTableImpl();
+		table.put("name", "Bob");
+
+		box
+		.addPayloadUtf8("json", "{}")
+		.addPayload("blob", new byte[] { 'a', 'b' }, false)
+		.addPayload("table", table);
+		Assert.assertEquals(box.toValue().toJson(), box.toJson());
+
+		StringWriter writer = new StringWriter();
+		box.writeJsonTo(writer);
+		Assert.assertEquals(box.toValue().toJson(), writer.toString());
+
+		MessageBox lazy = MessageFactory.parseLazyBox(box.toByteArray());
+		Assert.assertEquals(MessageFactory.parseBox(box.toByteArray()).toJson(), lazy.toJson());
+
+	}
+
+	private static void assertJson(MessageValue<?> value) {
+		Assert.assertEquals(value.toValue().toJson(), value.toJson());
+	}
+
+}
@@ -0,0 +1,243 @@
+package microevents.msgbox;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.support.MessageParseException;
+
+/**
+ * MessagePredicateTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessagePredicateTest {
+
+	private static byte[] newOrder(String type, long amount) {
+
+		MessageTable item = new MessageTableImpl();
+		item.putString("sku", "A-1");
+
+		MessageTable items = new MessageTableImpl();
+		items.put(0, item);
+
+		MessageTable order = new MessageTableImpl();
+		order.putLong("amount", amount);
+		order.putDouble("rate", 1.5);
+		order.putBoolean("paid", true);
+		order.put("items", items);
+
+		return MessageFactory.newBox()
+				.addHeader("type", type)
+				.addHeader("priority", "3")
+				.addHeader("urgent", "true")
+				.addPayload("order", order)
+				.toByteArray();
+	}
+
+	@Test
+	public void testCompare() {
+
+		byte[] order = newOrder("order", 1500);
+		byte[] small = newOrder("order", 500);
+		byte[] refund = newOrder("refund", 1500);
+
+		MessagePredicate predicate = MessageFactory.newPredicate("header.type == \"order\" && body.order.amount > 1000");
+
+		Assert.assertTrue(predicate.test(order));
+		Assert.assertTrue(predicate.test(ByteBuffer.wrap(order)));
+		Assert.assertFalse(predicate.test(small));
+		Assert.assertFalse(predicate.test(refund));
+
+		for (String condition : Arrays.asList(
+				"body.order.amount >= 1500",
+				"body.order.amount <= 1500.0",
+				"body.order.amount != 1",
+				"body.order.rate < 2",
+				"body.order.rate == 1.5",
+				"header.priority > 2",
+				"header.type < \"p\"",
+				"body.order.items[0].sku == \"A-1\"",
+				"body.order.paid",
+				"body.order.paid == true",
+				"header.urgent",
+				"header.urgent == true",
+				"header.id == null",
+				"body.order != null",
+				"!(header.type == \"refund\")",
+				"header.type == \"refund\" || body.order.amount == 1500",
+				"(header.type == \"refund\" || header.type == \"order\") && !body.order.missing")) {
+			Assert.assertTrue(condition, MessageFactory.newPredicate(condition).test(order));
+		}
+
+		for (String condition : Arrays.asList(
+				"body.order.amount > 1500",
+				"body.order.amount == \"x\"",
+				"body.order.missing > 1",
+				"header.type > 1",
+				"header.id != null",
+				"body.order == null",
+				"body.order.paid == false",
+				"body.order == \"order\"",
+				"header.type == \"order\" && body.order.amount < 1000")) {
+			Assert.assertFalse(condition, MessageFactory.newPredicate(condition).test(order));
+		}
+
+	}
+
+	@Test
+	public void testOperators() {
+
+		byte[] order = newOrder("order", 1500);
+
+		String a = "header.type == \"order\"";
+		String b = "header.type == \"refund\"";
+		String c = "body.order.amount > 5000";
+
+		assertConditions(order, true,
+				a + " || " + b + " && " + c,
+				b + " && " + c + " || " + a,
+				"((" + a + "))",
+				"!" + b,
+				"!!" + a,
+				"! " + b + " && !" + c,
+				"!(" + a + " && " + c + ")",
+				"!header.missing",
+				"header.missing == null",
+				"body.order.items[5].sku == null",
+				"body.order.paid != false",
+				"body.order.amount != true",
+				"header.urgent == true",
+				"header.priority == 3",
+				"header.priority == \"3\"",
+				"header.priority > 2.5",
+				"body.order.amount == \"1500\"",
+				"body.order.rate == \"1.5\"",
+				"header.type != 3");
+
+		assertConditions(order, false,
+				"(" + a + " || " + b + ") && " + c,
+				"!" + a + " || " + c,
+				"!(" + a + ")",
+				"header.missing",
+				"header.missing != null",
+				"body.order.amount == null",
+				"body.order.amount == true",
+				"header.urgent == false",
+				"header.type == 3",
+				"body.order.amount > \"2\"",
+				"body.missing.deep > 1",
+				"body.missing.deep == \"x\"");
+
+	}
+
+	@Test
+	public void testNotEqual() {
+
+		byte[] order = newOrder("order", 1500);
+
+		assertConditions(order, true,
+				"header.missing != 1",
+				"header.missing != \"x\"",
+				"header.missing != true",
+				"body.missing.deep != 1.5",
+				"!(header.missing == 1)",
+				"!(header.missing > 1)",
+				"!(header.missing <= 1)",
+				"body.order != 1",
+				"body.order != \"order\"",
+				"header.type != 1",
+				"header.type != true",
+				"!(body.order == 1)",
+				"!(header.type == true)",
+				"!(header.type < 1)");
+
+		assertConditions(order, false,
+				"header.missing == 1",
+				"header.missing == true",
+				"header.missing >= 1",
+				"header.missing < \"x\"",
+				"!(header.missing != 1)",
+				"body.order == 1",
+				"body.order > \"a\"",
+				"header.type == true",
+				"header.type >= 1",
+				"header.type <= 1",
+				"!(header.type != 1)",
+				"!(body.order != \"order\")");
+
+	}
+
+	private static void assertConditions(byte[] blob, boolean expected, String... conditions) {
+		for (String condition : conditions) {
+			MessagePredicate predicate = MessageFactory.newPredicate(condition);
+			Assert.assertEquals(condition, expected, predicate.test(blob));
+			Assert.assertEquals(condition, expected, predicate.test(ByteBuffer.wrap(blob)));
+			Assert.assertEquals(condition, predicate.toString());
+		}
+	}
+
+	@Test
+	public void testShortCircuit() {
+
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("type", "refund")
+				.addPayload("order", new MessageTableImpl());
+
+		byte[] blob = box.toByteArray();
+		byte[] truncated = Arrays.copyOf(blob, blob.length - 1);
+
+		Assert.assertFalse(MessageFactory.newPredicate("header.type == \"order\" && body.order.amount > 1000").test(truncated));
+		Assert.assertTrue(MessageFactory.newPredicate("header.type == \"refund\" || body.order.amount > 1000").test(truncated));
+
+	}
+
+	@Test
+	public void testInvalid() {
+
+		for (String condition : Arrays.asList(
+				"",
+				"type == \"order\"",
+				"header.type ==",
+				"header.type == \"order",
+				"header.type == order",
+				"(header.type == \"order\"",
+				"header.type == \"order\" &&",
+				"body.order.amount > null",
+				"body.order.paid < true",
+				"header.type == \"order\" )")) {
+			try {
+				MessageFactory.newPredicate(condition);
+				Assert.fail(condition);
+			}
+			catch(MessageParseException e) {
+			}
+		}
+
+		assertError("type == \"order\"", "expected path starting from header or body at 0");
+		assertError("header.type ==", "expected literal at 14");
+		assertError("header.type == order", "expected literal at 15");
+		assertError("header.type == \"order", "unterminated string at 21");
+		assertError("(header.type == \"order\"", "expected ) at 23");
+		assertError("header.type == \"order\" )", "unexpected character at 23");
+		assertError("body.order.paid < true", "only == and != are allowed for true at 22");
+		assertError("header.urgent && && header.urgent", "expected path starting from header or body at 17");
+
+	}
+
+	private static void assertError(String condition, String message) {
+		try {
+			MessageFactory.newPredicate(condition);
+			Assert.fail(condition);
+		}
+		catch(MessageParseException e) {
+			Assert.assertEquals(message + " in condition: " + condition, e.getMessage());
+		}
+	}
+
+}
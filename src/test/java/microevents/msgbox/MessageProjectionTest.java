@@ -0,0 +1,263 @@
+package microevents.msgbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.buffer.ArrayBufferOutput;
+
+import microevents.msgbox.impl.MessageTableImpl;
+
+/**
+ * MessageProjectionTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageProjectionTest {
+
+	private static List<MessageValueExpression> expressions(String... paths) {
+		List<MessageValueExpression> list = new ArrayList<MessageValueExpression>();
+		for (String path : paths) {
+			list.add(MessageFactory.newExpression(path));
+		}
+		return list;
+	}
+
+	private static void assertValues(MessageValue<?>[] expected, MessageValue<?>[] actual) {
+		Assert.assertEquals(expected.length, actual.length);
+		for (int i = 0; i != expected.length; ++i) {
+			if (expected[i] == null) {
+				Assert.assertNull("at " + i, actual[i]);
+			}
+			else {
+				Assert.assertNotNull("at " + i, actual[i]);
+				Assert.assertEquals("at " + i, expected[i].toJson(), actual[i].toJson());
+			}
+		}
+	}
+
+	@Test
+	public void testTable() {
+
+		MessageTable point = new MessageTableImpl();
+		point.putLong("x", 1);
+		point.putLong("y", 2);
+
+		MessageTable points = new MessageTableImpl();
+		points.put(0, point);
+		points.put(1, "none");
+		points.put(2, point);
+
+		MessageTable table = new MessageTableImpl();
+		table.put("name", "Alex");
+		table.put("points", points);
+		table.putLong("age", 30);
+		table.putString("city", "SF");
+
+		MessageProjection projection = MessageFactory.newProjection(expressions(
+				"name", "points[2].y", "points[0].x", "points[1]", "points", "points[0].z", "nick", "age.x", "name", ""));
+
+		Assert.assertEquals(10, projection.size());
+		Assert.assertEquals("points[2].y", projection.get(1).toString());
+
+		MessageValue<?>[] expected = new MessageValue<?>[projection.size()];
+		for (int i = 0; i != expected.length; ++i) {
+			expected[i] = table.get(projection.get(i));
+		}
+
+		Assert.assertNull(expected[5]);
+		Assert.assertNull(expected[6]);
+
+		byte[] blob = table.toByteArray();
+
+		assertValues(expected, projection.extract(table));
+		assertValues(expected, projection.extract(blob));
+		assertValues(expected, projection.extract(ByteBuffer.wrap(blob)));
+
+		assertValues(new MessageValue<?>[projection.size()], projection.extract(new byte[0]));
+
+	}
+
+	@Test
+	public void testBox() {
+
+		MessageDictionary dictionary = MessageFactory.newDictionary(1023, Arrays.asList("sku", "amount"));
+
+		MessageTable item = new MessageTableImpl();
+		item.putString("sku", "A-1");
+
+		MessageTable items = new MessageTableImpl();
+		items.put(0, item);
+
+		MessageTable order = new MessageTableImpl();
+		order.putLong("amount", 1500);
+		order.put("items", items);
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i != 200; ++i) {
+			text.append("line ").append(i).append('\n');
+		}
+		byte[] log = text.toString().getBytes(StandardCharsets.UTF_8);
+
+		MessageBox plain = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addHeader("tenant", "acme")
+				.addPayload("order", order)
+				.addPayload("log", log, MessageFactory.getDeflateCodec(), 128);
+
+		MessageBox encoded = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addPayload("order", order)
+				.addPayload("log", log, false)
+				.setDictionary(dictionary);
+
+		MessageProjection projection = MessageFactory.newProjection(expressions(
+				"header.type", "body.order.amount", "body.order.items[0].sku", "body.log", "header.id", "body.order.items[1]", "order", "header"));
+
+		for (MessageBox box : Arrays.asList(plain, encoded)) {
+
+			byte[] blob = box.toByteArray();
+
+			MessageValue<?>[] expected = new MessageValue<?>[projection.size()];
+			for (int i = 0; i != expected.length; ++i) {
+				expected[i] = MessageFactory.getBoxValue(blob, projection.get(i));
+			}
+
+			Assert.assertEquals("A-1", expected[2].asString());
+			Assert.assertArrayEquals(log, ((MessageString) expected[3]).getBytes(true));
+
+			assertValues(expected, projection.extractBox(blob));
+			assertValues(expected, projection.extractBox(ByteBuffer.wrap(blob)));
+		}
+
+		MessageValue<?>[] headers = MessageFactory.newProjection(expressions("header.tenant", "header.type")).extractBox(plain.toByteArray());
+		Assert.assertEquals("acme", headers[0].asString());
+		Assert.assertEquals("order", headers[1].asString());
+
+	}
+
+	@Test
+	public void testProjectedValue() {
+
+		MessageTable point = new MessageTableImpl();
+		point.putLong("x", 1);
+		point.putLong("y", 2);
+
+		MessageTable points = new MessageTableImpl();
+		points.put(0, point);
+		points.put(1, "none");
+		points.put(2, point);
+
+		MessageTable table = new MessageTableImpl();
+		table.put("name", "Alex");
+		table.put("points", points);
+		table.putLong("age", 30);
+
+		byte[] blob = table.toByteArray();
+
+		MessageProjection projection = MessageFactory.newProjection(expressions("name", "points[2].y", "points[1]", "nick", "age.x"));
+
+		MessageTable projected = (MessageTable) MessageFactory.newValue(blob, projection);
+
+		Assert.assertEquals("{\"name\":\"Alex\",\"points\":{\"1\":\"none\",\"2\":{\"y\":2}}}", projected.toJson());
+
+		for (int i = 0; i != projection.size(); ++i) {
+			MessageValue<?> expected = table.get(projection.get(i));
+			MessageValue<?> actual = projected.get(projection.get(i));
+			Assert.assertEquals(expected != null ? expected.toJson() : null, actual != null ? actual.toJson() : null);
+		}
+
+		Assert.assertEquals(projected.toJson(), MessageFactory.newDeserializer().newValue(ByteBuffer.wrap(blob), projection).toJson());
+
+		MessageTable empty = (MessageTable) MessageFactory.newValue(blob, MessageFactory.newProjection(expressions("nick")));
+		Assert.assertEquals(0, empty.size());
+
+		Assert.assertEquals(table.toJson(), MessageFactory.newValue(blob, MessageFactory.newProjection(expressions(""))).toJson());
+
+	}
+
+	@Test
+	public void testRepeatedKeys() throws IOException {
+
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+		packer.packMapHeader(3);
+		packer.packString("a").packLong(1);
+		packer.packString("a").packLong(2);
+		packer.packString("b").packLong(3);
+		packer.flush();
+
+		byte[] blob = out.toByteArray();
+
+		MessageProjection projection = MessageFactory.newProjection(expressions("a", "b"));
+
+		MessageValue<?>[] values = projection.extract(blob);
+		Assert.assertNotNull(values[0]);
+		Assert.assertNotNull(values[1]);
+		Assert.assertEquals("3", values[1].toJson());
+
+		MessageTable projected = (MessageTable) MessageFactory.newValue(blob, projection);
+		Assert.assertEquals(Long.valueOf(3), projected.getLong("b"));
+
+	}
+
+	@Test
+	public void testProjectedBox() {
+
+		MessageDictionary dictionary = MessageFactory.newDictionary(1024, Arrays.asList("sku", "amount"));
+
+		MessageTable item = new MessageTableImpl();
+		item.putString("sku", "A-1");
+		item.putString("name", "pen");
+
+		MessageTable items = new MessageTableImpl();
+		items.put(0, item);
+		items.put(1, item);
+
+		MessageTable order = new MessageTableImpl();
+		order.putLong("amount", 1500);
+		order.putString("comment", "fast");
+		order.put("items", items);
+
+		byte[] log = new byte[1000];
+
+		MessageBox box = MessageFactory.newBox()
+				.addHeader("type", "order")
+				.addPayload("order", order)
+				.addPayload("log", log, MessageFactory.getDeflateCodec(), 128)
+				.addPayloadUtf8("note", "hello")
+				.setDictionary(dictionary);
+
+		byte[] blob = box.toByteArray();
+
+		MessageProjection projection = MessageFactory.newProjection(expressions("body.order.amount", "body.order.items[1].sku", "body.log", "header.type"));
+
+		MessageBox projected = MessageFactory.parseBox(blob, projection);
+
+		Assert.assertEquals("order", projected.getHeader("type"));
+		Assert.assertSame(dictionary, projected.getDictionary());
+		Assert.assertArrayEquals(log, projected.getPayload("log", false));
+		Assert.assertNull(projected.getPayload("note"));
+
+		MessageTable projectedOrder = (MessageTable) projected.getPayload("order");
+		Assert.assertEquals("{\"amount\":1500,\"items\":{\"1\":{\"sku\":\"A-1\"}}}", projectedOrder.toJson());
+
+		MessageBox whole = MessageFactory.newDeserializer().parseBox(ByteBuffer.wrap(blob), MessageFactory.newProjection(expressions("body")));
+		Assert.assertEquals(box.toJson(), whole.toJson());
+
+		MessageBox headers = MessageFactory.parseBox(blob, MessageFactory.newProjection(expressions("header.type")));
+		Assert.assertEquals("order", headers.getHeader("type"));
+		Assert.assertNull(headers.getPayload("order"));
+
+	}
+
+}
@@ -0,0 +1,136 @@
+package microevents.msgbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import microevents.msgbox.impl.MessageTableImpl;
+
+/**
+ * MessageSerializerTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class MessageSerializerTest {
+
+	@Test
+	public void testByteArray() {
+
+		MessageSerializer serializer = MessageFactory.newSerializer();
+
+		MessageBox box = newBox(10);
+		MessageBox bigBox = newBox(100000);
+
+		Assert.assertArrayEquals(box.toByteArray(), serializer.toByteArray(box));
+		Assert.assertArrayEquals(bigBox.toByteArray(), serializer.toByteArray(bigBox));
+		Assert.assertArrayEquals(box.toByteArray(), serializer.toByteArray(box));
+
+		MessageTable table = new MessageTableImpl();
+		table.put("name", "Alex");
+
+		Assert.assertArrayEquals(table.toByteArray(), serializer.toByteArray(table));
+
+	}
+
+	@Test
+	public void testByteBuffer() {
+
+		MessageSerializer serializer = MessageFactory.newSerializer();
+
+		for (int size : new int[] { 10, 100000 }) {
+
+			MessageBox box = newBox(size);
+			byte[] expected = box.toByteArray();
+
+			ByteBuffer heap = ByteBuffer.allocate(expected.length + 10);
+			heap.position(3);
+			Assert.assertEquals(expected.length, serializer.writeTo(box, heap));
+			Assert.assertEquals(expected.length + 3, heap.position());
+			Assert.assertArrayEquals(expected, Arrays.copyOfRange(heap.array(), 3, expected.length + 3));
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+			Assert.assertEquals(expected.length, serializer.writeTo(box, direct));
+			Assert.assertFalse(direct.hasRemaining());
+
+			byte[] actual = new byte[expected.length];
+			direct.flip();
+			direct.get(actual);
+			Assert.assertArrayEquals(expected, actual);
+
+		}
+
+	}
+
+	@Test
+	public void testOverflow() {
+
+		MessageSerializer serializer = MessageFactory.newSerializer();
+		MessageBox box = newBox(1000);
+
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(500), ByteBuffer.allocateDirect(500) }) {
+
+			buffer.position(1);
+
+			try {
+				serializer.writeTo(box, buffer);
+				Assert.fail();
+			}
+			catch(BufferOverflowException e) {
+				Assert.assertEquals(1, buffer.position());
+			}
+
+		}
+
+		Assert.assertArrayEquals(box.toByteArray(), serializer.toByteArray(box));
+
+		ByteBuffer readOnly = ByteBuffer.allocate(5000).asReadOnlyBuffer();
+
+		try {
+			serializer.writeTo(box, readOnly);
+			Assert.fail();
+		}
+		catch(IllegalArgumentException e) {
+			Assert.assertEquals(0, readOnly.position());
+		}
+
+	}
+
+	@Test
+	public void testOutputStream() throws IOException {
+
+		MessageSerializer serializer = MessageFactory.newSerializer();
+
+		MessageBox box = newBox(10);
+		MessageBox bigBox = newBox(100000);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.writeTo(box, out);
+		Assert.assertArrayEquals(box.toByteArray(), out.toByteArray());
+
+		out.reset();
+		serializer.writeTo(bigBox, out);
+		Assert.assertArrayEquals(bigBox.toByteArray(), out.toByteArray());
+
+	}
+
+	private static MessageBox newBox(int size) {
+
+		byte[] blob = new byte[size];
+		for (int i = 0; i != size; ++i) {
+			blob[i] = (byte) i;
+		}
+
+		return MessageFactory.newBox()
+				.addHeader("id", "123")
+				.addPayload("blob", blob, false)
+				.addPayloadUtf8("name", "Alex");
+	}
+
+}
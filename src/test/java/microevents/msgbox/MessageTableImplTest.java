@@ -162,6 +162,17 @@ public class MessageTableImplTest extends AbstractMessageTest {
 		Assert.assertEquals(4, actual.size());
 		Assert.assertEquals(3, actual.maxIntKey().intValue());
 
+		table = new MessageTableImpl();
+		table.put(1, "one");
+		table.put("abc", (MessageValue<?>) null);
+		
+		Assert.assertEquals(MessageTableType.STRING_KEY, table.getType());
+		Assert.assertEquals(1, table.size());
+		Assert.assertEquals("one", table.getStringUtf8("1"));
+		
+		actual = MessageFactory.newTypedValue(table.toByteArray());
+		Assert.assertEquals("one", actual.getStringUtf8("1"));
+
 	}
 	
 	@Test
@@ -229,4 +240,107 @@ public class MessageTableImplTest extends AbstractMessageTest {
 		
 	}
 	
+	@Test
+	public void testSparseIntKeys() {
+		
+		MessageTable table = new MessageTableImpl();
+		
+		int[] keys = { 5, -3, 1000000, Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 6, 7 };
+		for (int key : keys) {
+			table.putLong(key, key);
+		}
+		
+		Assert.assertEquals(MessageTableType.INT_KEY, table.getType());
+		Assert.assertEquals(keys.length, table.size());
+		Assert.assertEquals(Integer.valueOf(Integer.MIN_VALUE), table.minIntKey());
+		Assert.assertEquals(Integer.valueOf(Integer.MAX_VALUE), table.maxIntKey());
+		Assert.assertEquals(Arrays.asList(Integer.MIN_VALUE, -3, 0, 5, 6, 7, 1000000, Integer.MAX_VALUE), table.intKeys());
+		
+		for (int key : keys) {
+			Assert.assertEquals(Long.valueOf(key), table.getLong(key));
+			Assert.assertEquals(Long.valueOf(key), table.getLong(Integer.toString(key)));
+		}
+		
+		Assert.assertNull(table.get(8));
+		Assert.assertNull(table.get("05"));
+		Assert.assertNull(table.get("-0"));
+		Assert.assertTrue(table.keySet().contains("1000000"));
+		
+		MessageTable actual = MessageFactory.newTypedValue(table.toByteArray());
+		Assert.assertEquals(table.intKeys(), actual.intKeys());
+		Assert.assertEquals(table.toJson(), actual.toJson());
+		
+		for (int key : keys) {
+			Assert.assertNotNull(table.remove(key));
+			Assert.assertNull(table.get(key));
+		}
+		
+		Assert.assertEquals(0, table.size());
+		Assert.assertNull(table.minIntKey());
+		
+	}
+	
+	@Test
+	public void testDenseIntKeys() {
+		
+		MessageTable table = new MessageTableImpl();
+		
+		for (int key = 100; key != 0; --key) {
+			table.putLong(key, key);
+		}
+		
+		Assert.assertEquals(100, table.size());
+		Assert.assertEquals(Integer.valueOf(1), table.minIntKey());
+		Assert.assertEquals(Integer.valueOf(100), table.maxIntKey());
+		
+		for (int key = 1; key <= 100; key += 2) {
+			table.remove(key);
+		}
+		
+		Assert.assertEquals(50, table.size());
+		Assert.assertEquals(Integer.valueOf(2), table.minIntKey());
+		Assert.assertNull(table.get(1));
+		Assert.assertEquals(Long.valueOf(2), table.getLong(2));
+		
+		table.putString("name", "Alex");
+		
+		Assert.assertEquals(MessageTableType.STRING_KEY, table.getType());
+		Assert.assertEquals(51, table.size());
+		Assert.assertEquals(Long.valueOf(2), table.getLong("2"));
+		Assert.assertEquals(Long.valueOf(100), table.getLong(100));
+		Assert.assertEquals("Alex", table.getStringUtf8("name"));
+		
+	}
+	
+	@Test
+	public void testArray() {
+		
+		MessageTable table = new MessageTableImpl();
+		Assert.assertFalse(table.isArray());
+		
+		table.putLong(2, 3);
+		table.putLong(1, 2);
+		Assert.assertFalse(table.isArray());
+		
+		table.putLong(0, 1);
+		Assert.assertTrue(table.isArray());
+		
+		Assert.assertEquals("93010203", table.toHexString());
+		Assert.assertEquals("93010203", toHexString(table));
+		Assert.assertEquals("[1,2,3]", table.toJson());
+		
+		MessageTable actual = MessageFactory.newTypedValue(table.toByteArray());
+		Assert.assertTrue(actual.isArray());
+		Assert.assertEquals(Arrays.asList(0, 1, 2), actual.intKeys());
+		
+		table.remove(1);
+		Assert.assertFalse(table.isArray());
+		Assert.assertEquals("8200010203", table.toHexString());
+		
+		table.putLong(1, 2);
+		table.putString("name", "Alex");
+		Assert.assertFalse(table.isArray());
+		
+	}
+	
 }
@@ -1,5 +1,8 @@
 package microevents.msgbox;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -210,4 +213,52 @@ public class MessageValueExpressionTest {
 	}
 
 	
+	@Test
+	public void testCompiled() {
+		
+		MessageValueExpressionImpl ve = new MessageValueExpressionImpl(" items [3]. name.-1[01]");
+		Assert.assertEquals(Arrays.asList("items", "3", "name", "-1", "01"), ve.getPath());
+		
+		Assert.assertFalse(ve.isIntKey(0));
+		Assert.assertTrue(ve.isIntKey(1));
+		Assert.assertEquals(3, ve.getInt(1));
+		Assert.assertTrue(ve.isIntKey(3));
+		Assert.assertEquals(-1, ve.getInt(3));
+		Assert.assertFalse(ve.isIntKey(4));
+		
+		Assert.assertArrayEquals("name".getBytes(StandardCharsets.UTF_8), ve.getBytes(2));
+		
+	}
+	
+	@Test
+	public void testCache() {
+		
+		MessageValueExpression ve = MessageFactory.newExpression("education[2].name");
+		Assert.assertSame(ve, MessageFactory.newExpression("education[2].name"));
+		Assert.assertNotSame(ve, MessageFactory.newExpression("education[2].year"));
+		Assert.assertEquals(Arrays.asList("education", "2", "name"), ve.getPath());
+		
+		for (int i = 0; i != 10000; ++i) {
+			MessageFactory.newExpression("key" + i);
+		}
+		
+		Assert.assertEquals("key5.value", MessageFactory.newExpression("key5.value").toString());
+		
+	}
+	
+	@Test
+	public void testCompiledTable() {
+		
+		MessageTable table = new MessageTableImpl();
+		table.put(MessageFactory.newExpression("education[2].name"), "MIT");
+		table.put(MessageFactory.newExpression("name.first"), "John");
+		
+		Assert.assertEquals("MIT", table.getStringUtf8(MessageFactory.newExpression("education[2].name")));
+		Assert.assertEquals("MIT", table.getStringUtf8(new MessageValueExpressionImpl("education.2.name")));
+		Assert.assertEquals("John", table.getStringUtf8(MessageFactory.newExpression("name.first")));
+		Assert.assertNull(table.get(MessageFactory.newExpression("education[02].name")));
+		Assert.assertNull(table.get(MessageFactory.newExpression("name[1]")));
+		
+	}
+
 }
@@ -0,0 +1,112 @@
+package microevents.msgbox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessagePacker;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.core.buffer.ArrayBufferOutput;
+
+import microevents.msgbox.impl.MessageTableImpl;
+import microevents.msgbox.impl.StringInternTable;
+
+/**
+ * StringInternTableTest
+ *
+ * @author Alex Shvid
+ *
+ */
+
+public class StringInternTableTest {
+
+	@Test
+	public void testUnpack() throws IOException {
+
+		StringInternTable table = new StringInternTable(16, 8);
+
+		MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(pack("name", "name", "é😀", "long string", "é😀"));
+
+		String first = table.unpackString(unpacker);
+		Assert.assertEquals("name", first);
+		Assert.assertSame(first, table.unpackString(unpacker));
+
+		String unicode = table.unpackString(unpacker);
+		Assert.assertEquals("é😀", unicode);
+
+		Assert.assertEquals("long string", table.unpackString(unpacker));
+		Assert.assertSame(unicode, table.unpackString(unpacker));
+
+	}
+
+	@Test
+	public void testEncode() {
+
+		StringInternTable table = new StringInternTable(16, 8);
+
+		byte[] bytes = table.encode("é😀");
+		Assert.assertArrayEquals("é😀".getBytes(StandardCharsets.UTF_8), bytes);
+		Assert.assertSame(bytes, table.encode("é😀"));
+
+		Assert.assertNull(table.encode("long string"));
+		Assert.assertNull(table.encode("😀😀😀"));
+
+	}
+
+	@Test
+	public void testEviction() {
+
+		StringInternTable table = new StringInternTable(2, 8);
+
+		byte[] a = table.encode("a");
+		byte[] b = table.encode("b");
+
+		Assert.assertSame(a, table.encode("a"));
+
+		table.encode("c");
+
+		Assert.assertSame(a, table.encode("a"));
+		Assert.assertNotSame(b, table.encode("b"));
+
+	}
+
+	@Test
+	public void testTableKeys() {
+
+		MessageTable table = new MessageTableImpl();
+		table.putLong("amount", 1000);
+		table.putString("currency", "USD");
+
+		MessageTable first = MessageFactory.newTypedValue(table.toByteArray());
+		MessageTable second = MessageFactory.newTypedValue(table.toByteArray());
+
+		Assert.assertEquals(table.toJson(), first.toJson());
+		Assert.assertSame(first.keySet().iterator().next(), key(second, first.keySet().iterator().next()));
+
+	}
+
+	private static String key(MessageTable table, String key) {
+		for (String k : table.keySet()) {
+			if (k.equals(key)) {
+				return k;
+			}
+		}
+		return null;
+	}
+
+	private static byte[] pack(String... values) throws IOException {
+
+		ArrayBufferOutput out = new ArrayBufferOutput();
+		MessagePacker packer = MessagePack.newDefaultPacker(out);
+
+		for (String value : values) {
+			packer.packString(value);
+		}
+
+		packer.flush();
+		return out.toByteArray();
+	}
+
+}